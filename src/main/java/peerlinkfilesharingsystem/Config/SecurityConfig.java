@@ -1,5 +1,6 @@
 package peerlinkfilesharingsystem.Config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -37,6 +38,8 @@ public class SecurityConfig {
                 .csrf(customizer -> customizer.disable())
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .authorizeHttpRequests(request -> {
+                    // Re-dispatch after a streamed download body; the original request was already authorized
+                    request.dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll();
                     request.requestMatchers("/api/register").permitAll();
                     request.requestMatchers("/api/login").permitAll();
                     request.requestMatchers("/api/mail/verifymail/**").permitAll();
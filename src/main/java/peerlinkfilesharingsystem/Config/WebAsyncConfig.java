@@ -0,0 +1,53 @@
+package peerlinkfilesharingsystem.Config;
+
+import org.apache.coyote.AbstractProtocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import peerlinkfilesharingsystem.Service.DownloadStreamingService.DownloadStreamingService;
+
+/**
+ * Streaming download bodies run on the download executor instead of the
+ * application task executor. The overall request timeout is generous, since a
+ * large file may take hours; stalls are caught sooner by the write-idle watchdog.
+ */
+@Configuration
+public class WebAsyncConfig implements WebMvcConfigurer {
+
+    private final DownloadStreamingService downloadStreamingService;
+
+    @Value("${download.streaming.request-timeout-ms:21600000}")
+    private long requestTimeoutMs;
+
+    public WebAsyncConfig(DownloadStreamingService downloadStreamingService) {
+        this.downloadStreamingService = downloadStreamingService;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(downloadStreamingService.getExecutor());
+        configurer.registerCallableInterceptors(downloadStreamingService.admissionReleaser());
+        configurer.setDefaultTimeout(requestTimeoutMs);
+    }
+
+    /**
+     * A body blocked writing to a client that stopped reading sits in Tomcat's
+     * blocking write, which ignores the watchdog's interrupt and only gives up at
+     * the connection timeout. Capping that at the write-idle timeout is what
+     * frees the thread in time.
+     */
+    @Bean
+    static WebServerFactoryCustomizer<TomcatServletWebServerFactory> downloadWriteTimeout(
+            @Value("${download.streaming.idle-timeout-ms:60000}") long idleTimeoutMs) {
+        return factory -> factory.addConnectorCustomizers(connector -> {
+            if (connector.getProtocolHandler() instanceof AbstractProtocol<?> protocol
+                    && (protocol.getConnectionTimeout() <= 0 || protocol.getConnectionTimeout() > idleTimeoutMs)) {
+                protocol.setConnectionTimeout((int) idleTimeoutMs);
+            }
+        });
+    }
+}
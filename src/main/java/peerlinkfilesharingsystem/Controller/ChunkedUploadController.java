@@ -0,0 +1,106 @@
+package peerlinkfilesharingsystem.Controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import peerlinkfilesharingsystem.Dto.ChunkedUploadInitRequest;
+import peerlinkfilesharingsystem.Dto.ChunkedUploadStatus;
+import peerlinkfilesharingsystem.Dto.FileUploadResponse;
+import peerlinkfilesharingsystem.Exception.UnauthorizedFileAccessException;
+import peerlinkfilesharingsystem.Exception.UploadQueueFullException;
+import peerlinkfilesharingsystem.Service.ChunkedUploadService.ChunkedUploadService;
+
+@RestController
+@RequestMapping("/files/upload/chunked")
+@Slf4j
+public class ChunkedUploadController {
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    public ChunkedUploadController(ChunkedUploadService chunkedUploadService) {
+        this.chunkedUploadService = chunkedUploadService;
+    }
+
+    @PostMapping("/init")
+    public ResponseEntity<?> initUpload(
+            @RequestBody ChunkedUploadInitRequest initRequest,
+            @RequestHeader(value = "X-Network-Speed", defaultValue = "50.0") Double networkSpeedMbps,
+            @RequestHeader(value = "X-Latency-Ms", defaultValue = "50") Integer latencyMs,
+            @RequestHeader(value = "X-Device-Type", defaultValue = "DESKTOP") String deviceType,
+            HttpServletRequest request) {
+        try {
+            ChunkedUploadStatus status = chunkedUploadService.initUpload(
+                    initRequest, networkSpeedMbps, latencyMs, deviceType, request.getRemoteAddr());
+            return ResponseEntity.status(HttpStatus.CREATED).body(status);
+        } catch (UploadQueueFullException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error initialising chunked upload", e);
+            return new ResponseEntity<>("Upload failed: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @PutMapping("/{transferId}/chunks/{index}")
+    public ResponseEntity<?> uploadChunk(@PathVariable String transferId,
+                                         @PathVariable int index,
+                                         HttpServletRequest request) {
+        try {
+            return ResponseEntity.ok(chunkedUploadService.putChunk(
+                    transferId, index, request.getInputStream(), request.getContentLengthLong()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (UnauthorizedFileAccessException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error storing chunk {} of transfer {}", index, transferId, e);
+            return new ResponseEntity<>("Chunk upload failed: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/{transferId}")
+    public ResponseEntity<?> getUploadStatus(@PathVariable String transferId) {
+        try {
+            return ResponseEntity.ok(chunkedUploadService.getStatus(transferId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (UnauthorizedFileAccessException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/{transferId}/complete")
+    public ResponseEntity<?> completeUpload(@PathVariable String transferId) {
+        try {
+            FileUploadResponse response = chunkedUploadService.completeUpload(transferId);
+            if (ChunkedUploadService.STATUS_PROCESSING.equals(response.getStatus())) {
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+            }
+            if (ChunkedUploadService.STATUS_FAILED.equals(response.getStatus())) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+            }
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (UnauthorizedFileAccessException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error completing chunked upload {}", transferId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                    FileUploadResponse.builder()
+                            .success(false)
+                            .message("Upload failed: " + e.getMessage())
+                            .build());
+        }
+    }
+}
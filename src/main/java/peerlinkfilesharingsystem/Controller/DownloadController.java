@@ -2,21 +2,29 @@ package peerlinkfilesharingsystem.Controller;
 
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.InputStreamResource;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import peerlinkfilesharingsystem.Model.ChunkedDownloadResource;
-import peerlinkfilesharingsystem.Model.FileDownload;
 import peerlinkfilesharingsystem.Model.FileShare;
 import peerlinkfilesharingsystem.Model.FileTransferEntity;
-import peerlinkfilesharingsystem.Repo.FileDownloadRepo;
 import peerlinkfilesharingsystem.Repo.FileShareRepo;
+import peerlinkfilesharingsystem.Service.DownloadStreamingService.DownloadStreamingService;
+import peerlinkfilesharingsystem.Service.EgressService.EgressService;
 import peerlinkfilesharingsystem.Service.FileDownloadService.FileDownloadService;
+import peerlinkfilesharingsystem.Service.PopularityService.PopularityService;
 
+import java.io.InputStream;
 import java.time.Duration;
-import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,19 +35,32 @@ import java.util.UUID;
 @Slf4j
 public class DownloadController {
 
-    private final FileDownloadRepo fileDownloadRepo;
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private final FileShareRepo fileShareRepo;
     private FileDownloadService fileDownloadService;
-
-    public DownloadController(FileDownloadService fileDownloadService, FileDownloadRepo fileDownloadRepo, FileShareRepo fileShareRepo, FileShareRepo fileShareRepo1) {
+    private final PopularityService popularityService;
+    private final EgressService egressService;
+    private final DownloadStreamingService downloadStreamingService;
+    private final ObjectMapper objectMapper;
+
+    public DownloadController(FileDownloadService fileDownloadService, FileShareRepo fileShareRepo, FileShareRepo fileShareRepo1,
+                              PopularityService popularityService, EgressService egressService,
+                              DownloadStreamingService downloadStreamingService, ObjectMapper objectMapper) {
         this.fileDownloadService = fileDownloadService;
-        this.fileDownloadRepo = fileDownloadRepo;
+        this.popularityService = popularityService;
+        this.egressService = egressService;
+        this.downloadStreamingService = downloadStreamingService;
+        this.objectMapper = objectMapper;
         this.fileShareRepo = fileShareRepo1;
     }
 
 
     @GetMapping("/download/{transferId}")
-    public ResponseEntity<?> downloadFile(
+    public ResponseEntity<StreamingResponseBody> downloadFile(
             @PathVariable String transferId,
             @RequestHeader(value = "X-Network-Speed", defaultValue = "50.0") Double networkSpeedMbps,
             @RequestHeader(value = "X-Latency-Ms", defaultValue = "50") Integer latencyMs,
@@ -71,17 +92,30 @@ public class DownloadController {
             log.info("  Original Size: {} bytes", transfer.getFileSize());
             log.info("  Compressed Size: {} bytes", transfer.getBytesTransferred());
 
+            HttpRange range = resolveRange(request, transfer);
+            if (range != null && !isSatisfiable(range, transfer.getFileSize())) {
+                return rangeNotSatisfiable(transfer);
+            }
+
+            // Taken before the download is opened and journaled; the async completion gives it back
+            if (!downloadStreamingService.admit(request)) {
+                return serverBusy(downloadId);
+            }
+
             log.info("[{}] Calculating optimal download parameters...", downloadId);
             ChunkedDownloadResource resource = fileDownloadService.downloadFileWithAdaptiveChunking(
                     transferId,
                     networkSpeedMbps,
-                    latencyMs
+                    latencyMs,
+                    range == null ? null : range.getRangeStart(transfer.getFileSize()),
+                    range == null ? null : range.getRangeEnd(transfer.getFileSize()),
+                    request.getHeader(HttpHeaders.ACCEPT_ENCODING),
+                    zeroCopyAllowed(request, networkSpeedMbps)
             );
 
             if (resource == null) {
                 log.error("[{}] Failed to create download resource", downloadId);
-                return ResponseEntity.status(500)
-                        .body(buildErrorResponse("File not found on disk", "FILE_NOT_FOUND"));
+                return streamingError(500, "File not found on disk", "FILE_NOT_FOUND");
             }
 
             log.info("[{}] Download resource created successfully", downloadId);
@@ -92,15 +126,18 @@ public class DownloadController {
 
             log.info("[{}] Building HTTP response...", downloadId);
 
-            InputStreamResource inputStreamResource = new InputStreamResource(resource.getInputStream());
+            StreamingResponseBody body = null;
+            if (resource.getSendfilePath() != null) {
+                startSendfile(request, resource);
+                // Tomcat writes this body itself, no download thread needed
+                downloadStreamingService.release(request);
+            } else {
+                // Written on the download executor; this request thread goes back to Tomcat now
+                body = downloadStreamingService.stream(paced(resource, request, networkSpeedMbps));
+            }
 
             log.info("========== DOWNLOAD SUCCESS ==========");
-            FileDownload fileDownload = fileDownloadRepo.findTopByTransferIdOrderByIdDesc(transferId);
-            fileDownload.setTransferDurationSeconds(LocalDateTime.now());
-//            fileDownload.setTransferDurationSeconds(Duration.between(LocalDateTime.now(),fileDownload.getTransferDurationSeconds()));
-            fileDownload.setStoragePath(transfer.getStoragePath());
-            fileDownloadRepo.save(fileDownload);
-            return ResponseEntity.ok()
+            return downloadResponse(resource, transfer)
                     .header(HttpHeaders.CONTENT_DISPOSITION,
                             "attachment; filename=\"" + resource.getFileName() + "\"")
                     .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE)
@@ -109,12 +146,11 @@ public class DownloadController {
                     .header("X-Network-Condition", resource.getNetworkCondition())
                     .header("X-Original-Size", String.valueOf(resource.getOriginalSizeBytes()))
                     .header("X-Compressed-Size", String.valueOf(resource.getCompressedSizeBytes()))
-                    .body(inputStreamResource);
+                    .body(body);
 
         } catch (Exception e) {
             log.error("========== DOWNLOAD FAILED ==========", e);
-            return ResponseEntity.status(500)
-                    .body(buildErrorResponse("Download failed: " + e.getMessage(), "DOWNLOAD_ERROR"));
+            return streamingError(500, "Download failed: " + e.getMessage(), "DOWNLOAD_ERROR");
         }
     }
 
@@ -130,6 +166,7 @@ public class DownloadController {
             if (transfer == null) {
                 return ResponseEntity.notFound().build();
             }
+            popularityService.recordInfoView(transferId);
 
             Map<String, Object> info = new HashMap<>();
             info.put("transferId", transfer.getTransferId());
@@ -270,7 +307,7 @@ public class DownloadController {
 
 
     @GetMapping ("download/{shareToken}/public")
-    public ResponseEntity<?> downloadPublicFile(
+    public ResponseEntity<StreamingResponseBody> downloadPublicFile(
             @PathVariable(name = "shareToken") String shareId,
             @RequestHeader(value = "X-Network-Speed", defaultValue = "50.0") Double networkSpeedMbps,
             @RequestHeader(value = "X-Latency-Ms", defaultValue = "50") Integer latencyMs,
@@ -304,18 +341,31 @@ public class DownloadController {
             log.info("  Original Size: {} bytes", transfer.getFileSize());
             log.info("  Compressed Size: {} bytes", transfer.getBytesTransferred());
 
+            HttpRange range = resolveRange(request, transfer);
+            if (range != null && !isSatisfiable(range, transfer.getFileSize())) {
+                return rangeNotSatisfiable(transfer);
+            }
+
+            // Taken before the download is opened and journaled; the async completion gives it back
+            if (!downloadStreamingService.admit(request)) {
+                return serverBusy(shareId);
+            }
+
             log.info("[{}] Calculating optimal download parameters...", shareId);
             ChunkedDownloadResource resource = fileDownloadService.downloadPublicFileWithAdaptiveChunking(
                     transfer.getTransferId(),
                     networkSpeedMbps,
                     shareId,
-                    latencyMs
+                    latencyMs,
+                    range == null ? null : range.getRangeStart(transfer.getFileSize()),
+                    range == null ? null : range.getRangeEnd(transfer.getFileSize()),
+                    request.getHeader(HttpHeaders.ACCEPT_ENCODING),
+                    zeroCopyAllowed(request, networkSpeedMbps)
             );
 
             if (resource == null) {
                 log.error("[{}] Failed to create download resource", shareId);
-                return ResponseEntity.status(500)
-                        .body(buildErrorResponse("File not found on disk", "FILE_NOT_FOUND"));
+                return streamingError(500, "File not found on disk", "FILE_NOT_FOUND");
             }
 
             log.info("[{}] Download resource created successfully", shareId);
@@ -326,16 +376,18 @@ public class DownloadController {
 
             log.info("[{}] Building HTTP response...", shareId);
 
-            InputStreamResource inputStreamResource = new InputStreamResource(resource.getInputStream());
+            StreamingResponseBody body = null;
+            if (resource.getSendfilePath() != null) {
+                startSendfile(request, resource);
+                // Tomcat writes this body itself, no download thread needed
+                downloadStreamingService.release(request);
+            } else {
+                // Written on the download executor; this request thread goes back to Tomcat now
+                body = downloadStreamingService.stream(paced(resource, request, networkSpeedMbps));
+            }
 
             log.info("========== DOWNLOAD SUCCESS ==========");
-            FileDownload fileDownload = fileDownloadRepo.findByTransferId(transfer.getTransferId());
-            if (fileDownload != null) {
-                fileDownload.setTransferDurationSeconds(LocalDateTime.now());
-                fileDownload.setStoragePath(transfer.getStoragePath());
-                fileDownloadRepo.save(fileDownload);
-            }
-            return ResponseEntity.ok()
+            return downloadResponse(resource, transfer)
                     .header(HttpHeaders.CONTENT_DISPOSITION,
                             "attachment; filename=\"" + resource.getFileName() + "\"")
                     .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE)
@@ -344,15 +396,160 @@ public class DownloadController {
                     .header("X-Network-Condition", resource.getNetworkCondition())
                     .header("X-Original-Size", String.valueOf(resource.getOriginalSizeBytes()))
                     .header("X-Compressed-Size", String.valueOf(resource.getCompressedSizeBytes()))
-                    .body(inputStreamResource);
+                    .body(body);
 
         } catch (Exception e) {
             log.error("========== DOWNLOAD FAILED ==========", e);
-            return ResponseEntity.status(500)
-                    .body(buildErrorResponse("Download failed: " + e.getMessage(), "DOWNLOAD_ERROR"));
+            return streamingError(500, "Download failed: " + e.getMessage(), "DOWNLOAD_ERROR");
+        }
+    }
+
+
+    /**
+     * Sendfile only when the container supports it and egress pacing does not
+     * need to see every byte of this download.
+     */
+    private boolean zeroCopyAllowed(HttpServletRequest request, Double networkSpeedMbps) {
+        return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))
+                && egressService.allowsZeroCopy(declaredSpeed(request, networkSpeedMbps));
+    }
+
+    private InputStream paced(ChunkedDownloadResource resource, HttpServletRequest request, Double networkSpeedMbps) {
+        if (resource.getInputStream() instanceof FileDownloadService.ChunkedInputStream chunked) {
+            chunked.pacedBy(egressService.open(declaredSpeed(request, networkSpeedMbps)));
         }
+        return resource.getInputStream();
     }
 
+    /** The header's default stands in for clients that never declared a speed, which are not paced per transfer. */
+    private static Double declaredSpeed(HttpServletRequest request, Double networkSpeedMbps) {
+        return request.getHeader("X-Network-Speed") != null ? networkSpeedMbps : null;
+    }
+
+    /**
+     * The single byte range to serve, or null to send the whole file: no Range
+     * header, a malformed or multi-range one, or an If-Range that no longer matches.
+     */
+    private HttpRange resolveRange(HttpServletRequest request, FileTransferEntity transfer) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || transfer.getFileSize() == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRangeMatches(ifRange, transfer)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private boolean isSatisfiable(HttpRange range, long size) {
+        long start = range.getRangeStart(size);
+        return start < size && start <= range.getRangeEnd(size);
+    }
+
+    private boolean ifRangeMatches(String ifRange, FileTransferEntity transfer) {
+        if (ifRange.startsWith("\"")) {
+            // Only strong validators qualify; a weak W/ tag never matches
+            return ifRange.equals(entityTag(transfer));
+        }
+        if (transfer.getCompletedAt() == null) {
+            return false;
+        }
+        try {
+            long since = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+            return since == lastModified(transfer).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /** Stored content never changes once an upload completes, so the content hash is a strong validator. */
+    private String entityTag(FileTransferEntity transfer) {
+        return "\"" + (transfer.getContentHash() != null
+                ? transfer.getContentHash()
+                : transfer.getTransferId() + "-" + transfer.getFileSize()) + "\"";
+    }
+
+    /** A different representation needs a different strong tag, so it can never satisfy an identity If-Range. */
+    private String encodedEntityTag(FileTransferEntity transfer, String contentEncoding) {
+        String tag = entityTag(transfer);
+        return tag.substring(0, tag.length() - 1) + "-" + contentEncoding + "\"";
+    }
+
+    private ZonedDateTime lastModified(FileTransferEntity transfer) {
+        return transfer.getCompletedAt().atZone(ZoneId.systemDefault());
+    }
+
+    /** Status, length and validator headers for a full (200) or partial (206) download. */
+    private ResponseEntity.BodyBuilder downloadResponse(ChunkedDownloadResource resource, FileTransferEntity transfer) {
+        ResponseEntity.BodyBuilder builder;
+        if (resource.getContentEncoding() != null) {
+            // The compressed object itself is the body; the client decodes it
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_ENCODING, resource.getContentEncoding())
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .contentLength(resource.getEncodedSizeBytes())
+                    .eTag(encodedEntityTag(transfer, resource.getContentEncoding()));
+        }
+        if (resource.getRangeStart() != null) {
+            builder = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes " + resource.getRangeStart() + "-"
+                            + resource.getRangeEnd() + "/" + transfer.getFileSize())
+                    .contentLength(resource.getRangeEnd() - resource.getRangeStart() + 1);
+        } else {
+            builder = ResponseEntity.ok();
+            if (transfer.getFileSize() != null) {
+                builder.contentLength(transfer.getFileSize());
+            }
+        }
+        builder.header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .eTag(entityTag(transfer));
+        if (transfer.getCompletedAt() != null) {
+            builder.lastModified(lastModified(transfer));
+        }
+        return builder;
+    }
+
+    private <T> ResponseEntity<T> rangeNotSatisfiable(FileTransferEntity transfer) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + transfer.getFileSize())
+                .build();
+    }
+
+    /**
+     * Hands the file slice to Tomcat, which writes it with sendfile(2) after the
+     * handler returns; the response itself carries headers only.
+     */
+    private void startSendfile(HttpServletRequest request, ChunkedDownloadResource resource) {
+        request.setAttribute(SENDFILE_FILENAME, resource.getSendfilePath());
+        request.setAttribute(SENDFILE_START, resource.getSendfileOffset());
+        request.setAttribute(SENDFILE_END, resource.getSendfileOffset() + resource.getSendfileLength());
+    }
+
+    /**
+     * Every download thread and queue slot is taken. Answered without a body,
+     * since an error body would itself need a download thread.
+     */
+    private ResponseEntity<StreamingResponseBody> serverBusy(String downloadId) {
+        log.warn("[{}] Download pool saturated, answering 503", downloadId);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(downloadStreamingService.getRetryAfterSeconds()))
+                .build();
+    }
+
+    /** JSON error for the download endpoints, whose body type is fixed to a stream. */
+    private ResponseEntity<StreamingResponseBody> streamingError(int status, String message, String errorCode) {
+        Map<String, Object> error = buildErrorResponse(message, errorCode);
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> objectMapper.writeValue(out, error));
+    }
 
     private Map<String, Object> buildErrorResponse(String message, String errorCode) {
         Map<String, Object> errorResponse = new HashMap<>();
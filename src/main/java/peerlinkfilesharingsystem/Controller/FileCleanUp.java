@@ -3,16 +3,26 @@ package peerlinkfilesharingsystem.Controller;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.web.bind.annotation.RestController;
+import peerlinkfilesharingsystem.Service.ChunkedUploadService.ChunkedUploadService;
+import peerlinkfilesharingsystem.Service.DownloadCounterService.DownloadCounterService;
 import peerlinkfilesharingsystem.Service.FileStorageService.FileStorageService;
+import peerlinkfilesharingsystem.Service.MetadataCacheService.MetadataCacheService;
 
 @RestController
 @Slf4j
 public class FileCleanUp {
 
     private final FileStorageService fileDownloadService;
+    private final ChunkedUploadService chunkedUploadService;
+    private final DownloadCounterService downloadCounterService;
+    private final MetadataCacheService metadataCacheService;
 
-    public FileCleanUp(FileStorageService fileStorageService) {
+    public FileCleanUp(FileStorageService fileStorageService, ChunkedUploadService chunkedUploadService,
+                       DownloadCounterService downloadCounterService, MetadataCacheService metadataCacheService) {
         this.fileDownloadService = fileStorageService;
+        this.chunkedUploadService = chunkedUploadService;
+        this.downloadCounterService = downloadCounterService;
+        this.metadataCacheService = metadataCacheService;
     }
 
 //        @Scheduled(cron = "0 * * * * *")
@@ -32,4 +42,18 @@ public class FileCleanUp {
         log.debug("Deleting expired files");
         fileDownloadService.deleteUnsuccessfulFilesinTransferEntity();
     }
+    @Scheduled(cron = "0 */10 * * * *")
+    public void evictFinishedChunkedUploads(){
+        log.debug("Evicting finished chunked upload sessions");
+        chunkedUploadService.evictFinishedSessions();
+    }
+    @Scheduled(fixedDelayString = "${download.counters.flush-interval-ms:5000}")
+    public void flushDownloadCounters(){
+        downloadCounterService.flush();
+    }
+    @Scheduled(cron = "${file.share-filter.rebuild-cron:0 30 3 * * *}")
+    public void rebuildShareFilter(){
+        log.debug("Rebuilding share filter");
+        metadataCacheService.rebuildShareFilter();
+    }
 }
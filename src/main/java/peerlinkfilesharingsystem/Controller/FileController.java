@@ -2,38 +2,41 @@ package peerlinkfilesharingsystem.Controller;
 
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import peerlinkfilesharingsystem.Dto.KeysetPage;
 import peerlinkfilesharingsystem.Dto.SharedFileResponse;
-import peerlinkfilesharingsystem.Service.FileShareService.FileShareService;
-
-import java.util.List;
+import peerlinkfilesharingsystem.Service.TransferHistoryService.TransferHistoryService;
 
 @RestController("files")
 @Slf4j
 public class FileController {
 
-    private final FileShareService fileShareService;
+    private final TransferHistoryService transferHistoryService;
 
 
-    public FileController(FileShareService fileShareService) {
-        this.fileShareService = fileShareService;
+    public FileController(TransferHistoryService transferHistoryService) {
+        this.transferHistoryService = transferHistoryService;
     }
 
 
 
+    /** Newest first; pass the returned {@code nextCursor} as {@code cursor} for the next page. */
     @GetMapping("/my-shares")
-    public ResponseEntity<List<SharedFileResponse>> getMySharedFiles(
-            @RequestParam(defaultValue = "10") Integer limit) {
+    public ResponseEntity<KeysetPage<SharedFileResponse>> getMySharedFiles(
+            @RequestParam(defaultValue = "10") Integer limit,
+            @RequestParam(required = false) Long cursor) {
 
-        log.info("GET /fileshare/my-shares - Limit: {}", limit);
+        log.info("GET /my-shares - Limit: {}, cursor: {}", limit, cursor);
 
         try {
-            List<SharedFileResponse> sharedFiles = fileShareService.getUserSharedFiles(limit);
+            KeysetPage<SharedFileResponse> sharedFiles = transferHistoryService.sharesPage(cursor, limit);
 
-            log.info("Returning {} shared files", sharedFiles.size());
+            log.info("Returning {} shared files", sharedFiles.getItems().size());
 
             return ResponseEntity.ok(sharedFiles);
 
@@ -41,17 +44,14 @@ public class FileController {
             log.error("Error fetching shared files", e);
             return ResponseEntity.internalServerError().build();
         }
-    } @GetMapping("/my-shares/all")
-    public ResponseEntity<List<SharedFileResponse>> getAllSharedFiles() {
-        log.info("GET /fileshare/my-shares/all");
-
-        try {
-            List<SharedFileResponse> sharedFiles = fileShareService.getUserSharedFiles(null);
-            return ResponseEntity.ok(sharedFiles);
+    }
 
-        } catch (Exception e) {
-            log.error("Error fetching all shared files", e);
-            return ResponseEntity.internalServerError().build();
-        }
+    /** Every share, streamed as NDJSON instead of one unbounded JSON array. */
+    @GetMapping(value = "/my-shares/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getAllSharedFiles() {
+        log.info("GET /my-shares/all");
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(transferHistoryService.exportShares());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,27 @@
+package peerlinkfilesharingsystem.Controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import peerlinkfilesharingsystem.Service.PopularityService.PopularityService;
+
+@RestController
+@RequestMapping("/admin")
+@Slf4j
+public class PopularityController {
+
+    private final PopularityService popularityService;
+
+    public PopularityController(PopularityService popularityService) {
+        this.popularityService = popularityService;
+    }
+
+    /** Hottest transfers by decayed downloads and info-page views (admins only). */
+    @GetMapping("/popular")
+    public ResponseEntity<?> getPopular(@RequestParam(defaultValue = "20") int limit) {
+        return popularityService.getPopular(limit);
+    }
+}
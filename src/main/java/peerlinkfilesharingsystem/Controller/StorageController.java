@@ -0,0 +1,29 @@
+package peerlinkfilesharingsystem.Controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import peerlinkfilesharingsystem.Service.ChunkStoreService.ChunkStoreService;
+
+@RestController
+@RequestMapping("/files/storage")
+@Slf4j
+public class StorageController {
+
+    private final ChunkStoreService chunkStoreService;
+
+    public StorageController(ChunkStoreService chunkStoreService) {
+        this.chunkStoreService = chunkStoreService;
+    }
+
+    /**
+     * Dedup ratio and ingest throughput of the CDC chunk store next to the
+     * single-object layout, accumulated since start-up.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> getStorageStats() {
+        return ResponseEntity.ok(chunkStoreService.getStats());
+    }
+}
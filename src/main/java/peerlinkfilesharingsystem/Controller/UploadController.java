@@ -2,13 +2,19 @@ package peerlinkfilesharingsystem.Controller;
 
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import peerlinkfilesharingsystem.Dto.FileUploadResponse;
+import peerlinkfilesharingsystem.Dto.UploadByHashRequest;
+import peerlinkfilesharingsystem.Exception.UnauthorizedFileAccessException;
+import peerlinkfilesharingsystem.Exception.UploadQueueFullException;
 import peerlinkfilesharingsystem.Service.FileUploadService.FileUploadService;
+import peerlinkfilesharingsystem.Service.TransferHistoryService.TransferHistoryService;
 
 import java.util.UUID;
 
@@ -18,16 +24,25 @@ import java.util.UUID;
 public class UploadController {
 
     private FileUploadService fileUploadService;
-    public UploadController(FileUploadService fileUploadService) {
+    private TransferHistoryService transferHistoryService;
+    public UploadController(FileUploadService fileUploadService, TransferHistoryService transferHistoryService) {
         this.fileUploadService = fileUploadService;
+        this.transferHistoryService = transferHistoryService;
     }
 
+    /**
+     * By default the file is staged and processed on the upload worker pool:
+     * the response is 202 with the transferId to poll. {@code sync=true} keeps the
+     * old behaviour of compressing before answering.
+     */
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public FileUploadResponse uploadFile(
+    public ResponseEntity<FileUploadResponse> uploadFile(
             @RequestPart(value = "file", required = true) MultipartFile file,
             @RequestHeader(value = "X-Network-Speed", defaultValue = "50.0") Double networkSpeedMbps,
             @RequestHeader(value = "X-Latency-Ms", defaultValue = "50") Integer latencyMs,
             @RequestHeader(value = "X-Device-Type", defaultValue = "DESKTOP") String deviceType,
+            @RequestHeader(value = "X-Content-Encoding", required = false) String contentEncoding,
+            @RequestParam(value = "sync", defaultValue = "false") boolean sync,
             HttpServletRequest request) {
 
         String clientIp = request.getRemoteAddr();
@@ -44,7 +59,7 @@ public class UploadController {
                                 .success(false)
                                 .message("Upload failed: File Cant be Empty,Client IP Can't be Empty")
                                 .build()
-                ).getBody();
+                );
             }
 
             if (file.getSize() > 10 * 1024 * 1024 * 1024L) {
@@ -53,15 +68,32 @@ public class UploadController {
                                 .success(false)
                                 .message("Upload failed: File Size Exceeded")
                                 .build()
-                ).getBody();
+                );
             }
                 log.info("=== NEW UPLOAD DETECTED ===");
+            if (!sync) {
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(fileUploadService.acceptFile(
+                        file, latencyMs, networkSpeedMbps, deviceType, clientIp, contentEncoding));
+            }
             FileUploadResponse fileUploadResponse  = fileUploadService.handleFile(
-                    file, latencyMs, networkSpeedMbps, deviceType, clientIp);
+                    file, latencyMs, networkSpeedMbps, deviceType, clientIp, contentEncoding);
             if (fileUploadResponse ==  null) {
-                return (FileUploadResponse) ResponseEntity.status(HttpStatus.UNAUTHORIZED);
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
             }
-                return ResponseEntity.ok(fileUploadResponse).getBody();
+                return ResponseEntity.ok(fileUploadResponse);
+        } catch (UploadQueueFullException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(FileUploadResponse.builder()
+                            .success(false)
+                            .message(e.getMessage())
+                            .build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(
+                    FileUploadResponse.builder()
+                            .success(false)
+                            .message("Upload failed: " + e.getMessage())
+                            .build());
         }catch (Exception e){
             log.error("Error uploading file", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
@@ -69,22 +101,96 @@ public class UploadController {
                             .success(false)
                             .message("Upload failed: " + e.getMessage())
                             .build()
-            ).getBody();
+            );
+        }
+
+    }
+
+    @GetMapping("/upload/{transferId}/status")
+    public ResponseEntity<?> getUploadStatus(@PathVariable String transferId) {
+        try {
+            return ResponseEntity.ok(fileUploadService.getUploadStatus(transferId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (UnauthorizedFileAccessException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/upload/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<FileUploadResponse> uploadFileStreaming(
+            @RequestHeader(value = "X-Network-Speed", defaultValue = "50.0") Double networkSpeedMbps,
+            @RequestHeader(value = "X-Latency-Ms", defaultValue = "50") Integer latencyMs,
+            @RequestHeader(value = "X-Device-Type", defaultValue = "DESKTOP") String deviceType,
+            @RequestHeader(value = "X-Content-Encoding", required = false) String contentEncoding,
+            HttpServletRequest request) {
+
+        String clientIp = request.getRemoteAddr();
+        log.info("Streaming upload started - Declared Size: {}MB, Speed: {}Mbps, Latency: {}ms, IP: {}",
+                request.getContentLengthLong() / 1024 / 1024, networkSpeedMbps, latencyMs, clientIp);
+
+        if (request.getContentLengthLong() > 10 * 1024 * 1024 * 1024L) {
+            return ResponseEntity.status(413).body(
+                    FileUploadResponse.builder()
+                            .success(false)
+                            .message("Upload failed: File Size Exceeded")
+                            .build());
+        }
+
+        FileUploadResponse fileUploadResponse = fileUploadService.handleStreamingUpload(
+                request, latencyMs, networkSpeedMbps, deviceType, clientIp, contentEncoding);
+        if (!Boolean.TRUE.equals(fileUploadResponse.getSuccess())) {
+            return ResponseEntity.badRequest().body(fileUploadResponse);
+        }
+        return ResponseEntity.ok(fileUploadResponse);
+    }
+
+    @GetMapping("/upload/hash/{contentHash}")
+    public ResponseEntity<?> checkContentHash(@PathVariable String contentHash,
+                                              @RequestParam("size") Long fileSize) {
+        try {
+            return ResponseEntity.ok(fileUploadService.checkContentHash(contentHash, fileSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         }
+    }
 
+    @PostMapping("/upload/hash")
+    public ResponseEntity<FileUploadResponse> uploadByHash(
+            @RequestBody UploadByHashRequest uploadByHashRequest,
+            @RequestHeader(value = "X-Network-Speed", defaultValue = "50.0") Double networkSpeedMbps,
+            @RequestHeader(value = "X-Latency-Ms", defaultValue = "50") Integer latencyMs,
+            @RequestHeader(value = "X-Device-Type", defaultValue = "DESKTOP") String deviceType,
+            HttpServletRequest request) {
+        FileUploadResponse fileUploadResponse = fileUploadService.handleUploadByHash(
+                uploadByHashRequest, latencyMs, networkSpeedMbps, deviceType, request.getRemoteAddr());
+        if (!Boolean.TRUE.equals(fileUploadResponse.getSuccess())) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(fileUploadResponse);
+        }
+        return ResponseEntity.ok(fileUploadResponse);
     }
 
+    /** Newest first; pass the returned {@code nextCursor} as {@code cursor} for the next page. */
     @GetMapping("/history")
     public ResponseEntity<?> getTransferHistory(
-            @RequestParam(defaultValue = "10") Integer limit) {
+            @RequestParam(defaultValue = "10") Integer limit,
+            @RequestParam(required = false) Long cursor) {
         try {
-            return ResponseEntity.ok(fileUploadService.getRecentTransfers(limit));
+            return ResponseEntity.ok(transferHistoryService.historyPage(cursor, limit));
         } catch (Exception e) {
             log.error("Error getting history", e);
             return new ResponseEntity<>("History error: Failed to Fetch Files",HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    @GetMapping(value = "/history/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportTransferHistory() {
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"transfer-history.ndjson\"")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(transferHistoryService.exportHistory());
+    }
+
 
 
 
@@ -0,0 +1,13 @@
+package peerlinkfilesharingsystem.Dto;
+
+import lombok.Data;
+
+@Data
+public class ChunkedUploadInitRequest {
+
+    private String fileName;
+    private Long fileSize;
+    private Integer chunkSize;
+    /** gzip or deflate when the chunks carry a payload the client already compressed. */
+    private String contentEncoding;
+}
@@ -0,0 +1,24 @@
+package peerlinkfilesharingsystem.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Answer to "do you already have this content". When {@code exists} is true the
+ * client proves it holds the bytes by returning
+ * hex(SHA-256(nonce || content[challengeOffset, challengeOffset + challengeLength)))
+ * with its upload-by-hash request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ContentHashCheckResponse {
+    private String contentHash;
+    private boolean exists;
+    private Long challengeOffset;
+    private Integer challengeLength;
+    private String challengeNonce;
+}
@@ -18,7 +18,11 @@ import java.time.LocalDateTime;
         private Long compressedSizeBytes;
         private String compressionRatioPercent;
         private Integer appliedCompressionLevel;
+        private String appliedCodec;
         private Integer appliedChunkSize;
+        private Double compressionThroughputMBps;
+        private Boolean deduplicated;
+        private String status;
         private Boolean success;
         private String message;
         private LocalDateTime uploadedAt;
@@ -0,0 +1,20 @@
+package peerlinkfilesharingsystem.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A page read with {@code WHERE id < cursor ORDER BY id DESC}. Pass
+ * {@code nextCursor} back as {@code cursor} for the following page; it is null
+ * on the last one.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KeysetPage<T> {
+    private List<T> items;
+    private Long nextCursor;
+}
@@ -0,0 +1,23 @@
+package peerlinkfilesharingsystem.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One entry of the current top-K. Counts are decayed estimates, not totals:
+ * an event one half-life ago counts half as much as one now. {@code maxOverestimate}
+ * is the Space-Saving error bound on {@code score}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PopularTransferDto {
+    private String transferId;
+    private double score;
+    private double maxOverestimate;
+    private double downloads;
+    private double infoViews;
+}
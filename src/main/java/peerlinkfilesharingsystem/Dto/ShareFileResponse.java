@@ -8,6 +8,7 @@ public class ShareFileResponse {
     private String fileName;
     private Long shareport;
     private String fileDownloadUri;
+    private String shareCode;
 
     public ShareFileResponse(String fileName, String fileDownloadUri,Long port) {
         this.fileName = fileName;
@@ -15,6 +16,11 @@ public class ShareFileResponse {
         this.shareport = port;
     }
 
+    public ShareFileResponse(String fileName, String fileDownloadUri, Long port, String shareCode) {
+        this(fileName, fileDownloadUri, port);
+        this.shareCode = shareCode;
+    }
+
     public Long getPort() {
         return shareport;
     }
@@ -0,0 +1,23 @@
+package peerlinkfilesharingsystem.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/** A share owned by the caller; {@code fileId} of the shared transfer is the keyset cursor. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SharedFileResponse {
+    private long fileId;
+    private String transferId;
+    private String fileName;
+    private String fileType;
+    private Long fileSize;
+    private String shareToken;
+    private Long shareId;
+    private LocalDateTime shareExpiresAt;
+    private int downloadCount;
+}
@@ -0,0 +1,32 @@
+package peerlinkfilesharingsystem.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import peerlinkfilesharingsystem.Enums.MarkFileAs;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row of a user's transfer history, selected column by column so storage
+ * paths and client addresses never leave the repository. {@code fileId} is the
+ * keyset cursor.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferHistoryItem {
+    private long fileId;
+    private String transferId;
+    private String fileName;
+    private String fileType;
+    private Long fileSize;
+    private Long bytesTransferred;
+    private String status;
+    private Boolean success;
+    private MarkFileAs markFileAs;
+    private int downloadCount;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,12 @@
+package peerlinkfilesharingsystem.Dto;
+
+import lombok.Data;
+
+@Data
+public class UploadByHashRequest {
+
+    private String fileName;
+    private Long fileSize;
+    private String contentHash;
+    private String challengeResponse;
+}
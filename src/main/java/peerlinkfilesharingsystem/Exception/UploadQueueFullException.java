@@ -0,0 +1,15 @@
+package peerlinkfilesharingsystem.Exception;
+
+public class UploadQueueFullException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public UploadQueueFullException(long retryAfterSeconds) {
+        super("Too many uploads waiting for processing, retry in " + retryAfterSeconds + "s");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
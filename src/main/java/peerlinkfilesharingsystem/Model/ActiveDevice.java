@@ -8,7 +8,10 @@ import java.time.LocalDateTime;
 @Table(name = "active_devices")
 public class ActiveDevice {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "active_device_ids")
+    @TableGenerator(name = "active_device_ids", table = EntityIds.TABLE, pkColumnName = EntityIds.NAME_COLUMN,
+            valueColumnName = EntityIds.VALUE_COLUMN, pkColumnValue = "active_device",
+            initialValue = EntityIds.INITIAL_VALUE, allocationSize = EntityIds.ALLOCATION_SIZE)
     private Long id;
     @Column(nullable = false)
     private String ipAddress;
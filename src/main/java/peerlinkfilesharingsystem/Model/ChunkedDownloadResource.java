@@ -19,4 +19,14 @@ public class ChunkedDownloadResource {
     private String networkCondition;
     private Boolean isCompressed;
     private String transferId;
+    /** Inclusive byte range being served, both null for the whole file. */
+    private Long rangeStart;
+    private Long rangeEnd;
+    /** Set when the stored bytes are sent as-is with this Content-Encoding. */
+    private String contentEncoding;
+    private Long encodedSizeBytes;
+    /** Set instead of inputStream when the container sends this slice of the file itself. */
+    private String sendfilePath;
+    private Long sendfileOffset;
+    private Long sendfileLength;
 }
@@ -0,0 +1,37 @@
+package peerlinkfilesharingsystem.Model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A content-defined chunk shared by every transfer manifest that lists it.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ContentChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "content_chunk_ids")
+    @TableGenerator(name = "content_chunk_ids", table = EntityIds.TABLE, pkColumnName = EntityIds.NAME_COLUMN,
+            valueColumnName = EntityIds.VALUE_COLUMN, pkColumnValue = "content_chunk",
+            initialValue = EntityIds.INITIAL_VALUE, allocationSize = EntityIds.ALLOCATION_SIZE)
+    private Long id;
+
+    @Column(name = "chunk_hash", unique = true, nullable = false, length = 64)
+    private String chunkHash;
+
+    private String codec;
+    private Integer originalSize;
+    private Integer storedSize;
+    @Column(nullable = false)
+    private int refCount;
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+}
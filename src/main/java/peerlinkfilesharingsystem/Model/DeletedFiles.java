@@ -14,7 +14,10 @@ import java.time.LocalDateTime;
 public class DeletedFiles {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "deleted_files_ids")
+    @TableGenerator(name = "deleted_files_ids", table = EntityIds.TABLE, pkColumnName = EntityIds.NAME_COLUMN,
+            valueColumnName = EntityIds.VALUE_COLUMN, pkColumnValue = "deleted_files",
+            initialValue = EntityIds.INITIAL_VALUE, allocationSize = EntityIds.ALLOCATION_SIZE)
     private Long id;
     @Column(nullable = false)
     private String FileName;
@@ -0,0 +1,23 @@
+package peerlinkfilesharingsystem.Model;
+
+/**
+ * Settings shared by the pooled table generators entities draw their IDs from.
+ * Each entity has its own row in {@link #TABLE} and leases a block of
+ * {@link #ALLOCATION_SIZE} IDs per round trip, so Hibernate can batch inserts
+ * (it cannot with IDENTITY columns, whose value is only known after each insert).
+ */
+public final class EntityIds {
+
+    public static final String TABLE = "entity_id_block";
+    public static final String NAME_COLUMN = "entity_name";
+    public static final String VALUE_COLUMN = "next_value";
+
+    /** Above anything the old AUTO_INCREMENT columns handed out, so new IDs cannot collide with existing rows. */
+    public static final int INITIAL_VALUE = 1_000_000_000;
+
+    /** Matches hibernate.jdbc.batch_size. */
+    public static final int ALLOCATION_SIZE = 50;
+
+    private EntityIds() {
+    }
+}
@@ -16,7 +16,10 @@ import java.time.LocalDateTime;
 public class FileDownload {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "file_download_ids")
+    @TableGenerator(name = "file_download_ids", table = EntityIds.TABLE, pkColumnName = EntityIds.NAME_COLUMN,
+            valueColumnName = EntityIds.VALUE_COLUMN, pkColumnValue = "file_download",
+            initialValue = EntityIds.INITIAL_VALUE, allocationSize = EntityIds.ALLOCATION_SIZE)
     private Long id;
     private String transferId;
     private String fileName;
@@ -25,6 +28,10 @@ public class FileDownload {
     private Integer chunkSize;
     private Double networkSpeedMbps;
     private Integer latencyMs;
+    /** When the body finished or was abandoned (the column predates the rename it deserves). */
     private LocalDateTime transferDurationSeconds;
     private String storagePath;
+    private LocalDateTime startedAt;
+    private Long bytesSent;
+    private Boolean completed;
 }
@@ -7,10 +7,17 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
+@Table(indexes = {
+        @Index(name = "idx_file_share_token", columnList = "shareToken"),
+        @Index(name = "idx_file_share_id", columnList = "ShareId")
+})
 public class FileShare {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "file_share_ids")
+    @TableGenerator(name = "file_share_ids", table = EntityIds.TABLE, pkColumnName = EntityIds.NAME_COLUMN,
+            valueColumnName = EntityIds.VALUE_COLUMN, pkColumnValue = "file_share",
+            initialValue = EntityIds.INITIAL_VALUE, allocationSize = EntityIds.ALLOCATION_SIZE)
     private Long id;
     private String userId;
     private String fileName;
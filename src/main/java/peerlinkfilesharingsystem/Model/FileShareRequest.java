@@ -9,7 +9,10 @@ import java.util.UUID;
 @Table(name = "file_share_requests")
 public class FileShareRequest {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "file_share_request_ids")
+    @TableGenerator(name = "file_share_request_ids", table = EntityIds.TABLE, pkColumnName = EntityIds.NAME_COLUMN,
+            valueColumnName = EntityIds.VALUE_COLUMN, pkColumnValue = "file_share_request",
+            initialValue = EntityIds.INITIAL_VALUE, allocationSize = EntityIds.ALLOCATION_SIZE)
     private Long id;
     @Column(nullable = false)
     private UUID senderId;
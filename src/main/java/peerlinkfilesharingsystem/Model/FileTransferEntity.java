@@ -15,9 +15,13 @@ import java.util.UUID;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@Table(indexes = @Index(name = "idx_file_transfer_user_file", columnList = "userId, fileId"))
 public class FileTransferEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "file_transfer_ids")
+    @TableGenerator(name = "file_transfer_ids", table = EntityIds.TABLE, pkColumnName = EntityIds.NAME_COLUMN,
+            valueColumnName = EntityIds.VALUE_COLUMN, pkColumnValue = "file_transfer",
+            initialValue = EntityIds.INITIAL_VALUE, allocationSize = EntityIds.ALLOCATION_SIZE)
     private long fileId;
 
     @Column(name = "transfer_id", unique = true, nullable = false)
@@ -27,6 +31,7 @@ public class FileTransferEntity {
     private Long fileSize;
     private String fileType;
     private Integer compressionLevel;
+    private String compressionCodec;
     private Integer chunkSize;
     private Integer noOfChunksUploaded;
     private Double networkSpeedMbps;
@@ -35,6 +40,8 @@ public class FileTransferEntity {
     private Integer transferDurationSeconds;
     private Long bytesTransferred;
     private Boolean success;
+    // Only ever changed by FileTransferRepo.addDownloads, so saving a stale entity cannot undo increments
+    @Column(updatable = false)
     private int downloadCount = 0;
     @Column(unique = true)
     private String shareToken;
@@ -47,6 +54,10 @@ public class FileTransferEntity {
     private String status;
     private LocalDateTime completedAt;
     private String storagePath;
+    @Column(length = 64)
+    private String contentHash;
+    /** null for a single stored object, "cdc" for a chunk manifest. */
+    private String storageLayout;
     @Column(nullable = false)
     private String clientIp;
     private Boolean deleted = false;
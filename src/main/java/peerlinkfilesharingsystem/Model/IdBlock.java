@@ -0,0 +1,26 @@
+package peerlinkfilesharingsystem.Model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * High-water mark of one ID sequence. Each application instance leases a
+ * block of values by advancing {@code nextValue} under a row lock and then
+ * hands them out from memory.
+ */
+@Entity
+@Table(name = "id_block")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IdBlock {
+
+    @Id
+    @Column(length = 32)
+    private String sequenceName;
+
+    @Column(nullable = false)
+    private Long nextValue;
+}
@@ -0,0 +1,42 @@
+package peerlinkfilesharingsystem.Model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * One physical object in the content-addressed store. Transfers point at it
+ * through {@link FileTransferEntity#getContentHash()}; the file is unlinked
+ * only when the last referencing transfer goes away.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StoredObject {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "stored_object_ids")
+    @TableGenerator(name = "stored_object_ids", table = EntityIds.TABLE, pkColumnName = EntityIds.NAME_COLUMN,
+            valueColumnName = EntityIds.VALUE_COLUMN, pkColumnValue = "stored_object",
+            initialValue = EntityIds.INITIAL_VALUE, allocationSize = EntityIds.ALLOCATION_SIZE)
+    private Long id;
+
+    @Column(name = "content_hash", unique = true, nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(nullable = false)
+    private String storagePath;
+    private String codec;
+    private Integer compressionLevel;
+    private Long originalSize;
+    private Long storedSize;
+    @Column(nullable = false)
+    private int refCount;
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+}
@@ -1,6 +1,10 @@
 package peerlinkfilesharingsystem.Repo;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import peerlinkfilesharingsystem.Model.ActiveDevice;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -13,8 +17,11 @@ public interface ActiveDeviceRepo extends JpaRepository<ActiveDevice, Long> {
     // Find device by session token
     Optional<ActiveDevice> findBySessionToken(String sessionToken);
     
-    // Cleanup stale sessions (older than X minutes)
-    void deleteByLastSeenBefore(LocalDateTime cutoff);
+    // Cleanup stale sessions (older than X minutes) - one bulk DELETE, not a load and delete per row
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ActiveDevice d WHERE d.lastSeen < :cutoff")
+    int deleteByLastSeenBefore(@Param("cutoff") LocalDateTime cutoff);
 
     List<ActiveDevice> findByIpAddress(String clientIp);
 }
\ No newline at end of file
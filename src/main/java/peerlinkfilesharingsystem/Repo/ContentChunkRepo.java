@@ -0,0 +1,26 @@
+package peerlinkfilesharingsystem.Repo;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import peerlinkfilesharingsystem.Model.ContentChunk;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ContentChunkRepo extends JpaRepository<ContentChunk, Long> {
+
+    Optional<ContentChunk> findByChunkHash(String chunkHash);
+
+    List<ContentChunk> findByChunkHashIn(Collection<String> chunkHashes);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ContentChunk c SET c.refCount = c.refCount + :delta WHERE c.chunkHash = :hash")
+    int adjustRefCount(@Param("hash") String chunkHash, @Param("delta") int delta);
+}
@@ -1,11 +1,16 @@
 package peerlinkfilesharingsystem.Repo;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import peerlinkfilesharingsystem.Dto.SharedFileResponse;
 import peerlinkfilesharingsystem.Model.FileShare;
 
+import java.util.List;
+import java.util.UUID;
+
 @Repository
 public interface FileShareRepo extends JpaRepository<FileShare, Long> {
     FileShare findByShareToken(String shareToken);
@@ -15,4 +20,21 @@ public interface FileShareRepo extends JpaRepository<FileShare, Long> {
 
     @Query("SELECT f FROM FileShare f WHERE f.ShareId = :shareId")
     FileShare findByShareId(@Param("shareId") Long shareId);
+
+    /** Token and numeric ID of every share, as [shareToken, ShareId] rows. */
+    @Query("SELECT f.shareToken, f.ShareId FROM FileShare f")
+    List<Object[]> findAllShareKeys();
+
+    /**
+     * The caller's shares, keyed by the owning transfer so the walk uses the same
+     * (user_id, file_id) index as the history and also finds shares whose own
+     * userId was never filled in.
+     */
+    @Query("SELECT new peerlinkfilesharingsystem.Dto.SharedFileResponse(t.fileId, t.transferId, s.fileName, " +
+            "s.fileType, s.fileSize, s.shareToken, s.ShareId, s.shareExpiresAt, t.downloadCount) " +
+            "FROM FileTransferEntity t JOIN FileShare s ON s.shareToken = t.shareToken " +
+            "WHERE t.userId = :userId AND t.fileId < :before ORDER BY t.fileId DESC")
+    List<SharedFileResponse> findSharesPage(@Param("userId") UUID userId,
+                                            @Param("before") long before,
+                                            Limit limit);
 }
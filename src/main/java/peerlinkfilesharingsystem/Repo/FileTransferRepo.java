@@ -1,9 +1,12 @@
 package peerlinkfilesharingsystem.Repo;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import peerlinkfilesharingsystem.Dto.TransferHistoryItem;
 import peerlinkfilesharingsystem.Model.FileTransferEntity;
 
 import java.io.File;
@@ -16,13 +19,14 @@ import java.util.UUID;
 public interface FileTransferRepo extends JpaRepository<FileTransferEntity,UUID> {
 
 
-    @Query(value = "SELECT * FROM file_transfer_entity " +
-            "WHERE user_id = :userId " +
-            "ORDER BY file_id DESC " +
-            "LIMIT :limit",
-            nativeQuery = true)
-    List<FileTransferEntity> findLastUploads(@Param("userId") UUID userId,
-                                             @Param("limit") int limit);
+    /** Newest first, strictly below {@code before}; a range scan on idx_file_transfer_user_file at any depth. */
+    @Query("SELECT new peerlinkfilesharingsystem.Dto.TransferHistoryItem(t.fileId, t.transferId, t.fileName, " +
+            "t.fileType, t.fileSize, t.bytesTransferred, t.status, t.success, t.markFileAs, t.downloadCount, " +
+            "t.createdAt, t.completedAt, t.expiresAt) " +
+            "FROM FileTransferEntity t WHERE t.userId = :userId AND t.fileId < :before ORDER BY t.fileId DESC")
+    List<TransferHistoryItem> findHistoryPage(@Param("userId") UUID userId,
+                                              @Param("before") long before,
+                                              Limit limit);
 
 
     Optional<FileTransferEntity> findByShareToken(String shareToken);
@@ -35,12 +39,26 @@ public interface FileTransferRepo extends JpaRepository<FileTransferEntity,UUID>
 
     Optional<FileTransferEntity> findByTransferId(String transferId);
 
-    @Query("SELECT CASE WHEN COUNT(f) > 0 THEN true ELSE false END FROM FileShare f WHERE f.ShareId = :shareId")
-    boolean checkShareId(@Param("shareId") Long shareId);
+    /** A public link resolved to the transfer it serves in one indexed join; empty once the share is gone. */
+    @Query("SELECT t FROM FileTransferEntity t JOIN FileShare s ON s.shareToken = t.shareToken " +
+            "WHERE s.shareToken = :shareToken")
+    Optional<FileTransferEntity> findPublicByShareToken(@Param("shareToken") String shareToken);
+
+    @Query("SELECT t FROM FileTransferEntity t JOIN FileShare s ON s.shareToken = t.shareToken " +
+            "WHERE s.ShareId = :shareId")
+    Optional<FileTransferEntity> findPublicByShareId(@Param("shareId") Long shareId);
+
 
 
 
     List<FileTransferEntity> findBySuccessFalseOrStatus(String failed);
 
     List<FileTransferEntity> findByExpiresAtBeforeAndDeletedFalse(LocalDateTime now);
+
+    List<FileTransferEntity> findByStatusIn(List<String> statuses);
+
+    /** Relative increment; never read-modify-write through a loaded entity. */
+    @Modifying
+    @Query("UPDATE FileTransferEntity f SET f.downloadCount = f.downloadCount + :delta WHERE f.transferId = :transferId")
+    int addDownloads(@Param("transferId") String transferId, @Param("delta") long delta);
 }
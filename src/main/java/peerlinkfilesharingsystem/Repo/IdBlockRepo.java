@@ -0,0 +1,25 @@
+package peerlinkfilesharingsystem.Repo;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import peerlinkfilesharingsystem.Model.IdBlock;
+
+import java.util.Optional;
+
+@Repository
+public interface IdBlockRepo extends JpaRepository<IdBlock, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM IdBlock b WHERE b.sequenceName = :name")
+    Optional<IdBlock> findForUpdate(@Param("name") String sequenceName);
+
+    /** Plain insert: fails on a duplicate name instead of merging onto a row another instance just created. */
+    @Modifying
+    @Query(value = "INSERT INTO id_block (sequence_name, next_value) VALUES (:name, :nextValue)", nativeQuery = true)
+    void insertSequence(@Param("name") String sequenceName, @Param("nextValue") long nextValue);
+}
@@ -0,0 +1,22 @@
+package peerlinkfilesharingsystem.Repo;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import peerlinkfilesharingsystem.Model.StoredObject;
+
+import java.util.Optional;
+
+@Repository
+public interface StoredObjectRepo extends JpaRepository<StoredObject, Long> {
+
+    Optional<StoredObject> findByContentHash(String contentHash);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE StoredObject s SET s.refCount = s.refCount + :delta WHERE s.contentHash = :hash")
+    int adjustRefCount(@Param("hash") String contentHash, @Param("delta") int delta);
+}
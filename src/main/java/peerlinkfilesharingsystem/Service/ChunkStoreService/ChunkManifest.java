@@ -0,0 +1,61 @@
+package peerlinkfilesharingsystem.Service.ChunkStoreService;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Ordered list of chunk hashes that make up one transfer. Binary layout:
+ * magic, total length, chunk count, then per chunk the raw SHA-256, the
+ * uncompressed length and the codec the chunk was stored with.
+ */
+public record ChunkManifest(long totalSize, List<Entry> entries) {
+
+    private static final int MAGIC = 0x504C4344; // "PLCD"
+    private static final int VERSION = 1;
+
+    public record Entry(String hash, int length, String codec) {
+    }
+
+    public void write(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(totalSize);
+            out.writeInt(entries.size());
+            HexFormat hex = HexFormat.of();
+            for (Entry entry : entries) {
+                out.write(hex.parseHex(entry.hash()));
+                out.writeInt(entry.length());
+                out.writeUTF(entry.codec());
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static ChunkManifest read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a chunk manifest: " + path);
+            }
+            long totalSize = in.readLong();
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            HexFormat hex = HexFormat.of();
+            byte[] hash = new byte[32];
+            for (int i = 0; i < count; i++) {
+                in.readFully(hash);
+                entries.add(new Entry(hex.formatHex(hash), in.readInt(), in.readUTF()));
+            }
+            return new ChunkManifest(totalSize, entries);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package peerlinkfilesharingsystem.Service.ChunkStoreService;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import peerlinkfilesharingsystem.Model.ContentChunk;
+import peerlinkfilesharingsystem.Repo.ContentChunkRepo;
+import peerlinkfilesharingsystem.Service.CompressionService.CompressionCodec;
+import peerlinkfilesharingsystem.Service.CompressionService.CompressionCodecRegistry;
+import peerlinkfilesharingsystem.Service.CompressionService.FileCompressionService;
+import peerlinkfilesharingsystem.Service.CompressionService.StoreCodec;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sub-file deduplication. With {@code file.storage.layout=cdc} an upload is cut
+ * into content-defined chunks, each chunk is compressed on its own and stored
+ * once under {@code <storage>/chunks/<ab>/<sha256>}, and the transfer keeps
+ * only a manifest. A re-upload of a slightly edited file then stores just the
+ * chunks around the edit.
+ */
+@Service
+@Slf4j
+public class ChunkStoreService {
+
+    public static final String LAYOUT_CDC = "cdc";
+
+    private static final int LOCK_STRIPES = 64;
+    private static final int ENCODER_BUFFER_SIZE = 64 * 1024;
+    private static final int DECODER_BUFFER_SIZE = 64 * 1024;
+
+    private final ContentChunkRepo contentChunkRepo;
+    private final CompressionCodecRegistry codecRegistry;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final LayoutStats cdcStats = new LayoutStats();
+    private final LayoutStats objectStats = new LayoutStats();
+
+    @Value("${file.storage.path:./uploads}")
+    private String baseUploadDirectory;
+
+    @Value("${file.storage.layout:object}")
+    private String storageLayout;
+
+    @Value("${file.storage.cdc.avg-chunk-bytes:1048576}")
+    private int avgChunkBytes;
+
+    private FastCdcChunker chunker;
+
+    public ChunkStoreService(ContentChunkRepo contentChunkRepo, CompressionCodecRegistry codecRegistry) {
+        this.contentChunkRepo = contentChunkRepo;
+        this.codecRegistry = codecRegistry;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        chunker = new FastCdcChunker(avgChunkBytes);
+        log.info("Storage layout: {} (CDC average chunk {} bytes)", storageLayout, avgChunkBytes);
+    }
+
+    public boolean isEnabled() {
+        return LAYOUT_CDC.equalsIgnoreCase(storageLayout);
+    }
+
+    public String manifestPath(String transferId) {
+        return baseUploadDirectory + "/manifests/" + transferId + ".cdcm";
+    }
+
+    private String chunkPath(String chunkHash) {
+        return baseUploadDirectory + "/chunks/" + chunkHash.substring(0, 2) + "/" + chunkHash;
+    }
+
+    /**
+     * Chunks, deduplicates and stores an upload stream, then writes its manifest.
+     * The result's compressed size is the stored size of all chunks the transfer
+     * references, shared or not.
+     */
+    public FileCompressionService.StreamCompressionResult ingest(InputStream inputStream, String transferId,
+                                                                 CompressionCodec codec, int level,
+                                                                 MessageDigest digest) throws IOException {
+        long startTime = System.nanoTime();
+        int maxSize = chunker.getMaxSize();
+        byte[] buffer = new byte[maxSize * 2];
+        int start = 0;
+        int end = 0;
+        boolean eof = false;
+
+        List<ChunkManifest.Entry> entries = new ArrayList<>();
+        long totalSize = 0;
+        long referencedStoredSize = 0;
+        long newStoredSize = 0;
+        try {
+            while (true) {
+                if (!eof && end - start < maxSize) {
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    end -= start;
+                    start = 0;
+                    while (end < buffer.length && !eof) {
+                        int bytesRead = inputStream.read(buffer, end, buffer.length - end);
+                        if (bytesRead == -1) {
+                            eof = true;
+                        } else {
+                            end += bytesRead;
+                        }
+                    }
+                }
+                if (start == end) {
+                    break;
+                }
+
+                int cut = chunker.nextCut(buffer, start, end - start);
+                if (digest != null) {
+                    digest.update(buffer, start, cut);
+                }
+                StoredChunk stored = storeChunk(buffer, start, cut, codec, level);
+                entries.add(new ChunkManifest.Entry(stored.hash, cut, stored.codec));
+                referencedStoredSize += stored.storedSize;
+                if (stored.created) {
+                    newStoredSize += stored.storedSize;
+                }
+                totalSize += cut;
+                start += cut;
+            }
+            new ChunkManifest(totalSize, entries).write(Paths.get(manifestPath(transferId)));
+        } catch (IOException | RuntimeException e) {
+            // Hand back the references taken so far, nothing will ever point at them
+            releaseEntries(entries);
+            throw e;
+        }
+
+        long durationNanos = Math.max(1, System.nanoTime() - startTime);
+        cdcStats.record(totalSize, newStoredSize, durationNanos);
+        long distinctChunks = entries.stream().map(ChunkManifest.Entry::hash).distinct().count();
+        log.info("CDC ingest - TransferId: {}, Chunks: {} ({} distinct), Logical: {} bytes, Newly stored: {} bytes",
+                transferId, entries.size(), distinctChunks, totalSize, newStoredSize);
+        return new FileCompressionService.StreamCompressionResult(
+                totalSize, referencedStoredSize, Math.max(1, durationNanos / 1_000_000));
+    }
+
+    /** Streams the chunks of a manifest back in order, decoding each one. */
+    public InputStream openStream(String manifestPath) throws IOException {
+        return new ManifestInputStream(ChunkManifest.read(Paths.get(manifestPath)));
+    }
+
+    /**
+     * Reassembles a manifest from {@code offset} onward. Whole chunks before the
+     * offset are skipped using the lengths in the manifest, without opening them.
+     */
+    public InputStream openStream(String manifestPath, long offset) throws IOException {
+        ChunkManifest manifest = ChunkManifest.read(Paths.get(manifestPath));
+        List<ChunkManifest.Entry> entries = manifest.entries();
+        int first = 0;
+        long skipped = 0;
+        while (first < entries.size() && skipped + entries.get(first).length() <= offset) {
+            skipped += entries.get(first).length();
+            first++;
+        }
+        InputStream in = new ManifestInputStream(new ChunkManifest(manifest.totalSize() - skipped,
+                entries.subList(first, entries.size())));
+        in.skipNBytes(offset - skipped);
+        return in;
+    }
+
+    /** Drops the manifest's chunk references and deletes the manifest. */
+    public void release(String manifestPath) throws IOException {
+        Path path = Paths.get(manifestPath);
+        if (!Files.exists(path)) {
+            log.warn("Manifest not found on disk: {}", manifestPath);
+            return;
+        }
+        releaseEntries(ChunkManifest.read(path).entries());
+        Files.deleteIfExists(path);
+    }
+
+    /** Counters since start-up for uploads stored as a single object, fed by the upload path. */
+    public void recordObjectIngest(long originalSize, long physicalSize, long durationMs) {
+        objectStats.record(originalSize, physicalSize, Math.max(1, durationMs) * 1_000_000);
+    }
+
+    /**
+     * Live comparison of the two layouts since start-up: how many logical bytes
+     * were accepted, how many actually hit the disk and how fast ingest ran.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("activeLayout", isEnabled() ? LAYOUT_CDC : "object");
+        stats.put("avgChunkBytes", avgChunkBytes);
+        stats.put(LAYOUT_CDC, cdcStats.toMap());
+        stats.put("object", objectStats.toMap());
+        stats.put("storedChunks", contentChunkRepo.count());
+        return stats;
+    }
+
+    private StoredChunk storeChunk(byte[] data, int offset, int length, CompressionCodec codec, int level)
+            throws IOException {
+        MessageDigest chunkDigest = newSha256();
+        chunkDigest.update(data, offset, length);
+        String hash = HexFormat.of().formatHex(chunkDigest.digest());
+
+        synchronized (lockFor(hash)) {
+            ContentChunk existing = contentChunkRepo.findByChunkHash(hash).orElse(null);
+            if (existing != null && new File(chunkPath(hash)).isFile()) {
+                contentChunkRepo.adjustRefCount(hash, 1);
+                return new StoredChunk(hash, existing.getCodec(), existing.getStoredSize(), false);
+            }
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            try (OutputStream encoder = codec.encoder(compressed, level, ENCODER_BUFFER_SIZE)) {
+                encoder.write(data, offset, length);
+            }
+            String chunkCodec = codec.getName();
+            byte[] payload = compressed.toByteArray();
+            if (payload.length >= length) {
+                chunkCodec = StoreCodec.NAME;
+                payload = Arrays.copyOfRange(data, offset, offset + length);
+            }
+
+            Path target = Paths.get(chunkPath(hash));
+            Files.createDirectories(target.getParent());
+            Path temp = target.resolveSibling(hash + ".tmp");
+            Files.write(temp, payload);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            ContentChunk chunk = existing != null ? existing : new ContentChunk();
+            chunk.setChunkHash(hash);
+            chunk.setCodec(chunkCodec);
+            chunk.setOriginalSize(length);
+            chunk.setStoredSize(payload.length);
+            chunk.setRefCount(existing != null ? existing.getRefCount() + 1 : 1);
+            contentChunkRepo.save(chunk);
+            return new StoredChunk(hash, chunkCodec, payload.length, true);
+        }
+    }
+
+    private void releaseEntries(List<ChunkManifest.Entry> entries) {
+        Map<String, Integer> references = new LinkedHashMap<>();
+        for (ChunkManifest.Entry entry : entries) {
+            references.merge(entry.hash(), 1, Integer::sum);
+        }
+        references.forEach((hash, count) -> {
+            synchronized (lockFor(hash)) {
+                ContentChunk chunk = contentChunkRepo.findByChunkHash(hash).orElse(null);
+                if (chunk == null) {
+                    return;
+                }
+                if (chunk.getRefCount() > count) {
+                    contentChunkRepo.adjustRefCount(hash, -count);
+                    return;
+                }
+                File file = new File(chunkPath(hash));
+                if (file.exists() && !file.delete()) {
+                    log.warn("Could not delete unreferenced chunk {}", hash);
+                }
+                contentChunkRepo.delete(chunk);
+            }
+        });
+        log.info("Released {} chunk references ({} distinct)", entries.size(), references.size());
+    }
+
+    private Object lockFor(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record StoredChunk(String hash, String codec, int storedSize, boolean created) {
+    }
+
+    /** Reassembles a manifest, opening one chunk at a time. */
+    private class ManifestInputStream extends InputStream {
+        private final Iterator<ChunkManifest.Entry> entries;
+        private InputStream current;
+        private ChunkManifest.Entry currentEntry;
+        private long currentRead;
+
+        ManifestInputStream(ChunkManifest manifest) {
+            this.entries = manifest.entries().iterator();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                if (current == null && !advance()) {
+                    return -1;
+                }
+                int n = current.read(b, off, len);
+                if (n != -1) {
+                    currentRead += n;
+                    return n;
+                }
+                if (currentRead != currentEntry.length()) {
+                    throw new IOException("Chunk " + currentEntry.hash() + " is corrupt: expected "
+                            + currentEntry.length() + " bytes, got " + currentRead);
+                }
+                current.close();
+                current = null;
+            }
+        }
+
+        private boolean advance() throws IOException {
+            if (!entries.hasNext()) {
+                return false;
+            }
+            currentEntry = entries.next();
+            currentRead = 0;
+            current = codecRegistry.get(currentEntry.codec())
+                    .decoder(new FileInputStream(chunkPath(currentEntry.hash())), DECODER_BUFFER_SIZE);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+    }
+
+    private static class LayoutStats {
+        private final LongAdder files = new LongAdder();
+        private final LongAdder logicalBytes = new LongAdder();
+        private final LongAdder physicalBytes = new LongAdder();
+        private final LongAdder ingestNanos = new LongAdder();
+
+        void record(long logical, long physical, long nanos) {
+            files.increment();
+            logicalBytes.add(logical);
+            physicalBytes.add(physical);
+            ingestNanos.add(nanos);
+        }
+
+        Map<String, Object> toMap() {
+            long logical = logicalBytes.sum();
+            long physical = physicalBytes.sum();
+            long nanos = ingestNanos.sum();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("files", files.sum());
+            map.put("logicalBytes", logical);
+            map.put("physicalBytes", physical);
+            map.put("dedupRatio", physical == 0 ? null : Math.round((double) logical / physical * 100) / 100.0);
+            map.put("ingestThroughputMBps", nanos == 0 ? null
+                    : Math.round(logical / 1024.0 / 1024.0 / (nanos / 1e9) * 100) / 100.0);
+            return map;
+        }
+    }
+}
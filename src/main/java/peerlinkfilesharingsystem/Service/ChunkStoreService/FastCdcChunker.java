@@ -0,0 +1,85 @@
+package peerlinkfilesharingsystem.Service.ChunkStoreService;
+
+/**
+ * FastCDC cut-point search (Xia et al., USENIX ATC '16) with normalized chunking:
+ * a gear rolling hash is tested against a stricter mask before the target size
+ * and a looser one after it, which pulls chunk sizes towards the average while
+ * keeping boundaries content-defined, so an insert only disturbs nearby chunks.
+ */
+public final class FastCdcChunker {
+
+    /** Fixed seed: the gear table must never change or existing chunks stop matching. */
+    private static final long GEAR_SEED = 0x5045455220434443L;
+    private static final long[] GEAR = new long[256];
+
+    static {
+        long state = GEAR_SEED;
+        for (int i = 0; i < GEAR.length; i++) {
+            // splitmix64
+            state += 0x9E3779B97F4A7C15L;
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            GEAR[i] = z ^ (z >>> 31);
+        }
+    }
+
+    private final int minSize;
+    private final int avgSize;
+    private final int maxSize;
+    private final long maskSmall;
+    private final long maskLarge;
+
+    public FastCdcChunker(int avgSize) {
+        if (Integer.bitCount(avgSize) != 1 || avgSize < 1024) {
+            throw new IllegalArgumentException("Average chunk size must be a power of two >= 1024");
+        }
+        this.avgSize = avgSize;
+        this.minSize = avgSize / 4;
+        this.maxSize = avgSize * 4;
+        int bits = Integer.numberOfTrailingZeros(avgSize);
+        // Spread the mask bits over the high half of the hash, where the gear mixes best
+        this.maskSmall = spreadMask(bits + 2);
+        this.maskLarge = spreadMask(bits - 2);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the length of the next chunk starting at {@code offset}. Callers
+     * must pass at least {@link #getMaxSize()} bytes unless the input has ended.
+     */
+    public int nextCut(byte[] data, int offset, int length) {
+        if (length <= minSize) {
+            return length;
+        }
+        int end = Math.min(length, maxSize);
+        int normal = Math.min(end, avgSize);
+        long fingerprint = 0;
+        int i = minSize;
+        for (; i < normal; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[data[offset + i] & 0xFF];
+            if ((fingerprint & maskSmall) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < end; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[data[offset + i] & 0xFF];
+            if ((fingerprint & maskLarge) == 0) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    private static long spreadMask(int bits) {
+        long mask = 0;
+        // Every other bit from the top, as in the reference masks
+        for (int i = 0, bit = 63; i < bits && bit >= 0; i++, bit -= 2) {
+            mask |= 1L << bit;
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,568 @@
+package peerlinkfilesharingsystem.Service.ChunkedUploadService;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import peerlinkfilesharingsystem.Dto.ChunkedUploadInitRequest;
+import peerlinkfilesharingsystem.Dto.ChunkedUploadStatus;
+import peerlinkfilesharingsystem.Dto.FileUploadResponse;
+import peerlinkfilesharingsystem.Exception.UnauthorizedFileAccessException;
+import peerlinkfilesharingsystem.Exception.UploadQueueFullException;
+import peerlinkfilesharingsystem.Model.FileTransferEntity;
+import peerlinkfilesharingsystem.Model.Users;
+import peerlinkfilesharingsystem.Repo.FileTransferRepo;
+import peerlinkfilesharingsystem.Repo.UserRepo;
+import peerlinkfilesharingsystem.Service.CompressionService.CompressionCodecRegistry;
+import peerlinkfilesharingsystem.Service.CompressionService.EntropySampler;
+import peerlinkfilesharingsystem.Service.CompressionService.FileCompressionService;
+import peerlinkfilesharingsystem.Service.ContentStoreService.ContentStoreService;
+import peerlinkfilesharingsystem.Service.FileStorageService.FileStorageService;
+import peerlinkfilesharingsystem.Service.FileUploadService.FileUploadService;
+import peerlinkfilesharingsystem.Service.IdAllocatorService.IdAllocatorService;
+import peerlinkfilesharingsystem.Service.IntelligencePredictionService.IntelligencePredictionService;
+import peerlinkfilesharingsystem.Service.UploadQueueService.UploadQueueService;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Resumable uploads: the client announces the file, then sends fixed-size chunks
+ * in any order and over as many connections as it likes. Each chunk is written
+ * with a positional write into a preallocated staging file, forced to disk,
+ * and only then recorded in a bitmap that is persisted next to it, so an
+ * acknowledged chunk survives both dropped connections and server restarts.
+ * Compression starts as soon as the last missing chunk lands; an upload whose
+ * chunks were all in when the server stopped is finalized again on startup.
+ */
+@Service
+@Slf4j
+public class ChunkedUploadService {
+
+    public static final String STATUS_UPLOADING = "UPLOADING";
+    public static final String STATUS_PROCESSING = "PROCESSING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    private static final long MAX_UPLOAD_SIZE_BYTES = 10 * 1024 * 1024 * 1024L;
+    private static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int COPY_BUFFER_SIZE = 256 * 1024;
+    private static final long FINISHED_SESSION_TTL_MINUTES = 60;
+    private static final String STAGING_SUFFIX = ".part";
+
+    private final FileTransferRepo fileTransferRepo;
+    private final UserRepo userRepo;
+    private final FileUploadService fileUploadService;
+    private final FileStorageService fileStorageService;
+    private final FileCompressionService compressionService;
+    private final CompressionCodecRegistry codecRegistry;
+    private final IntelligencePredictionService intelligencePredictionService;
+    private final UploadQueueService uploadQueueService;
+    private final IdAllocatorService idAllocatorService;
+
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    @Value("${upload.chunked.complete-wait-seconds:30}")
+    private long completeWaitSeconds;
+
+    public ChunkedUploadService(FileTransferRepo fileTransferRepo,
+                                UserRepo userRepo,
+                                FileUploadService fileUploadService,
+                                FileStorageService fileStorageService,
+                                FileCompressionService compressionService,
+                                CompressionCodecRegistry codecRegistry,
+                                IntelligencePredictionService intelligencePredictionService,
+                                UploadQueueService uploadQueueService,
+                                IdAllocatorService idAllocatorService) {
+        this.fileTransferRepo = fileTransferRepo;
+        this.userRepo = userRepo;
+        this.fileUploadService = fileUploadService;
+        this.fileStorageService = fileStorageService;
+        this.compressionService = compressionService;
+        this.codecRegistry = codecRegistry;
+        this.intelligencePredictionService = intelligencePredictionService;
+        this.uploadQueueService = uploadQueueService;
+        this.idAllocatorService = idAllocatorService;
+    }
+
+    public ChunkedUploadStatus initUpload(ChunkedUploadInitRequest request, Double networkSpeedMbps,
+                                          Integer latencyMs, String deviceType, String clientIp) throws IOException {
+        if (request.getFileName() == null || request.getFileName().isBlank()) {
+            throw new IllegalArgumentException("File name is required");
+        }
+        if (request.getFileSize() == null || request.getFileSize() <= 0) {
+            throw new IllegalArgumentException("File Cant be Empty");
+        }
+        if (request.getFileSize() > MAX_UPLOAD_SIZE_BYTES) {
+            throw new IllegalArgumentException("File Size Exceeded");
+        }
+
+        String clientCodec = codecRegistry.forContentEncoding(request.getContentEncoding());
+        Users users = retriveLoggedInUser();
+        // Finalization of an accepted session is never refused, so admission happens here
+        if (!uploadQueueService.hasCapacity(users.getId())) {
+            throw new UploadQueueFullException(uploadQueueService.suggestRetryAfterSeconds(users.getId()));
+        }
+        int chunkSize = request.getChunkSize() == null
+                ? DEFAULT_CHUNK_SIZE
+                : Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, request.getChunkSize()));
+        String transferId = idAllocatorService.nextTransferId();
+        String extension = extractFileType(request.getFileName());
+
+        String userPath = fileStorageService.createUserDirectory(String.valueOf(users.getId()));
+        fileStorageService.validateUserAccess(users.getId().toString(), userPath);
+        String stagingPath = userPath + "/" + transferId + STAGING_SUFFIX;
+
+        // Reserve the whole file up front so chunks can land anywhere without extending it
+        try (RandomAccessFile staging = new RandomAccessFile(stagingPath, "rw")) {
+            staging.setLength(request.getFileSize());
+        }
+
+        FileTransferEntity transfer = fileUploadService.newTransferEntity(transferId, users, request.getFileName(),
+                extension, deviceType, request.getFileSize(), latencyMs, networkSpeedMbps, clientIp);
+        transfer.setChunkSize(chunkSize);
+        transfer.setNoOfChunksUploaded(0);
+        transfer.setStatus(STATUS_UPLOADING);
+        // Set only for client-compressed payloads; survives restarts so finalization knows to store as-is
+        transfer.setCompressionCodec(clientCodec);
+        // Until finalization the staging file is the stored object, so expiry cleanup reclaims abandoned uploads
+        transfer.setStoragePath(stagingPath);
+        fileTransferRepo.save(transfer);
+
+        UploadSession session = new UploadSession(transfer, new BitSet());
+        sessions.put(transferId, session);
+
+        log.info("Chunked upload initialised - TransferId: {}, Size: {} bytes, Chunk Size: {} bytes, Chunks: {}",
+                transferId, request.getFileSize(), chunkSize, session.totalChunks);
+        return toStatus(session, STATUS_UPLOADING, null);
+    }
+
+    public ChunkedUploadStatus putChunk(String transferId, int index, InputStream body, long contentLength)
+            throws IOException {
+        Users users = retriveLoggedInUser();
+        UploadSession session = openSession(transferId, users);
+
+        if (index < 0 || index >= session.totalChunks) {
+            throw new IllegalArgumentException("Chunk index out of range: " + index);
+        }
+        long expectedLength = session.chunkLength(index);
+        if (contentLength >= 0 && contentLength != expectedLength) {
+            throw new IllegalArgumentException("Chunk " + index + " must be " + expectedLength + " bytes");
+        }
+        if (session.finalization != null) {
+            return toStatus(session, STATUS_PROCESSING, "All chunks already received");
+        }
+
+        long position = (long) index * session.chunkSize;
+        long written = 0;
+        ReadableByteChannel source = Channels.newChannel(body);
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(COPY_BUFFER_SIZE, expectedLength));
+        while (written < expectedLength) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), expectedLength - written));
+            if (source.read(buffer) == -1) {
+                break;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += session.channel.write(buffer, position + written);
+            }
+        }
+        if (written != expectedLength || body.read() != -1) {
+            throw new IllegalArgumentException("Chunk " + index + " must be " + expectedLength + " bytes");
+        }
+
+        // The bitmap must never claim a chunk whose bytes are still only in the page cache
+        session.channel.force(false);
+        boolean lastChunk = session.markReceived(index);
+        log.debug("Chunk {}/{} stored for transfer {}", index + 1, session.totalChunks, transferId);
+
+        if (lastChunk) {
+            log.info("All {} chunks received for transfer {} - starting finalization", session.totalChunks, transferId);
+            startFinalization(session);
+            return toStatus(session, STATUS_PROCESSING, null);
+        }
+        return toStatus(session, STATUS_UPLOADING, null);
+    }
+
+    /**
+     * Chunked uploads that had every chunk when the server stopped, whether or not
+     * finalization had begun, are finalized again from their staging file. One
+     * whose staging file is gone can never complete and is marked failed, so
+     * cleanup reclaims it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeFinalizations() {
+        for (FileTransferEntity transfer : fileTransferRepo.findByStatusIn(List.of(STATUS_UPLOADING, STATUS_PROCESSING))) {
+            String stagingPath = transfer.getStoragePath();
+            if (stagingPath == null || !stagingPath.endsWith(STAGING_SUFFIX)) {
+                continue;
+            }
+            String transferId = transfer.getTransferId();
+            if (!Files.isRegularFile(Paths.get(stagingPath))) {
+                log.warn("Staging file of chunked upload {} is gone - marking it failed", transferId);
+                transfer.setSuccess(false);
+                transfer.setStatus(STATUS_FAILED);
+                fileTransferRepo.save(transfer);
+                continue;
+            }
+            try {
+                UploadSession session = new UploadSession(transfer, UploadSession.loadBitmap(stagingPath));
+                boolean complete = STATUS_PROCESSING.equals(transfer.getStatus())
+                        || session.receivedCount() == session.totalChunks;
+                if (!complete) {
+                    // Still waiting on the client; openSession picks it up when it comes back
+                    session.closeChannel();
+                    continue;
+                }
+                sessions.put(transferId, session);
+                startFinalization(session);
+                log.info("Re-queued finalization of chunked upload {} after restart", transferId);
+            } catch (IOException e) {
+                log.error("Could not resume chunked upload {}", transferId, e);
+            }
+        }
+    }
+
+    public ChunkedUploadStatus getStatus(String transferId) {
+        Users users = retriveLoggedInUser();
+        UploadSession session = sessions.get(transferId);
+        if (session != null) {
+            checkOwner(session, users);
+            return toStatus(session, currentStatus(session), null);
+        }
+        FileTransferEntity transfer = findOwnedTransfer(transferId, users);
+        if (STATUS_UPLOADING.equals(transfer.getStatus())) {
+            session = openSession(transferId, users);
+            return toStatus(session, STATUS_UPLOADING, null);
+        }
+        int totalChunks = transfer.getChunkSize() == null ? 0 : (int) ((transfer.getFileSize() + transfer.getChunkSize() - 1) / transfer.getChunkSize());
+        return ChunkedUploadStatus.builder()
+                .transferId(transferId)
+                .fileName(transfer.getFileName())
+                .fileSize(transfer.getFileSize())
+                .chunkSize(transfer.getChunkSize())
+                .totalChunks(totalChunks)
+                .receivedChunks(transfer.getNoOfChunksUploaded())
+                .missingChunks(List.of())
+                .status(transfer.getStatus())
+                .build();
+    }
+
+    /**
+     * Waits up to {@code upload.chunked.complete-wait-seconds} for the finalization
+     * started by the last chunk and returns the usual upload response, or a
+     * PROCESSING response if it is still running. Once the session is gone (an
+     * earlier call took the result, or it was evicted) the outcome recorded on the
+     * transfer is returned, so a retried call still gets an answer. Fails with the
+     * list of missing chunks if called too early.
+     */
+    public FileUploadResponse completeUpload(String transferId) throws IOException {
+        Users users = retriveLoggedInUser();
+        UploadSession session = sessions.get(transferId);
+        if (session == null) {
+            FileTransferEntity transfer = findOwnedTransfer(transferId, users);
+            if (!STATUS_UPLOADING.equals(transfer.getStatus())) {
+                return fileUploadService.uploadStatusOf(transfer);
+            }
+            session = openSession(transferId, users);
+        }
+        checkOwner(session, users);
+        if (session.finalization == null) {
+            throw new IllegalStateException("Upload incomplete, missing chunks: " + session.missingChunks());
+        }
+        try {
+            FileUploadResponse response = session.finalization.get(completeWaitSeconds, TimeUnit.SECONDS);
+            sessions.remove(transferId);
+            return response;
+        } catch (TimeoutException e) {
+            // Don't hold a request thread for the whole compression; the client calls again or polls the status
+            return FileUploadResponse.builder()
+                    .transferId(transferId)
+                    .fileName(session.fileName)
+                    .fileSizeBytes(session.fileSize)
+                    .status(STATUS_PROCESSING)
+                    .success(true)
+                    .message("Still finalizing, call complete again or poll the upload status")
+                    .build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for finalization");
+        } catch (ExecutionException e) {
+            sessions.remove(transferId);
+            throw new IOException("Finalization failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    public void evictFinishedSessions() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(FINISHED_SESSION_TTL_MINUTES);
+        sessions.values().removeIf(session -> session.finalization != null
+                && session.finalization.isDone()
+                && session.finishedAt != null
+                && session.finishedAt.isBefore(cutoff));
+    }
+
+    private void startFinalization(UploadSession session) {
+        CompletableFuture<FileUploadResponse> finalization = new CompletableFuture<>();
+        session.finalization = finalization;
+        uploadQueueService.submitAccepted(session.userId, () -> {
+            try {
+                finalization.complete(finalizeUpload(session));
+            } catch (Throwable t) {
+                finalization.completeExceptionally(t);
+            }
+        });
+    }
+
+    private FileUploadResponse finalizeUpload(UploadSession session) {
+        String transferId = session.transferId;
+        FileTransferEntity transfer = fileTransferRepo.findByTransferId(transferId)
+                .orElseThrow(() -> new IllegalStateException("Transfer vanished: " + transferId));
+        try {
+            session.closeChannel();
+            transfer.setStatus(STATUS_PROCESSING);
+            transfer.setNoOfChunksUploaded(session.totalChunks);
+            fileTransferRepo.save(transfer);
+
+            String clientCodec = transfer.getCompressionCodec();
+            String userPath = fileStorageService.createUserDirectory(String.valueOf(transfer.getUserId()));
+            String finalPath = userPath + "/" + transferId;
+            IntelligencePredictionService.OptimizationParams params;
+            FileCompressionService.StreamCompressionResult result;
+            long compressedSize;
+            MessageDigest contentDigest = ContentStoreService.newDigest();
+            long startTime = System.nanoTime();
+
+            if (clientCodec != null) {
+                // Already compressed by the client: verify the container, then keep the staged bytes as the object
+                params = fileUploadService.predictForPrecompressed(transfer.getFileName(), transfer.getFileType(),
+                        transfer.getNetworkSpeedMbps(), transfer.getLatencyMs(), transfer.getFileSize(), clientCodec);
+                long originalSize;
+                try (InputStream in = new FileInputStream(session.stagingPath)) {
+                    originalSize = compressionService.verifyPrecompressed(in, codecRegistry.get(clientCodec), contentDigest);
+                }
+                compressedSize = transfer.getFileSize();
+                Files.move(Paths.get(session.stagingPath), Paths.get(finalPath), StandardCopyOption.REPLACE_EXISTING);
+                transfer.setFileSize(originalSize);
+                result = new FileCompressionService.StreamCompressionResult(originalSize, compressedSize,
+                        Math.max(1, (System.nanoTime() - startTime) / 1_000_000));
+            } else {
+                Double sampledEntropy;
+                try (InputStream in = new BufferedInputStream(new FileInputStream(session.stagingPath), EntropySampler.SAMPLE_BYTES)) {
+                    sampledEntropy = EntropySampler.sample(in);
+                }
+                params = intelligencePredictionService.predictOptimalParameters(
+                        transfer.getFileName(), transfer.getFileType(), transfer.getNetworkSpeedMbps(),
+                        transfer.getLatencyMs(), transfer.getFileSize(), sampledEntropy);
+
+                try (InputStream in = new FileInputStream(session.stagingPath)) {
+                    result = fileUploadService.processUploadWithCompression(
+                            in, transfer, userPath, params, false, contentDigest);
+                }
+                compressedSize = result.getCompressedSize();
+                Files.deleteIfExists(Paths.get(session.stagingPath));
+            }
+            Files.deleteIfExists(session.bitmapPath());
+
+            transfer.setTransferDurationSeconds((int) java.time.Duration.between(transfer.getCreatedAt(), LocalDateTime.now()).toSeconds());
+            transfer.setSuccess(true);
+            transfer.setStatus(STATUS_COMPLETED);
+            transfer.setCompletedAt(LocalDateTime.now());
+            boolean deduplicated = fileUploadService.adoptIntoContentStore(transfer, params,
+                    ContentStoreService.toHex(contentDigest), finalPath, result);
+            fileTransferRepo.save(transfer);
+
+            if (clientCodec == null) {
+                fileUploadService.learnFromUpload(transfer.getFileType(), params, transfer.getChunkSize(), deduplicated);
+            }
+
+            log.info("Chunked upload finalized - TransferId: {}, Compressed: {} bytes, Rate: {} MB/s",
+                    transferId, compressedSize, String.format("%.2f", result.getThroughputMBps()));
+            FileUploadResponse response = fileUploadService.buildSuccessResponse(transfer, params, result);
+            response.setDeduplicated(deduplicated);
+            return response;
+
+        } catch (Exception e) {
+            log.error("Finalization failed for chunked upload {}", transferId, e);
+            transfer.setSuccess(false);
+            transfer.setStatus(STATUS_FAILED);
+            fileTransferRepo.save(transfer);
+            try {
+                Files.deleteIfExists(session.bitmapPath());
+            } catch (IOException ignored) {
+            }
+            throw new CompletionException(e);
+        } finally {
+            session.finishedAt = LocalDateTime.now();
+        }
+    }
+
+    private UploadSession openSession(String transferId, Users users) {
+        UploadSession session = sessions.computeIfAbsent(transferId, id -> {
+            FileTransferEntity transfer = findOwnedTransfer(id, users);
+            if (!STATUS_UPLOADING.equals(transfer.getStatus())) {
+                throw new IllegalStateException("Transfer " + id + " is not accepting chunks (" + transfer.getStatus() + ")");
+            }
+            try {
+                log.info("Resuming chunked upload {} from persisted bitmap", id);
+                return new UploadSession(transfer, UploadSession.loadBitmap(transfer.getStoragePath()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        checkOwner(session, users);
+        return session;
+    }
+
+    private FileTransferEntity findOwnedTransfer(String transferId, Users users) {
+        FileTransferEntity transfer = fileTransferRepo.findByTransferId(transferId)
+                .orElseThrow(() -> new IllegalArgumentException("Transfer not found: " + transferId));
+        if (!users.getId().equals(transfer.getUserId())) {
+            throw new UnauthorizedFileAccessException("Access denied: This transfer does not belong to you");
+        }
+        return transfer;
+    }
+
+    private void checkOwner(UploadSession session, Users users) {
+        if (!users.getId().equals(session.userId)) {
+            throw new UnauthorizedFileAccessException("Access denied: This transfer does not belong to you");
+        }
+    }
+
+    private String currentStatus(UploadSession session) {
+        if (session.finalization == null) return STATUS_UPLOADING;
+        if (!session.finalization.isDone()) return STATUS_PROCESSING;
+        return session.finalization.isCompletedExceptionally() ? STATUS_FAILED : STATUS_COMPLETED;
+    }
+
+    private ChunkedUploadStatus toStatus(UploadSession session, String status, String message) {
+        return ChunkedUploadStatus.builder()
+                .transferId(session.transferId)
+                .fileName(session.fileName)
+                .fileSize(session.fileSize)
+                .chunkSize(session.chunkSize)
+                .totalChunks(session.totalChunks)
+                .receivedChunks(session.receivedCount())
+                .missingChunks(session.missingChunks())
+                .status(status)
+                .message(message)
+                .build();
+    }
+
+    private String extractFileType(String fileName) {
+        if (fileName != null && fileName.contains(".")) {
+            return fileName.substring(fileName.lastIndexOf(".") + 1).toLowerCase();
+        }
+        return "unknown";
+    }
+
+    private Users retriveLoggedInUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if(authentication == null || !authentication.isAuthenticated())
+            throw new BadCredentialsException("Bad Credentials login ");
+        String username = authentication.getName();
+        Users user = userRepo.findByUsername(username);
+        if(user == null){
+            throw new UsernameNotFoundException("User Not Found");
+        }
+        return user;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sessions.values().forEach(UploadSession::closeChannel);
+    }
+
+    private static class UploadSession {
+        final String transferId;
+        final java.util.UUID userId;
+        final String fileName;
+        final long fileSize;
+        final int chunkSize;
+        final int totalChunks;
+        final String stagingPath;
+        final FileChannel channel;
+        private final BitSet received;
+        volatile CompletableFuture<FileUploadResponse> finalization;
+        volatile LocalDateTime finishedAt;
+
+        UploadSession(FileTransferEntity transfer, BitSet received) throws IOException {
+            this.transferId = transfer.getTransferId();
+            this.userId = transfer.getUserId();
+            this.fileName = transfer.getFileName();
+            this.fileSize = transfer.getFileSize();
+            this.chunkSize = transfer.getChunkSize();
+            this.totalChunks = (int) ((fileSize + chunkSize - 1) / chunkSize);
+            this.stagingPath = transfer.getStoragePath();
+            this.received = received;
+            // FileChannel positional writes are safe to issue from several request threads at once
+            this.channel = FileChannel.open(Paths.get(stagingPath), StandardOpenOption.WRITE);
+        }
+
+        long chunkLength(int index) {
+            return Math.min(chunkSize, fileSize - (long) index * chunkSize);
+        }
+
+        /** Records the chunk and returns true exactly once: when the final missing chunk arrives. */
+        synchronized boolean markReceived(int index) throws IOException {
+            boolean wasComplete = received.cardinality() == totalChunks;
+            received.set(index);
+            Files.write(bitmapPath(), received.toByteArray(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.DSYNC);
+            return !wasComplete && received.cardinality() == totalChunks;
+        }
+
+        synchronized int receivedCount() {
+            return received.cardinality();
+        }
+
+        synchronized List<Integer> missingChunks() {
+            List<Integer> missing = new ArrayList<>();
+            for (int i = received.nextClearBit(0); i < totalChunks; i = received.nextClearBit(i + 1)) {
+                missing.add(i);
+            }
+            return missing;
+        }
+
+        Path bitmapPath() {
+            return Paths.get(stagingPath + ".chunks");
+        }
+
+        void closeChannel() {
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close staging file {}", stagingPath, e);
+            }
+        }
+
+        static BitSet loadBitmap(String stagingPath) throws IOException {
+            Path bitmap = Paths.get(stagingPath + ".chunks");
+            return Files.exists(bitmap) ? BitSet.valueOf(Files.readAllBytes(bitmap)) : new BitSet();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package peerlinkfilesharingsystem.Service.CompressionService;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Blocked GZIP (BGZF): a multi-member GZIP file of independent 64 KB blocks.
+ * gunzip reads it like any other .gz, range reads inflate only the blocks
+ * they touch by seeking through a {@link BgzfIndex}, and the blocks are
+ * inflated in parallel by {@link ParallelBgzfInputStream}.
+ */
+@Component
+@Slf4j
+public class BgzfCodec implements CompressionCodec {
+
+    public static final String NAME = "bgzf";
+
+    private static final int INDEX_CACHE_SIZE = 64;
+
+    private final ParallelCompressionExecutor parallelCompressionExecutor;
+    private final Map<Path, BgzfIndex> indexCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, BgzfIndex> eldest) {
+            return size() > INDEX_CACHE_SIZE;
+        }
+    };
+
+    public BgzfCodec(ParallelCompressionExecutor parallelCompressionExecutor) {
+        this.parallelCompressionExecutor = parallelCompressionExecutor;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public OutputStream encoder(OutputStream out, int level, int bufferSize, long expectedSize) {
+        if (parallelCompressionExecutor.shouldParallelize(expectedSize)) {
+            return parallelCompressionExecutor.newBgzfStream(out, clampLevel(level));
+        }
+        return encoder(out, level, bufferSize);
+    }
+
+    @Override
+    public OutputStream encoder(OutputStream out, int level, int bufferSize) {
+        return new BgzfOutputStream(out, clampLevel(level));
+    }
+
+    private int clampLevel(int level) {
+        return Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, level));
+    }
+
+    @Override
+    public InputStream decoder(InputStream in, int bufferSize) throws IOException {
+        return parallelCompressionExecutor.newBgzfReader(new BufferedInputStream(in, bufferSize));
+    }
+
+    @Override
+    public InputStream decoderFrom(Path file, long offset, int bufferSize) throws IOException {
+        if (offset == 0) {
+            return CompressionCodec.super.decoderFrom(file, 0, bufferSize);
+        }
+        BgzfIndex index;
+        try {
+            index = indexFor(file);
+        } catch (IOException e) {
+            log.warn("No block index for {} ({}), decoding from the start", file, e.getMessage());
+            return CompressionCodec.super.decoderFrom(file, offset, bufferSize);
+        }
+        if (index.getBlockCount() == 0 || offset >= index.getUncompressedSize()) {
+            return InputStream.nullInputStream();
+        }
+        int block = index.blockFor(offset);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        InputStream in;
+        try {
+            channel.position(index.compressedOffset(block));
+            in = decoder(Channels.newInputStream(channel), bufferSize);
+            in.skipNBytes(offset - index.uncompressedOffset(block));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return in;
+    }
+
+    private BgzfIndex indexFor(Path file) throws IOException {
+        long length = Files.size(file);
+        synchronized (indexCache) {
+            BgzfIndex cached = indexCache.get(file);
+            if (cached != null && cached.getFileLength() == length) {
+                return cached;
+            }
+        }
+        BgzfIndex index = BgzfIndex.load(file);
+        synchronized (indexCache) {
+            indexCache.put(file, index);
+        }
+        return index;
+    }
+}
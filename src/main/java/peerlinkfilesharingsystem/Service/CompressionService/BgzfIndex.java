@@ -0,0 +1,214 @@
+package peerlinkfilesharingsystem.Service.CompressionService;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Offset index of a BGZF file: for every block, where it starts in the file
+ * and which uncompressed offset it starts at.
+ *
+ * The index is derived from the file itself (each block header carries its
+ * size and each trailer its uncompressed length), so it never has to travel
+ * with the object when the store moves it. The first range read scans the
+ * headers and saves the result next to the object as {@code <object>.bgzi};
+ * later reads load that sidecar.
+ */
+@Slf4j
+public final class BgzfIndex {
+
+    public static final String SIDECAR_SUFFIX = ".bgzi";
+
+    private static final int MAGIC = 0x504C4249; // "PLBI"
+    private static final int VERSION = 1;
+    /** Magic, version, file length, uncompressed size and block count. */
+    private static final int SIDECAR_HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+    private static final int SIDECAR_ENTRY_SIZE = 8 + 8;
+
+    private final long[] compressedOffsets;
+    private final long[] uncompressedOffsets;
+    private final long uncompressedSize;
+    private final long fileLength;
+
+    private BgzfIndex(long[] compressedOffsets, long[] uncompressedOffsets, long uncompressedSize, long fileLength) {
+        this.compressedOffsets = compressedOffsets;
+        this.uncompressedOffsets = uncompressedOffsets;
+        this.uncompressedSize = uncompressedSize;
+        this.fileLength = fileLength;
+    }
+
+    public long getUncompressedSize() {
+        return uncompressedSize;
+    }
+
+    public long getFileLength() {
+        return fileLength;
+    }
+
+    public int getBlockCount() {
+        return compressedOffsets.length;
+    }
+
+    /** Index of the block that holds the given uncompressed offset. */
+    public int blockFor(long uncompressedOffset) {
+        int i = Arrays.binarySearch(uncompressedOffsets, uncompressedOffset);
+        return i >= 0 ? i : Math.max(0, -i - 2);
+    }
+
+    public long compressedOffset(int block) {
+        return compressedOffsets[block];
+    }
+
+    public long uncompressedOffset(int block) {
+        return uncompressedOffsets[block];
+    }
+
+    public static String sidecarFor(String objectPath) {
+        return objectPath + SIDECAR_SUFFIX;
+    }
+
+    public static void deleteSidecar(String objectPath) {
+        try {
+            Files.deleteIfExists(Paths.get(sidecarFor(objectPath)));
+        } catch (IOException e) {
+            log.warn("Could not delete block index of {}: {}", objectPath, e.getMessage());
+        }
+    }
+
+    /** Loads the sidecar if it matches the file, otherwise rebuilds and re-saves it. */
+    public static BgzfIndex load(Path file) throws IOException {
+        long length = Files.size(file);
+        Path sidecar = Paths.get(sidecarFor(file.toString()));
+        if (Files.isRegularFile(sidecar)) {
+            try {
+                BgzfIndex index = read(sidecar);
+                if (index.fileLength == length) {
+                    return index;
+                }
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable block index {}: {}", sidecar, e.getMessage());
+            }
+        }
+        long startTime = System.nanoTime();
+        BgzfIndex index = scan(file);
+        log.info("Built block index for {}: {} blocks in {} ms",
+                file, index.getBlockCount(), (System.nanoTime() - startTime) / 1_000_000);
+        try {
+            index.write(sidecar);
+        } catch (IOException e) {
+            log.warn("Could not save block index {}: {}", sidecar, e.getMessage());
+        }
+        return index;
+    }
+
+    /** Walks the member headers; fails with an IOException if the file is not BGZF. */
+    public static BgzfIndex scan(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            // Every member holds at most 64 KB, so this is a lower bound on the block count
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(16, length / 0x10000));
+            long[] compressed = new long[capacity];
+            long[] uncompressed = new long[capacity];
+            int count = 0;
+            long position = 0;
+            long total = 0;
+            ByteBuffer header = ByteBuffer.allocate(BgzfOutputStream.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer trailer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (position < length) {
+                header.clear();
+                readFully(channel, header, position);
+                int blockSize = blockSize(header);
+                trailer.clear();
+                readFully(channel, trailer, position + blockSize - 4);
+                long blockLength = trailer.getInt(0) & 0xffffffffL;
+                if (blockLength > 0) {
+                    if (count == compressed.length) {
+                        compressed = Arrays.copyOf(compressed, count * 2);
+                        uncompressed = Arrays.copyOf(uncompressed, count * 2);
+                    }
+                    compressed[count] = position;
+                    uncompressed[count] = total;
+                    count++;
+                    total += blockLength;
+                }
+                position += blockSize;
+            }
+            return new BgzfIndex(Arrays.copyOf(compressed, count), Arrays.copyOf(uncompressed, count), total, length);
+        }
+    }
+
+    private static int blockSize(ByteBuffer header) throws IOException {
+        if ((header.get(0) & 0xff) != 0x1f || (header.get(1) & 0xff) != 0x8b || header.get(2) != 8
+                || (header.get(3) & 0x04) == 0 || header.getShort(10) != 6
+                || header.get(12) != 'B' || header.get(13) != 'C' || header.getShort(14) != 2) {
+            throw new IOException("Not a BGZF block");
+        }
+        return (header.getShort(16) & 0xffff) + 1;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Truncated BGZF file");
+            }
+        }
+    }
+
+    /**
+     * Concurrent first reads of the same object may all build the index, so each
+     * writer gets its own temp file and the last rename wins with identical content.
+     */
+    private void write(Path path) throws IOException {
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(fileLength);
+                out.writeLong(uncompressedSize);
+                out.writeInt(compressedOffsets.length);
+                for (int i = 0; i < compressedOffsets.length; i++) {
+                    out.writeLong(compressedOffsets[i]);
+                    out.writeLong(uncompressedOffsets[i]);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static BgzfIndex read(Path path) throws IOException {
+        long sidecarLength = Files.size(path);
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a block index: " + path);
+            }
+            long fileLength = in.readLong();
+            long uncompressedSize = in.readLong();
+            int count = in.readInt();
+            // A torn or foreign sidecar must not size the arrays below
+            if (count < 0 || (long) count * SIDECAR_ENTRY_SIZE != sidecarLength - SIDECAR_HEADER_SIZE) {
+                throw new IOException("Block count " + count + " does not match index size " + sidecarLength);
+            }
+            long[] compressed = new long[count];
+            long[] uncompressed = new long[count];
+            for (int i = 0; i < count; i++) {
+                compressed[i] = in.readLong();
+                uncompressed[i] = in.readLong();
+            }
+            return new BgzfIndex(compressed, uncompressed, uncompressedSize, fileLength);
+        }
+    }
+}
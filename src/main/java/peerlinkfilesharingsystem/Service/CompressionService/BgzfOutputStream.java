@@ -0,0 +1,195 @@
+package peerlinkfilesharingsystem.Service.CompressionService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * BGZF writer: the input is cut into blocks of at most {@link #BLOCK_INPUT_SIZE}
+ * bytes and every block becomes its own GZIP member, carrying its compressed
+ * size in a "BC" extra subfield. The output is an ordinary multi-member GZIP
+ * file for gunzip, but any block can be located from the headers alone and
+ * inflated on its own, which is what makes range reads cheap.
+ *
+ * Since blocks share no state they can be deflated concurrently; with a pool
+ * the blocks are compressed in parallel and written back in order.
+ */
+public class BgzfOutputStream extends OutputStream {
+
+    /** Leaves room for stored-block overhead so a member never exceeds 64 KB. */
+    public static final int BLOCK_INPUT_SIZE = 0xff00;
+    static final int HEADER_SIZE = 18;
+    static final int TRAILER_SIZE = 8;
+    private static final int MAX_BLOCK_SIZE = 0x10000;
+
+    /** Empty member that marks a complete BGZF file, as written by samtools/htslib. */
+    static final byte[] EOF_BLOCK = {
+            0x1f, (byte) 0x8b, 0x08, 0x04, 0, 0, 0, 0, 0, (byte) 0xff, 0x06, 0, 0x42, 0x43, 0x02, 0,
+            0x1b, 0, 0x03, 0, 0, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    private final OutputStream out;
+    private final int level;
+    private final ForkJoinPool pool;
+    private final int maxBlocksInFlight;
+    private final Deque<ForkJoinTask<byte[]>> pending = new ArrayDeque<>();
+    private final Deflater deflater;
+
+    private byte[] block = new byte[BLOCK_INPUT_SIZE];
+    private int blockFill;
+    private boolean closed;
+
+    /** Single-threaded writer. */
+    public BgzfOutputStream(OutputStream out, int level) {
+        this(out, level, null, 0);
+    }
+
+    /** Parallel writer when {@code pool} is non-null. */
+    public BgzfOutputStream(OutputStream out, int level, ForkJoinPool pool, int maxBlocksInFlight) {
+        this.out = out;
+        this.level = level;
+        this.pool = pool;
+        this.maxBlocksInFlight = Math.max(1, maxBlocksInFlight);
+        this.deflater = pool == null ? new Deflater(level, true) : null;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int n = Math.min(len, block.length - blockFill);
+            System.arraycopy(b, off, block, blockFill, n);
+            blockFill += n;
+            off += n;
+            len -= n;
+            if (blockFill == block.length) {
+                flushBlock();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (blockFill > 0) {
+                flushBlock();
+            }
+            drain(0);
+            out.write(EOF_BLOCK);
+            out.flush();
+        } finally {
+            closed = true;
+            pending.forEach(task -> task.cancel(true));
+            if (deflater != null) {
+                deflater.end();
+            }
+            out.close();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        byte[] input = blockFill == block.length ? block : Arrays.copyOf(block, blockFill);
+        int inputLength = blockFill;
+        block = new byte[BLOCK_INPUT_SIZE];
+        blockFill = 0;
+        if (pool == null) {
+            out.write(encodeBlock(deflater, input, inputLength, level));
+            return;
+        }
+        pending.addLast(pool.submit(() -> {
+            Deflater blockDeflater = new Deflater(level, true);
+            try {
+                return encodeBlock(blockDeflater, input, inputLength, level);
+            } finally {
+                blockDeflater.end();
+            }
+        }));
+        drain(maxBlocksInFlight);
+    }
+
+    /** Writes finished blocks in order until at most {@code limit} are still outstanding. */
+    private void drain(int limit) throws IOException {
+        while (!pending.isEmpty() && (pending.size() > limit || pending.peekFirst().isDone())) {
+            try {
+                out.write(pending.removeFirst().join());
+            } catch (CompletionException | CancellationException e) {
+                throw new IOException("Deflate of BGZF block failed", e.getCause() != null ? e.getCause() : e);
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    static byte[] encodeBlock(Deflater deflater, byte[] input, int length, int level) {
+        int blockLevel = level != Deflater.NO_COMPRESSION && EntropySampler.isIncompressible(input, 0, length)
+                ? Deflater.NO_COMPRESSION
+                : level;
+        byte[] compressed = deflate(deflater, input, length, blockLevel);
+        if (compressed.length > MAX_BLOCK_SIZE - HEADER_SIZE - TRAILER_SIZE) {
+            // Did not shrink enough to fit a member; stored deflate blocks always do
+            compressed = deflate(deflater, input, length, Deflater.NO_COMPRESSION);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(input, 0, length);
+        int blockSize = HEADER_SIZE + compressed.length + TRAILER_SIZE;
+        byte[] member = new byte[blockSize];
+        member[0] = 0x1f;
+        member[1] = (byte) 0x8b;
+        member[2] = Deflater.DEFLATED;
+        member[3] = 0x04;                 // FEXTRA
+        member[9] = (byte) 0xff;          // OS unknown
+        member[10] = 6;                   // XLEN
+        member[12] = 'B';
+        member[13] = 'C';
+        member[14] = 2;                   // SLEN
+        member[16] = (byte) ((blockSize - 1) & 0xff);
+        member[17] = (byte) ((blockSize - 1) >>> 8);
+        System.arraycopy(compressed, 0, member, HEADER_SIZE, compressed.length);
+        writeIntLE(member, blockSize - 8, crc.getValue());
+        writeIntLE(member, blockSize - 4, length);
+        return member;
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] input, int length, int level) {
+        deflater.reset();
+        deflater.setLevel(level);
+        deflater.setInput(input, 0, length);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, length / 2));
+        byte[] buffer = new byte[16 * 1024];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            compressed.write(buffer, 0, n);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static void writeIntLE(byte[] target, int offset, long value) {
+        target[offset] = (byte) value;
+        target[offset + 1] = (byte) (value >> 8);
+        target[offset + 2] = (byte) (value >> 16);
+        target[offset + 3] = (byte) (value >> 24);
+    }
+}
@@ -0,0 +1,48 @@
+package peerlinkfilesharingsystem.Service.CompressionService;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * A storage codec. Implementations are Spring beans and are picked up by
+ * {@link CompressionCodecRegistry}; the codec name is persisted on the transfer
+ * so downloads decode with exactly what the upload encoded with.
+ */
+public interface CompressionCodec {
+
+    /** Stable identifier stored in {@code FileTransferEntity.compressionCodec}. */
+    String getName();
+
+    /** Wraps {@code out} so that everything written to it is encoded at {@code level}. */
+    OutputStream encoder(OutputStream out, int level, int bufferSize) throws IOException;
+
+    /**
+     * Same as {@link #encoder(OutputStream, int, int)} but with a size hint, so codecs
+     * can switch to a multi-threaded encoder for large inputs. A negative hint means unknown.
+     */
+    default OutputStream encoder(OutputStream out, int level, int bufferSize, long expectedSize) throws IOException {
+        return encoder(out, level, bufferSize);
+    }
+
+    /** Wraps {@code in} so that reads return the original, decoded bytes. */
+    InputStream decoder(InputStream in, int bufferSize) throws IOException;
+
+    /**
+     * Opens a stored object and returns its decoded bytes starting at {@code offset}.
+     * Codecs whose format is seekable override this; the default decodes from the
+     * start and discards everything before the offset.
+     */
+    default InputStream decoderFrom(Path file, long offset, int bufferSize) throws IOException {
+        InputStream in = decoder(new FileInputStream(file.toFile()), bufferSize);
+        try {
+            in.skipNBytes(offset);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return in;
+    }
+}
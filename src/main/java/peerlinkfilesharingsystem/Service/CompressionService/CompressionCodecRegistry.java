@@ -0,0 +1,65 @@
+package peerlinkfilesharingsystem.Service.CompressionService;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class CompressionCodecRegistry {
+
+    private final Map<String, CompressionCodec> codecs;
+
+    public CompressionCodecRegistry(List<CompressionCodec> codecs) {
+        this.codecs = codecs.stream()
+                .collect(Collectors.toUnmodifiableMap(CompressionCodec::getName, Function.identity()));
+        log.info("Registered compression codecs: {}", this.codecs.keySet());
+    }
+
+    public CompressionCodec get(String name) {
+        CompressionCodec codec = codecs.get(name);
+        if (codec == null) {
+            throw new IllegalArgumentException("Unknown compression codec: " + name);
+        }
+        return codec;
+    }
+
+    public boolean contains(String name) {
+        return name != null && codecs.containsKey(name);
+    }
+
+    /**
+     * Maps an HTTP content-coding to the codec that can read it back, or null
+     * for identity. gzip members are handled by the deflate codec's reader.
+     */
+    public String forContentEncoding(String contentEncoding) {
+        if (contentEncoding == null || contentEncoding.isBlank()) {
+            return null;
+        }
+        return switch (contentEncoding.trim().toLowerCase()) {
+            case "identity" -> null;
+            case "gzip", "x-gzip" -> DeflateCodec.NAME;
+            case "deflate" -> ZlibCodec.NAME;
+            default -> throw new IllegalArgumentException("Unsupported Content-Encoding: " + contentEncoding);
+        };
+    }
+
+    /**
+     * The HTTP content-coding a stored object already is, or null if it has to be
+     * decoded before sending. Inverse of {@link #forContentEncoding(String)}.
+     */
+    public String contentEncodingFor(String codecName) {
+        if (codecName == null) {
+            return null;
+        }
+        return switch (codecName) {
+            case DeflateCodec.NAME, BgzfCodec.NAME -> "gzip";
+            case ZlibCodec.NAME -> "deflate";
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,77 @@
+package peerlinkfilesharingsystem.Service.CompressionService;
+
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * GZIP container with an explicit deflate level (0-9), so stored objects stay
+ * readable by gunzip while the predicted level is actually applied. New uploads
+ * that deflate are written as BGZF; this codec decodes objects stored before
+ * that and gzip bodies uploaded as-is.
+ */
+@Component
+public class DeflateCodec implements CompressionCodec {
+
+    public static final String NAME = "deflate";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public OutputStream encoder(OutputStream out, int level, int bufferSize) throws IOException {
+        return new AdaptiveGzipOutputStream(out, clampLevel(level), bufferSize);
+    }
+
+    private int clampLevel(int level) {
+        return Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, level));
+    }
+
+    @Override
+    public InputStream decoder(InputStream in, int bufferSize) throws IOException {
+        return new GZIPInputStream(new BufferedInputStream(in, bufferSize), bufferSize);
+    }
+
+    /**
+     * Single-threaded GZIP writer that decides per 64 KB block whether to deflate
+     * at the requested level or to emit stored blocks, based on sampled entropy.
+     */
+    static class AdaptiveGzipOutputStream extends GZIPOutputStream {
+
+        private final int level;
+        private int currentLevel;
+
+        AdaptiveGzipOutputStream(OutputStream out, int level, int bufferSize) throws IOException {
+            super(out, bufferSize);
+            this.level = level;
+            this.currentLevel = level;
+            def.setLevel(level);
+        }
+
+        @Override
+        public synchronized void write(byte[] buf, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, EntropySampler.SAMPLE_BLOCK_SIZE);
+                int blockLevel = level != Deflater.NO_COMPRESSION && EntropySampler.isIncompressible(buf, off, n)
+                        ? Deflater.NO_COMPRESSION
+                        : level;
+                if (blockLevel != currentLevel) {
+                    // Takes effect from the next deflate call; already-buffered input keeps the old level
+                    def.setLevel(blockLevel);
+                    currentLevel = blockLevel;
+                }
+                super.write(buf, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package peerlinkfilesharingsystem.Service.CompressionService;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Order-0 byte entropy estimates used to tell compressible from incompressible
+ * content without trusting the file extension.
+ *
+ * Already-compressed data (JPEG, video, zip, encrypted blobs) sits just under
+ * 8 bits/byte; text and most binaries are well below. The histogram is split
+ * over four interleaved tables so consecutive equal bytes do not serialize on
+ * the same counter, which keeps a 64 KB block in the low microseconds.
+ */
+public final class EntropySampler {
+
+    /** Blocks at or above this many bits per byte are stored instead of deflated. */
+    public static final double INCOMPRESSIBLE_BITS_PER_BYTE = 7.5;
+
+    public static final int SAMPLE_BLOCK_SIZE = 64 * 1024;
+    public static final int SAMPLE_BLOCKS = 4;
+    public static final int SAMPLE_BYTES = SAMPLE_BLOCK_SIZE * SAMPLE_BLOCKS;
+
+    private EntropySampler() {
+    }
+
+    public static double entropy(byte[] data, int off, int len) {
+        if (len <= 0) {
+            return 0.0;
+        }
+        int[] h0 = new int[256];
+        int[] h1 = new int[256];
+        int[] h2 = new int[256];
+        int[] h3 = new int[256];
+        int i = off;
+        int end = off + len;
+        for (; i + 3 < end; i += 4) {
+            h0[data[i] & 0xff]++;
+            h1[data[i + 1] & 0xff]++;
+            h2[data[i + 2] & 0xff]++;
+            h3[data[i + 3] & 0xff]++;
+        }
+        for (; i < end; i++) {
+            h0[data[i] & 0xff]++;
+        }
+
+        double entropy = 0.0;
+        double total = len;
+        for (int b = 0; b < 256; b++) {
+            int count = h0[b] + h1[b] + h2[b] + h3[b];
+            if (count > 0) {
+                double p = count / total;
+                entropy -= p * (Math.log(p) / Math.log(2));
+            }
+        }
+        return entropy;
+    }
+
+    public static boolean isIncompressible(byte[] data, int off, int len) {
+        return entropy(data, off, len) >= INCOMPRESSIBLE_BITS_PER_BYTE;
+    }
+
+    /**
+     * Estimates the entropy of the first {@link #SAMPLE_BLOCKS} blocks of the stream
+     * and rewinds it. The stream must support mark/reset for at least
+     * {@link #SAMPLE_BYTES} bytes; the result is the mean over the sampled blocks,
+     * or {@code null} when the stream is empty.
+     */
+    public static Double sample(InputStream in) throws IOException {
+        if (!in.markSupported()) {
+            throw new IllegalArgumentException("Sampling requires a stream that supports mark/reset");
+        }
+        in.mark(SAMPLE_BYTES);
+        try {
+            byte[] block = new byte[SAMPLE_BLOCK_SIZE];
+            double entropySum = 0.0;
+            long weight = 0;
+            for (int sampled = 0; sampled < SAMPLE_BLOCKS; sampled++) {
+                int filled = in.readNBytes(block, 0, block.length);
+                if (filled == 0) {
+                    break;
+                }
+                entropySum += entropy(block, 0, filled) * filled;
+                weight += filled;
+                if (filled < block.length) {
+                    break;
+                }
+            }
+            return weight == 0 ? null : entropySum / weight;
+        } finally {
+            in.reset();
+        }
+    }
+}
@@ -1,80 +1,321 @@
 package peerlinkfilesharingsystem.Service.CompressionService;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
-import java.util.zip.GZIPOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @Slf4j
 public class FileCompressionService {
 
+    private static final int PIPELINE_DEPTH = 16;
+    private static final int FILE_BUFFER_SIZE = 256 * 1024;
+    private static final byte[] END_OF_STREAM = new byte[0];
+
+    private final AtomicInteger pipelineThreadCount = new AtomicInteger();
+    private ThreadPoolExecutor pipelineExecutor;
+
+    /** 0 = twice the cores. */
+    @Value("${upload.pipeline.max-threads:0}")
+    private int maxPipelineThreads;
+
     /**
-     * Compress entire file as a single GZIP stream
+     * One compressor thread per streaming upload, created on demand and never
+     * queued: a compressor lives as long as its upload's network receive, so a
+     * queued upload would wait on somebody else's slow client. Past the bound the
+     * submit is rejected and the upload compresses on its own request thread.
+     */
+    @PostConstruct
+    void startPipeline() {
+        int threads = maxPipelineThreads > 0 ? maxPipelineThreads : Runtime.getRuntime().availableProcessors() * 2;
+        pipelineExecutor = new ThreadPoolExecutor(0, threads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "upload-compressor-" + pipelineThreadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        log.info("Upload compression pipeline: up to {} concurrent uploads overlapped", threads);
+    }
+
+    /**
+     * Compress a live upload stream straight into the final object.
      *
-     * WHY THIS APPROACH:
-     * - Creates ONE valid GZIP file
-     * - Decompression works perfectly
-     * - File integrity preserved
-     * - Compatible with all tools (7zip, gunzip, WinRAR, etc)
+     * The calling (network) thread only reads from the request and hands filled
+     * buffers to a bounded queue; a pipeline thread drains the queue through the
+     * deflater. Receive and compression overlap, nothing is staged on disk and
+     * the payload is written exactly once. When every pipeline thread is taken
+     * the calling thread does both, without the overlap.
      */
-    public long compressFileToGzip(String inputFilePath, String outputFilePath) throws IOException {
-        log.info("Starting GZIP compression of entire file");
-        log.info("  Input: {}", inputFilePath);
+    public StreamCompressionResult compressStream(InputStream inputStream,
+                                                  String outputFilePath,
+                                                  CompressionCodec codec,
+                                                  int level,
+                                                  int bufferSize,
+                                                  long expectedSize) throws IOException {
+        log.info("Starting streaming {} compression (level {})", codec.getName(), level);
         log.info("  Output: {}", outputFilePath);
+        log.info("  Buffer Size: {} bytes", bufferSize);
 
-        File inputFile = new File(inputFilePath);
-        if (!inputFile.exists()) {
-            throw new FileNotFoundException("Input file not found: " + inputFilePath);
+        long startTime = System.nanoTime();
+        BlockingQueue<byte[]> pipeline = new ArrayBlockingQueue<>(PIPELINE_DEPTH);
+        Future<Long> compressor;
+        try {
+            compressor = pipelineExecutor.submit(
+                    () -> drainToEncoder(pipeline, outputFilePath, codec, level, bufferSize, expectedSize));
+        } catch (RejectedExecutionException e) {
+            log.info("All {} pipeline threads busy, compressing on the receiving thread",
+                    pipelineExecutor.getMaximumPoolSize());
+            return compressInline(inputStream, outputFilePath, codec, level, bufferSize, expectedSize, startTime);
         }
 
-        long originalSize = inputFile.length();
-        log.info("  Original Size: {} bytes ({} MB)", originalSize, originalSize / 1024 / 1024);
+        long totalBytesRead = 0;
+        try {
+            byte[] buffer = new byte[bufferSize];
+            int filled = 0;
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer, filled, buffer.length - filled)) != -1) {
+                filled += bytesRead;
+                totalBytesRead += bytesRead;
+                if (filled == buffer.length) {
+                    handOff(pipeline, compressor, buffer);
+                    buffer = new byte[bufferSize];
+                    filled = 0;
+                }
+            }
+            if (filled > 0) {
+                handOff(pipeline, compressor, Arrays.copyOf(buffer, filled));
+            }
+            handOff(pipeline, compressor, END_OF_STREAM);
 
-        long compressedSize = 0;
+            long compressedSize = compressor.get();
+            long durationMs = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+            StreamCompressionResult result = new StreamCompressionResult(totalBytesRead, compressedSize, durationMs);
 
-        try (FileInputStream fis = new FileInputStream(inputFilePath);
-             FileOutputStream fos = new FileOutputStream(outputFilePath);
-             GZIPOutputStream gzipOut = new GZIPOutputStream(fos)) {
+            double compressionRatio = totalBytesRead == 0 ? 0.0 : (1.0 - (double) compressedSize / totalBytesRead) * 100;
+            log.info("Streaming {} compression complete:", codec.getName());
+            log.info("  Original Size: {} bytes ({} MB)", totalBytesRead, totalBytesRead / 1024 / 1024);
+            log.info("  Compressed Size: {} bytes ({} MB)", compressedSize, compressedSize / 1024 / 1024);
+            log.info("  Compression Ratio: {}% saved", String.format("%.2f", compressionRatio));
+            log.info("  Compression Rate: {} MB/s", String.format("%.2f", result.getThroughputMBps()));
 
-            byte[] buffer = new byte[8192];  // 8KB buffer
-            int bytesRead;
-            long totalBytesRead = 0;
+            return result;
 
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                gzipOut.write(buffer, 0, bytesRead);
-                totalBytesRead += bytesRead;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            compressor.cancel(true);
+            deletePartialOutput(outputFilePath);
+            throw new InterruptedIOException("Upload interrupted while compressing");
+        } catch (ExecutionException e) {
+            deletePartialOutput(outputFilePath);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Streaming compression failed", cause);
+        } catch (IOException e) {
+            log.error("Error while receiving upload stream", e);
+            compressor.cancel(true);
+            deletePartialOutput(outputFilePath);
+            throw e;
+        }
+    }
+
+    /**
+     * Stores a payload the client already compressed, byte for byte. The bytes are
+     * teed to disk while the codec's reader inflates them, so the container's own
+     * integrity check (gzip CRC32/ISIZE, zlib Adler-32) runs in the same pass.
+     * The original size comes from counting the inflated output.
+     */
+    public StreamCompressionResult storePrecompressed(InputStream inputStream, String outputFilePath,
+                                                      CompressionCodec codec, MessageDigest digest) throws IOException {
+        long startTime = System.nanoTime();
+        try (FileOutputStream fos = new FileOutputStream(outputFilePath);
+             BufferedOutputStream out = new BufferedOutputStream(fos, FILE_BUFFER_SIZE)) {
+            TeeInputStream tee = new TeeInputStream(inputStream, out);
+            long originalSize = verifyPrecompressed(tee, codec, digest);
+            // Anything the reader did not need (e.g. padding after the last member) is kept as received
+            byte[] buffer = new byte[FILE_BUFFER_SIZE];
+            while (tee.read(buffer) != -1) {
+                // drained into the output by the tee
+            }
+            out.flush();
+            long durationMs = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+            log.info("Pre-compressed {} payload verified: {} bytes stored, {} bytes inflated",
+                    codec.getName(), tee.getCount(), originalSize);
+            return new StreamCompressionResult(originalSize, tee.getCount(), durationMs);
+        } catch (IOException e) {
+            deletePartialOutput(outputFilePath);
+            throw e;
+        }
+    }
 
-                if (totalBytesRead % (1024 * 1024) == 0) {  // Log every 1MB
-                    log.debug("Compressed {} MB so far...", totalBytesRead / 1024 / 1024);
+    /**
+     * Inflates the whole stream and discards the output, returning the
+     * uncompressed length. Fails if the payload is truncated or corrupt. The
+     * optional digest sees the inflated bytes, i.e. the original content.
+     */
+    public long verifyPrecompressed(InputStream inputStream, CompressionCodec codec,
+                                    MessageDigest digest) throws IOException {
+        InputStream decoder;
+        try {
+            decoder = codec.decoder(new NonClosingInputStream(inputStream), FILE_BUFFER_SIZE);
+        } catch (IOException e) {
+            throw new IOException("Payload is not valid " + codec.getName() + " data: " + e.getMessage(), e);
+        }
+        try (decoder) {
+            byte[] buffer = new byte[FILE_BUFFER_SIZE];
+            long originalSize = 0;
+            int bytesRead;
+            while ((bytesRead = decoder.read(buffer)) != -1) {
+                if (digest != null) {
+                    digest.update(buffer, 0, bytesRead);
                 }
+                originalSize += bytesRead;
             }
+            return originalSize;
+        } catch (IOException e) {
+            throw new IOException("Payload failed " + codec.getName() + " integrity check: " + e.getMessage(), e);
+        }
+    }
 
-            // CRITICAL: Finish the GZIP stream properly
-            gzipOut.finish();
-            gzipOut.flush();
+    private void handOff(BlockingQueue<byte[]> pipeline, Future<Long> compressor, byte[] buffer)
+            throws InterruptedException, ExecutionException {
+        // Never block forever on a compressor that has already died
+        while (!pipeline.offer(buffer, 100, TimeUnit.MILLISECONDS)) {
+            if (compressor.isDone()) {
+                compressor.get();
+                throw new ExecutionException(new IOException("Compressor stopped before end of stream"));
+            }
+        }
+    }
 
-        } catch (IOException e) {
-            log.error("Error during GZIP compression", e);
-            File outputFile = new File(outputFilePath);
-            if (outputFile.exists()) {
-                outputFile.delete();
+    private StreamCompressionResult compressInline(InputStream inputStream, String outputFilePath,
+                                                   CompressionCodec codec, int level, int bufferSize,
+                                                   long expectedSize, long startTime) throws IOException {
+        long totalBytesRead = 0;
+        try (FileOutputStream fos = new FileOutputStream(outputFilePath);
+             OutputStream encoder = codec.encoder(
+                     new BufferedOutputStream(fos, bufferSize), level, bufferSize, expectedSize)) {
+            byte[] buffer = new byte[bufferSize];
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                encoder.write(buffer, 0, bytesRead);
+                totalBytesRead += bytesRead;
             }
+        } catch (IOException e) {
+            log.error("Error while compressing upload stream", e);
+            deletePartialOutput(outputFilePath);
             throw e;
         }
+        long durationMs = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+        return new StreamCompressionResult(totalBytesRead, new File(outputFilePath).length(), durationMs);
+    }
+
+    private long drainToEncoder(BlockingQueue<byte[]> pipeline, String outputFilePath,
+                                CompressionCodec codec, int level, int bufferSize, long expectedSize)
+            throws IOException, InterruptedException {
+        try (FileOutputStream fos = new FileOutputStream(outputFilePath);
+             OutputStream encoder = codec.encoder(
+                     new BufferedOutputStream(fos, bufferSize), level, bufferSize, expectedSize)) {
+            byte[] buffer;
+            while ((buffer = pipeline.take()) != END_OF_STREAM) {
+                encoder.write(buffer);
+            }
+        }
+        return new File(outputFilePath).length();
+    }
 
+    private void deletePartialOutput(String outputFilePath) {
         File outputFile = new File(outputFilePath);
-        compressedSize = outputFile.length();
+        if (outputFile.exists() && outputFile.delete()) {
+            log.info("Partial output removed: {}", outputFilePath);
+        }
+    }
 
-        double compressionRatio = (1.0 - (double) compressedSize / originalSize) * 100;
-        log.info("GZIP compression complete:");
-        log.info("  Original Size: {} bytes ({} MB)", originalSize, originalSize / 1024 / 1024);
-        log.info("  Compressed Size: {} bytes ({} MB)", compressedSize, compressedSize / 1024 / 1024);
-        log.info("  Compression Ratio: {:.2f}% saved", compressionRatio);
+    @PreDestroy
+    public void shutdown() {
+        pipelineExecutor.shutdownNow();
+    }
 
-        return compressedSize;
+    /** Copies every byte read through it to a sink and counts them. */
+    private static class TeeInputStream extends FilterInputStream {
+        private final OutputStream sink;
+        private long count;
+
+        TeeInputStream(InputStream in, OutputStream sink) {
+            super(in);
+            this.sink = sink;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                sink.write(b);
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                sink.write(b, off, n);
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Route skips through read so skipped bytes are still stored
+            byte[] scratch = new byte[(int) Math.min(n, 8192)];
+            int r = read(scratch, 0, scratch.length);
+            return Math.max(r, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    /** Keeps the codec reader from closing a stream the caller still owns. */
+    private static class NonClosingInputStream extends FilterInputStream {
+        NonClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+        }
     }
 
+    @Data
+    @AllArgsConstructor
+    public static class StreamCompressionResult {
+        private long originalSize;
+        private long compressedSize;
+        private long durationMs;
 
+        /** Uncompressed bytes consumed per second of wall-clock time. */
+        public double getThroughputMBps() {
+            return (originalSize / 1024.0 / 1024.0) / (durationMs / 1000.0);
+        }
+    }
 }
@@ -0,0 +1,66 @@
+package peerlinkfilesharingsystem.Service.CompressionService;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Inflater;
+
+/**
+ * Reusable raw (nowrap) Inflaters and 64 KB block buffers for BGZF decoding.
+ * An Inflater owns native zlib state, so creating one per block costs a native
+ * allocation and a finalisation-free end(); a pooled one only needs reset().
+ * Both pools are capped so an idle server does not hold on to a burst's worth.
+ */
+public final class InflaterPool {
+
+    public static final int BLOCK_BUFFER_SIZE = 0x10000;
+
+    private static final int MAX_POOLED_INFLATERS = Runtime.getRuntime().availableProcessors() * 4;
+    private static final int MAX_POOLED_BUFFERS = 512;
+
+    private static final ConcurrentLinkedQueue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+    private static final ConcurrentLinkedQueue<byte[]> BUFFERS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooledInflaters = new AtomicInteger();
+    private static final AtomicInteger pooledBuffers = new AtomicInteger();
+
+    private InflaterPool() {
+    }
+
+    public static Inflater acquireInflater() {
+        Inflater inflater = INFLATERS.poll();
+        if (inflater == null) {
+            return new Inflater(true);
+        }
+        pooledInflaters.decrementAndGet();
+        return inflater;
+    }
+
+    public static void releaseInflater(Inflater inflater) {
+        inflater.reset();
+        if (pooledInflaters.incrementAndGet() <= MAX_POOLED_INFLATERS) {
+            INFLATERS.offer(inflater);
+        } else {
+            pooledInflaters.decrementAndGet();
+            inflater.end();
+        }
+    }
+
+    public static byte[] acquireBuffer() {
+        byte[] buffer = BUFFERS.poll();
+        if (buffer == null) {
+            return new byte[BLOCK_BUFFER_SIZE];
+        }
+        pooledBuffers.decrementAndGet();
+        return buffer;
+    }
+
+    public static void releaseBuffer(byte[] buffer) {
+        if (buffer == null || buffer.length != BLOCK_BUFFER_SIZE) {
+            return;
+        }
+        if (pooledBuffers.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+            BUFFERS.offer(buffer);
+        } else {
+            pooledBuffers.decrementAndGet();
+        }
+    }
+}
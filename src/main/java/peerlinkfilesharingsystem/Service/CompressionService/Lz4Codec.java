@@ -0,0 +1,36 @@
+package peerlinkfilesharingsystem.Service.CompressionService;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * LZ4 frame format. Several times faster than deflate for a lower ratio, used
+ * when the link is fast enough that CPU - not bandwidth - is the bottleneck.
+ */
+@Component
+public class Lz4Codec implements CompressionCodec {
+
+    public static final String NAME = "lz4";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public OutputStream encoder(OutputStream out, int level, int bufferSize) throws IOException {
+        // LZ4 has no useful level knob on the fast path; the level is ignored
+        return new LZ4FrameOutputStream(out, LZ4FrameOutputStream.BLOCKSIZE.SIZE_4MB);
+    }
+
+    @Override
+    public InputStream decoder(InputStream in, int bufferSize) throws IOException {
+        return new LZ4FrameInputStream(new BufferedInputStream(in, bufferSize));
+    }
+}
@@ -0,0 +1,196 @@
+package peerlinkfilesharingsystem.Service.CompressionService;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * BGZF reader that inflates ahead of the consumer. Compressed members are read
+ * off the source on the calling thread (each header says how long its member
+ * is), inflated on the shared pool with pooled Inflaters, and handed back in
+ * file order. Up to {@code maxBlocksInFlight} blocks are being inflated while
+ * the caller is still writing earlier ones to the socket.
+ */
+public class ParallelBgzfInputStream extends InputStream {
+
+    private final InputStream in;
+    private final ForkJoinPool pool;
+    private final int maxBlocksInFlight;
+    private final Deque<ForkJoinTask<Block>> pending = new ArrayDeque<>();
+    private final byte[] header = new byte[BgzfOutputStream.HEADER_SIZE];
+
+    private byte[] current;
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+    private boolean closed;
+
+    public ParallelBgzfInputStream(InputStream in, ForkJoinPool pool, int maxBlocksInFlight) {
+        this.in = in;
+        this.pool = pool;
+        this.maxBlocksInFlight = Math.max(1, maxBlocksInFlight);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int n = read(single, 0, 1);
+        return n == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (position == limit) {
+            if (!nextBlock()) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, limit - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        InflaterPool.releaseBuffer(current);
+        current = null;
+        for (ForkJoinTask<Block> task : pending) {
+            // A running task still returns its buffers; a cancelled one never took any
+            if (!task.cancel(false) && task.isDone() && !task.isCompletedAbnormally()) {
+                InflaterPool.releaseBuffer(task.join().data);
+            }
+        }
+        pending.clear();
+        in.close();
+    }
+
+    private boolean nextBlock() throws IOException {
+        InflaterPool.releaseBuffer(current);
+        current = null;
+        position = 0;
+        limit = 0;
+        while (!endOfInput && pending.size() < maxBlocksInFlight) {
+            byte[] member = readMember();
+            if (member == null) {
+                endOfInput = true;
+                break;
+            }
+            int memberSize = blockSize(member);
+            pending.addLast(pool.submit(() -> inflate(member, memberSize)));
+        }
+        if (pending.isEmpty()) {
+            return false;
+        }
+        Block block;
+        try {
+            block = pending.removeFirst().join();
+        } catch (RuntimeException e) {
+            // join() rethrows a task's checked exception wrapped, sometimes more than once
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException io) {
+                    throw io;
+                }
+            }
+            throw new IOException("BGZF block inflate failed", e);
+        }
+        current = block.data;
+        limit = block.length;
+        return true;
+    }
+
+    /** Reads one whole member into a pooled buffer, or returns null at a clean end of input. */
+    private byte[] readMember() throws IOException {
+        int n = in.readNBytes(header, 0, header.length);
+        if (n == 0) {
+            return null;
+        }
+        if (n < header.length) {
+            throw new EOFException("Truncated BGZF block header");
+        }
+        if ((header[0] & 0xff) != 0x1f || (header[1] & 0xff) != 0x8b || (header[3] & 0x04) == 0
+                || header[12] != 'B' || header[13] != 'C') {
+            throw new IOException("Not a BGZF block");
+        }
+        int size = blockSize(header);
+        byte[] member = InflaterPool.acquireBuffer();
+        System.arraycopy(header, 0, member, 0, header.length);
+        int rest = size - header.length;
+        if (in.readNBytes(member, header.length, rest) != rest) {
+            InflaterPool.releaseBuffer(member);
+            throw new EOFException("Truncated BGZF block");
+        }
+        return member;
+    }
+
+    private static int blockSize(byte[] member) {
+        return ((member[16] & 0xff) | (member[17] & 0xff) << 8) + 1;
+    }
+
+    private static Block inflate(byte[] member, int size) throws IOException {
+        int trailer = size - BgzfOutputStream.TRAILER_SIZE;
+        long expectedCrc = readIntLE(member, trailer);
+        int expectedLength = (int) readIntLE(member, trailer + 4);
+        byte[] out = InflaterPool.acquireBuffer();
+        Inflater inflater = InflaterPool.acquireInflater();
+        try {
+            if (expectedLength > out.length) {
+                throw new IOException("BGZF block larger than 64 KB");
+            }
+            inflater.setInput(member, BgzfOutputStream.HEADER_SIZE, trailer - BgzfOutputStream.HEADER_SIZE);
+            int total = 0;
+            while (!inflater.finished()) {
+                int n = inflater.inflate(out, total, out.length - total);
+                total += n;
+                if (n == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary() || total == out.length)) {
+                    throw new IOException("Corrupt BGZF block");
+                }
+            }
+            CRC32 crc = new CRC32();
+            crc.update(out, 0, total);
+            if (total != expectedLength || crc.getValue() != expectedCrc) {
+                throw new IOException("BGZF block failed integrity check");
+            }
+            return new Block(out, total);
+        } catch (DataFormatException e) {
+            InflaterPool.releaseBuffer(out);
+            throw new IOException("Corrupt BGZF block", e);
+        } catch (IOException e) {
+            InflaterPool.releaseBuffer(out);
+            throw e;
+        } finally {
+            InflaterPool.releaseInflater(inflater);
+            InflaterPool.releaseBuffer(member);
+        }
+    }
+
+    private static long readIntLE(byte[] b, int offset) {
+        return (b[offset] & 0xffL) | (b[offset + 1] & 0xffL) << 8
+                | (b[offset + 2] & 0xffL) << 16 | (b[offset + 3] & 0xffL) << 24;
+    }
+
+    private record Block(byte[] data, int length) {
+    }
+}
@@ -0,0 +1,109 @@
+package peerlinkfilesharingsystem.Service.CompressionService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared ForkJoin pool for block compression and BGZF decompression. The pool is
+ * sized to the machine; how many blocks a single upload or download may keep in
+ * flight follows the current load, so one big transfer cannot take every core
+ * from concurrent ones.
+ */
+@Component
+@Slf4j
+public class ParallelCompressionExecutor {
+
+    private final int cores = Runtime.getRuntime().availableProcessors();
+    private final ForkJoinPool pool = new ForkJoinPool(cores);
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private final AtomicInteger readAheadThreads = new AtomicInteger();
+    private ThreadPoolExecutor readAheadExecutor;
+
+    @Value("${compression.parallel.threshold-bytes:67108864}")
+    private long thresholdBytes;
+
+    @Value("${decompression.read-ahead.buffer-bytes:262144}")
+    private int readAheadBufferBytes;
+
+    @Value("${decompression.read-ahead.depth:4}")
+    private int readAheadDepth;
+
+    /** 0 = twice the cores. */
+    @Value("${decompression.read-ahead.max-threads:0}")
+    private int maxReadAheadThreads;
+
+    /**
+     * A read-ahead thread lives as long as its download's socket write, so the
+     * pool hands out threads on demand and never queues: past the bound a
+     * download simply inflates on its own writer thread.
+     */
+    @PostConstruct
+    void startReadAhead() {
+        int threads = maxReadAheadThreads > 0 ? maxReadAheadThreads : cores * 2;
+        readAheadExecutor = new ThreadPoolExecutor(0, threads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                task -> {
+                    Thread thread = new Thread(task, "download-readahead-" + readAheadThreads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        log.info("Download read-ahead: up to {} concurrent downloads overlapped", threads);
+    }
+
+    public boolean shouldParallelize(long expectedSize) {
+        return cores > 1 && expectedSize >= thresholdBytes;
+    }
+
+    /** Idle cores right now, never less than one and never more than the machine has. */
+    public int currentParallelism() {
+        double load = os.getSystemLoadAverage();
+        if (load < 0) {
+            return cores;
+        }
+        return (int) Math.max(1, Math.min(cores, Math.round(cores - load)));
+    }
+
+    public BgzfOutputStream newBgzfStream(OutputStream out, int level) {
+        int parallelism = currentParallelism();
+        log.info("Parallel BGZF: {} workers", parallelism);
+        return new BgzfOutputStream(out, level, pool, parallelism * 2);
+    }
+
+    /** Inflates BGZF members on the pool, two per idle core, ahead of the reader. */
+    public ParallelBgzfInputStream newBgzfReader(InputStream in) {
+        return new ParallelBgzfInputStream(in, pool, currentParallelism() * 2);
+    }
+
+    /**
+     * Runs a serial decoder on its own thread so inflating overlaps the socket
+     * write. When every read-ahead thread is taken the decoder is returned as is
+     * and inflates synchronously on the caller's thread.
+     */
+    public InputStream readAhead(InputStream decoded) {
+        try {
+            return new ReadAheadInputStream(decoded, readAheadExecutor, readAheadBufferBytes, readAheadDepth);
+        } catch (RejectedExecutionException e) {
+            log.debug("All {} read-ahead threads busy, inflating inline", readAheadExecutor.getMaximumPoolSize());
+            return decoded;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+        readAheadExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,152 @@
+package peerlinkfilesharingsystem.Service.CompressionService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decodes a stream on a background thread into a small ring of buffers, so the
+ * inflate of the next buffers overlaps the socket write of the current one. Used
+ * for codecs whose stream cannot be split across cores (single-member GZIP, zlib,
+ * LZ4, chunk manifests).
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    private static final Chunk END = new Chunk(new byte[0], 0, null);
+
+    private final InputStream source;
+    private final int bufferSize;
+    private final BlockingQueue<Chunk> filled;
+    private final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean sourceClosed = new AtomicBoolean();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Future<?> producer;
+
+    private Chunk current;
+    private int position;
+    private volatile boolean closed;
+
+    /**
+     * @throws RejectedExecutionException if the executor has no thread for the
+     *         producer; {@code source} is left open so the caller can read it directly
+     */
+    public ReadAheadInputStream(InputStream source, ExecutorService executor, int bufferSize, int depth) {
+        this.source = source;
+        this.bufferSize = bufferSize;
+        this.filled = new ArrayBlockingQueue<>(Math.max(1, depth));
+        this.producer = executor.submit(this::produce);
+    }
+
+    private void produce() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            while (!closed) {
+                byte[] buffer = free.poll();
+                if (buffer == null) {
+                    buffer = new byte[bufferSize];
+                }
+                int n = source.readNBytes(buffer, 0, buffer.length);
+                if (n > 0) {
+                    filled.put(new Chunk(buffer, n, null));
+                }
+                if (n < buffer.length) {
+                    filled.put(END);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            // Surfaces on the reader's side; offer() because a closed reader no longer drains
+            filled.clear();
+            filled.offer(new Chunk(null, 0, t));
+        } finally {
+            closeSource();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int n = read(single, 0, 1);
+        return n == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (current == null || position == current.length) {
+            if (current == END) {
+                return -1;
+            }
+            if (current != null) {
+                free.offer(current.data);
+            }
+            current = take();
+            position = 0;
+        }
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current.data, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        producer.cancel(true);
+        filled.clear();
+        // A producer that never ran cannot close the source itself
+        if (started.compareAndSet(false, true)) {
+            closeSource();
+        }
+    }
+
+    private Chunk take() throws IOException {
+        Chunk chunk;
+        try {
+            chunk = filled.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for decoded data", e);
+        }
+        if (chunk.error != null) {
+            closed = true;
+            throw chunk.error instanceof IOException io ? io : new IOException("Decoding failed", chunk.error);
+        }
+        return chunk;
+    }
+
+    private void closeSource() {
+        if (sourceClosed.compareAndSet(false, true)) {
+            try {
+                source.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private record Chunk(byte[] data, int length, Throwable error) {
+    }
+}
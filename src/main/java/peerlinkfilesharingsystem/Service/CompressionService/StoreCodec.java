@@ -0,0 +1,44 @@
+package peerlinkfilesharingsystem.Service.CompressionService;
+
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Identity codec for content that does not shrink (media, archives).
+ */
+@Component
+public class StoreCodec implements CompressionCodec {
+
+    public static final String NAME = "store";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public OutputStream encoder(OutputStream out, int level, int bufferSize) {
+        return new BufferedOutputStream(out, bufferSize);
+    }
+
+    @Override
+    public InputStream decoder(InputStream in, int bufferSize) {
+        return new BufferedInputStream(in, bufferSize);
+    }
+
+    @Override
+    public InputStream decoderFrom(Path file, long offset, int bufferSize) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(offset);
+        return new BufferedInputStream(Channels.newInputStream(channel), bufferSize);
+    }
+}
@@ -0,0 +1,55 @@
+package peerlinkfilesharingsystem.Service.CompressionService;
+
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * zlib-wrapped deflate (HTTP "Content-Encoding: deflate"). Only produced by
+ * clients that upload pre-compressed payloads; the Adler-32 trailer is checked
+ * by the inflater on every read.
+ */
+@Component
+public class ZlibCodec implements CompressionCodec {
+
+    public static final String NAME = "zlib";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public OutputStream encoder(OutputStream out, int level, int bufferSize) {
+        Deflater deflater = new Deflater(Math.max(0, Math.min(9, level)));
+        return new DeflaterOutputStream(out, deflater, bufferSize) {
+            @Override
+            public void close() throws java.io.IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    @Override
+    public InputStream decoder(InputStream in, int bufferSize) {
+        return new InflaterInputStream(new BufferedInputStream(in, bufferSize), new java.util.zip.Inflater(), bufferSize) {
+            @Override
+            public void close() throws java.io.IOException {
+                try {
+                    super.close();
+                } finally {
+                    inf.end();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,225 @@
+package peerlinkfilesharingsystem.Service.ContentStoreService;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import peerlinkfilesharingsystem.Dto.ContentHashCheckResponse;
+import peerlinkfilesharingsystem.Model.StoredObject;
+import peerlinkfilesharingsystem.Repo.StoredObjectRepo;
+import peerlinkfilesharingsystem.Service.CompressionService.BgzfIndex;
+import peerlinkfilesharingsystem.Service.CompressionService.CompressionCodecRegistry;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed object store shared by all users. Objects live under
+ * {@code <storage>/objects/<first two hex digits>/<sha256>} and are reference
+ * counted; ownership is never derived from the path, only from the transfer
+ * metadata that points at the object.
+ */
+@Service
+@Slf4j
+public class ContentStoreService {
+
+    private static final Pattern SHA256_HEX = Pattern.compile("^[0-9a-f]{64}$");
+    private static final int LOCK_STRIPES = 64;
+    private static final int CHALLENGE_LENGTH = 64 * 1024;
+    private static final Duration CHALLENGE_TTL = Duration.ofMinutes(10);
+    private static final int DECODER_BUFFER_SIZE = 64 * 1024;
+
+    private final StoredObjectRepo storedObjectRepo;
+    private final CompressionCodecRegistry codecRegistry;
+    private final SecureRandom random = new SecureRandom();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Map<String, Challenge> challenges = new ConcurrentHashMap<>();
+
+    @Value("${file.storage.path:./uploads}")
+    private String baseUploadDirectory;
+
+    public ContentStoreService(StoredObjectRepo storedObjectRepo, CompressionCodecRegistry codecRegistry) {
+        this.storedObjectRepo = storedObjectRepo;
+        this.codecRegistry = codecRegistry;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static String toHex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static String normalizeHash(String contentHash) {
+        String hash = contentHash == null ? "" : contentHash.trim().toLowerCase();
+        if (!SHA256_HEX.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Content hash must be a hex SHA-256 digest");
+        }
+        return hash;
+    }
+
+    public String objectPath(String contentHash) {
+        return baseUploadDirectory + "/objects/" + contentHash.substring(0, 2) + "/" + contentHash;
+    }
+
+    /**
+     * Takes ownership of a freshly written object. If the store already holds the
+     * same content the new file is discarded and the existing object gains a
+     * reference; otherwise the file is moved into place with one reference.
+     */
+    public StoredObject adopt(String contentHash, String writtenPath, String codec, Integer compressionLevel,
+                              long originalSize, long storedSize) throws IOException {
+        synchronized (lockFor(contentHash)) {
+            StoredObject existing = storedObjectRepo.findByContentHash(contentHash).orElse(null);
+            if (existing != null && new File(existing.getStoragePath()).isFile()) {
+                storedObjectRepo.adjustRefCount(contentHash, 1);
+                Files.deleteIfExists(Paths.get(writtenPath));
+                existing.setRefCount(existing.getRefCount() + 1);
+                log.info("Deduplicated upload onto object {} (refs: {})", contentHash, existing.getRefCount());
+                return existing;
+            }
+
+            Path target = Paths.get(objectPath(contentHash));
+            Files.createDirectories(target.getParent());
+            BgzfIndex.deleteSidecar(target.toString());
+            Files.move(Paths.get(writtenPath), target, StandardCopyOption.REPLACE_EXISTING);
+
+            // A row whose file went missing is repaired in place rather than duplicated
+            StoredObject object = existing != null ? existing : new StoredObject();
+            object.setContentHash(contentHash);
+            object.setStoragePath(target.toString());
+            object.setCodec(codec);
+            object.setCompressionLevel(compressionLevel);
+            object.setOriginalSize(originalSize);
+            object.setStoredSize(storedSize);
+            object.setRefCount(existing != null ? existing.getRefCount() + 1 : 1);
+            log.info("Stored new object {} ({} bytes)", contentHash, storedSize);
+            return storedObjectRepo.save(object);
+        }
+    }
+
+    /** Adds a reference to an existing object, or returns null if the store does not hold it. */
+    public StoredObject retain(String contentHash) {
+        synchronized (lockFor(contentHash)) {
+            StoredObject object = storedObjectRepo.findByContentHash(contentHash).orElse(null);
+            if (object == null || !new File(object.getStoragePath()).isFile()) {
+                return null;
+            }
+            storedObjectRepo.adjustRefCount(contentHash, 1);
+            object.setRefCount(object.getRefCount() + 1);
+            return object;
+        }
+    }
+
+    /** Drops one reference and unlinks the object once nothing points at it. */
+    public void release(String contentHash) {
+        synchronized (lockFor(contentHash)) {
+            StoredObject object = storedObjectRepo.findByContentHash(contentHash).orElse(null);
+            if (object == null) {
+                log.warn("Release of unknown object {}", contentHash);
+                return;
+            }
+            if (object.getRefCount() > 1) {
+                storedObjectRepo.adjustRefCount(contentHash, -1);
+                log.info("Released object {} (refs left: {})", contentHash, object.getRefCount() - 1);
+                return;
+            }
+            File file = new File(object.getStoragePath());
+            boolean deleted = !file.exists() || file.delete();
+            BgzfIndex.deleteSidecar(object.getStoragePath());
+            storedObjectRepo.delete(object);
+            log.info("Unlinked unreferenced object {} -> {}", contentHash, deleted);
+        }
+    }
+
+    /**
+     * Pre-upload check. A hit only counts when the declared size matches too,
+     * and it comes with a proof-of-possession challenge so knowing a hash is not
+     * enough to obtain someone else's file.
+     */
+    public ContentHashCheckResponse check(UUID userId, String contentHash, long fileSize) {
+        StoredObject object = storedObjectRepo.findByContentHash(contentHash).orElse(null);
+        if (object == null || object.getOriginalSize() == null || object.getOriginalSize() != fileSize
+                || !new File(object.getStoragePath()).isFile()) {
+            return ContentHashCheckResponse.builder().contentHash(contentHash).exists(false).build();
+        }
+        int length = (int) Math.min(CHALLENGE_LENGTH, fileSize);
+        long offset = fileSize == length ? 0 : (long) (random.nextDouble() * (fileSize - length + 1));
+        byte[] nonce = new byte[16];
+        random.nextBytes(nonce);
+
+        Challenge challenge = new Challenge(offset, length, nonce, Instant.now().plus(CHALLENGE_TTL));
+        challenges.put(challengeKey(userId, contentHash), challenge);
+        challenges.values().removeIf(c -> c.expiresAt.isBefore(Instant.now()));
+
+        return ContentHashCheckResponse.builder()
+                .contentHash(contentHash)
+                .exists(true)
+                .challengeOffset(offset)
+                .challengeLength(length)
+                .challengeNonce(HexFormat.of().formatHex(nonce))
+                .build();
+    }
+
+    /** Single use: a challenge is consumed whether or not the answer is right. */
+    public boolean verifyChallenge(UUID userId, String contentHash, String response) throws IOException {
+        Challenge challenge = challenges.remove(challengeKey(userId, contentHash));
+        if (challenge == null || challenge.expiresAt.isBefore(Instant.now()) || response == null) {
+            return false;
+        }
+        StoredObject object = storedObjectRepo.findByContentHash(contentHash).orElse(null);
+        if (object == null) {
+            return false;
+        }
+
+        MessageDigest digest = newDigest();
+        digest.update(challenge.nonce);
+        try (InputStream in = codecRegistry.get(object.getCodec())
+                .decoder(new FileInputStream(object.getStoragePath()), DECODER_BUFFER_SIZE)) {
+            in.skipNBytes(challenge.offset);
+            digest.update(in.readNBytes(challenge.length));
+        }
+        byte[] expected = digest.digest();
+        byte[] actual;
+        try {
+            actual = HexFormat.of().parseHex(response.trim().toLowerCase());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    private Object lockFor(String contentHash) {
+        return locks[Math.floorMod(contentHash.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static String challengeKey(UUID userId, String contentHash) {
+        return userId + ":" + contentHash;
+    }
+
+    private record Challenge(long offset, int length, byte[] nonce, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,79 @@
+package peerlinkfilesharingsystem.Service.DownloadCounterService;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import peerlinkfilesharingsystem.Repo.FileTransferRepo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-transfer download counters. Downloads bump an in-memory LongAdder, which
+ * never contends between request threads, and a scheduled flush adds the
+ * accumulated deltas to {@code download_count} with relative UPDATEs, so no
+ * increment is lost to a stale entity being saved over another.
+ *
+ * A flush subtracts exactly what it read instead of resetting the adder, so
+ * increments that land mid-flush stay for the next round; a failed flush puts
+ * its deltas back.
+ */
+@Service
+@Slf4j
+public class DownloadCounterService {
+
+    private final FileTransferRepo fileTransferRepo;
+    private final TransactionTemplate flushTransaction;
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    public DownloadCounterService(FileTransferRepo fileTransferRepo, PlatformTransactionManager transactionManager) {
+        this.fileTransferRepo = fileTransferRepo;
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    public void increment(String transferId) {
+        counters.computeIfAbsent(transferId, id -> new LongAdder()).increment();
+    }
+
+    /** Downloads counted but not yet written; add to the stored count for an up-to-date figure. */
+    public long pending(String transferId) {
+        LongAdder adder = counters.get(transferId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /** Drops the counter of a transfer that no longer exists. */
+    public void forget(String transferId) {
+        counters.remove(transferId);
+    }
+
+    public synchronized void flush() {
+        Map<String, Long> deltas = new LinkedHashMap<>();
+        counters.forEach((transferId, adder) -> {
+            long delta = adder.sum();
+            if (delta != 0) {
+                adder.add(-delta);
+                deltas.put(transferId, delta);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            flushTransaction.executeWithoutResult(status ->
+                    deltas.forEach((transferId, delta) -> fileTransferRepo.addDownloads(transferId, delta)));
+            log.debug("Flushed download counts for {} transfers", deltas.size());
+        } catch (Exception e) {
+            deltas.forEach((transferId, delta) -> counters.computeIfAbsent(transferId, id -> new LongAdder()).add(delta));
+            log.error("Failed to flush download counts for {} transfers, will retry", deltas.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,125 @@
+package peerlinkfilesharingsystem.Service.DownloadJournalService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import peerlinkfilesharingsystem.Model.FileDownload;
+import peerlinkfilesharingsystem.Repo.FileDownloadRepo;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Download telemetry off the request path. Finished downloads go into a bounded
+ * ring and a single background writer stores them in batches, one transaction
+ * per batch. Telemetry is best effort: when the ring is full new events are
+ * dropped and counted rather than slowing a download down.
+ */
+@Service
+@Slf4j
+public class DownloadJournalService {
+
+    private final FileDownloadRepo fileDownloadRepo;
+    private final TransactionTemplate batchTransaction;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    @Value("${download.journal.capacity:65536}")
+    private int capacity;
+
+    @Value("${download.journal.batch-size:500}")
+    private int batchSize;
+
+    @Value("${download.journal.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    private BlockingQueue<FileDownload> ring;
+    private Thread writer;
+    private volatile boolean running = true;
+
+    public DownloadJournalService(FileDownloadRepo fileDownloadRepo, PlatformTransactionManager transactionManager) {
+        this.fileDownloadRepo = fileDownloadRepo;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    void start() {
+        ring = new ArrayBlockingQueue<>(capacity);
+        writer = new Thread(this::writeLoop, "download-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Download journal started - Capacity: {}, Batch size: {}, Flush interval: {} ms",
+                capacity, batchSize, flushIntervalMs);
+    }
+
+    /**
+     * Records a download once its body is done. {@code bytesSent} is what the
+     * client was actually given; {@code completed} is false when the stream was
+     * closed before its end (client went away, or an error).
+     */
+    public void recordFinished(FileDownload download, long bytesSent, boolean completed) {
+        download.setTransferDurationSeconds(LocalDateTime.now());
+        download.setBytesSent(bytesSent);
+        download.setCompleted(completed);
+        if (!ring.offer(download)) {
+            long count = dropped.incrementAndGet();
+            // Power-of-two spacing keeps a sustained overflow from flooding the log
+            if (Long.bitCount(count) == 1) {
+                log.warn("Download journal full - {} events dropped so far", count);
+            }
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    private void writeLoop() {
+        List<FileDownload> batch = new ArrayList<>(batchSize);
+        while (running || !ring.isEmpty()) {
+            try {
+                FileDownload first = ring.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                ring.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                // Shutdown: fall through and write whatever is still in the ring
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<FileDownload> batch) {
+        try {
+            batchTransaction.executeWithoutResult(status -> fileDownloadRepo.saveAll(batch));
+            written.addAndGet(batch.size());
+        } catch (Exception e) {
+            log.error("Failed to write {} download journal events", batch.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // No interrupt: the writer notices within one poll interval and drains the ring first
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+}
@@ -0,0 +1,189 @@
+package peerlinkfilesharingsystem.Service.DownloadStreamingService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.ServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes download bodies off the servlet container's worker pool. A handler
+ * returns {@link #stream(InputStream)} and goes back to Tomcat at once; the
+ * copy runs on a dedicated, bounded executor, so slow clients occupy download
+ * threads rather than the request threads every other endpoint needs.
+ *
+ * A watchdog enforces a write-idle timeout: a body that has not moved a byte
+ * for {@code download.streaming.idle-timeout-ms} (stalled client, stuck read)
+ * is interrupted and fails, which releases its thread and connection. A write
+ * blocked on a client that stopped reading does not see the interrupt; Tomcat's
+ * connection timeout, capped at the same value in WebAsyncConfig, ends it.
+ *
+ * Bodies beyond the thread count wait in a bounded queue. A handler takes one
+ * of {@code max-threads + queue-capacity} admissions before it opens a download
+ * and answers 503 with a Retry-After when none is left; the admission is given
+ * back when the async request completes, however it ends. The executor's own
+ * queue has room for those plus short error bodies, which are not admitted, so
+ * an admitted body is never rejected.
+ */
+@Service
+@Slf4j
+public class DownloadStreamingService {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    @Value("${download.streaming.max-threads:512}")
+    private int maxThreads;
+
+    @Value("${download.streaming.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${download.streaming.idle-timeout-ms:60000}")
+    private long idleTimeoutMs;
+
+    @Value("${download.streaming.retry-after-seconds:5}")
+    private long retryAfterSeconds;
+
+    private static final String ADMITTED = DownloadStreamingService.class.getName() + ".ADMITTED";
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    private Semaphore admissions;
+    private final Set<Body> active = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "download-stream-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void start() {
+        executor.setCorePoolSize(maxThreads);
+        executor.setMaxPoolSize(maxThreads);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setQueueCapacity(queueCapacity + maxThreads);
+        executor.setThreadNamePrefix("download-stream-");
+        executor.setDaemon(true);
+        executor.initialize();
+        admissions = new Semaphore(maxThreads + queueCapacity);
+        long period = Math.max(100, idleTimeoutMs / 4);
+        watchdog.scheduleWithFixedDelay(this::expireIdle, period, period, TimeUnit.MILLISECONDS);
+        log.info("Download streaming - Threads: {}, Queue: {}, Write-idle timeout: {} ms",
+                maxThreads, queueCapacity, idleTimeoutMs);
+    }
+
+    /** Executor the MVC async machinery runs {@link StreamingResponseBody} instances on. */
+    public ThreadPoolTaskExecutor getExecutor() {
+        return executor;
+    }
+
+    public int getActiveCount() {
+        return active.size();
+    }
+
+    /**
+     * Reserves a thread or queue slot for the body this request is about to
+     * stream. False means the pool is saturated and the client should retry.
+     */
+    public boolean admit(ServletRequest request) {
+        if (!admissions.tryAcquire()) {
+            return false;
+        }
+        request.setAttribute(ADMITTED, Boolean.TRUE);
+        return true;
+    }
+
+    /** Gives back the request's admission, if it holds one; safe to call more than once. */
+    public void release(ServletRequest request) {
+        if (request.getAttribute(ADMITTED) != null) {
+            request.removeAttribute(ADMITTED);
+            admissions.release();
+        }
+    }
+
+    /** Releases admissions when async requests finish: written, failed, timed out or cancelled while queued. */
+    public CallableProcessingInterceptor admissionReleaser() {
+        return new CallableProcessingInterceptor() {
+            @Override
+            public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                ServletRequest servletRequest = request.getNativeRequest(ServletRequest.class);
+                if (servletRequest != null) {
+                    release(servletRequest);
+                }
+            }
+        };
+    }
+
+    /** What a rejected client is told to wait before retrying. */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public StreamingResponseBody stream(InputStream source) {
+        return out -> {
+            Body body = new Body(Thread.currentThread());
+            active.add(body);
+            try (source) {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int n;
+                while ((n = source.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                    body.lastProgressNanos = System.nanoTime();
+                }
+                out.flush();
+            } catch (IOException e) {
+                if (body.timedOut) {
+                    throw new IOException("Download write idle for more than " + idleTimeoutMs + " ms", e);
+                }
+                throw e;
+            } finally {
+                active.remove(body);
+                if (body.timedOut) {
+                    // The interrupt was meant for this body only; don't leak it into the pool's next task
+                    Thread.interrupted();
+                }
+            }
+        };
+    }
+
+    private void expireIdle() {
+        long now = System.nanoTime();
+        long limit = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        for (Body body : active) {
+            if (!body.timedOut && now - body.lastProgressNanos > limit) {
+                body.timedOut = true;
+                log.warn("Aborting download on {} - no progress for {} ms", body.thread.getName(), idleTimeoutMs);
+                body.thread.interrupt();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        executor.shutdown();
+    }
+
+    private static final class Body {
+        final Thread thread;
+        volatile long lastProgressNanos = System.nanoTime();
+        volatile boolean timedOut;
+
+        Body(Thread thread) {
+            this.thread = thread;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package peerlinkfilesharingsystem.Service.EgressService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Paces download bodies. Every paced download is a {@link Flow} that spends
+ * byte credit before each read. A scheduler thread hands out credit once per
+ * tick: each flow is limited by its own token bucket (the client's declared
+ * speed plus headroom) and all flows share the configured uplink cap through
+ * deficit round-robin, so a few fat downloads cannot starve the rest.
+ *
+ * With no total cap and no declared speed a download is not paced at all and
+ * keeps zero-copy sendfile.
+ */
+@Service
+@Slf4j
+public class EgressService {
+
+    private static final int MIN_QUANTUM_BYTES = 1500;
+
+    @Value("${egress.total-bandwidth-mbps:0}")
+    private double totalBandwidthMbps;
+
+    @Value("${egress.pace-to-declared-speed:true}")
+    private boolean paceToDeclaredSpeed;
+
+    @Value("${egress.declared-speed-headroom:1.25}")
+    private double declaredSpeedHeadroom;
+
+    @Value("${egress.quantum-bytes:65536}")
+    private int quantumBytes;
+
+    @Value("${egress.tick-ms:5}")
+    private long tickMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flowsPresent = lock.newCondition();
+    private final Deque<Flow> flows = new ArrayDeque<>();
+    private Thread scheduler;
+    private volatile boolean running = true;
+    private long totalBytesPerSecond;
+
+    @PostConstruct
+    void start() {
+        totalBytesPerSecond = toBytesPerSecond(totalBandwidthMbps);
+        scheduler = new Thread(this::scheduleLoop, "egress-scheduler");
+        scheduler.setDaemon(true);
+        scheduler.start();
+        log.info("Egress pacing - Total cap: {} Mbps, Pace to declared speed: {} (x{}), Tick: {} ms",
+                totalBandwidthMbps > 0 ? totalBandwidthMbps : "unlimited", paceToDeclaredSpeed,
+                declaredSpeedHeadroom, tickMs);
+    }
+
+    /** False when the body has to go through a paced stream rather than the container's sendfile. */
+    public boolean allowsZeroCopy(Double declaredSpeedMbps) {
+        return perFlowRate(declaredSpeedMbps) == 0 && totalBytesPerSecond == 0;
+    }
+
+    /**
+     * Registers a download. Returns null when it needs no pacing; otherwise the
+     * caller must {@link Flow#close()} the flow when the body is done.
+     */
+    public Flow open(Double declaredSpeedMbps) {
+        long rate = perFlowRate(declaredSpeedMbps);
+        if (rate == 0 && totalBytesPerSecond == 0) {
+            return null;
+        }
+        long tickBudget = Math.max(rate, totalBytesPerSecond) * tickMs / 1000;
+        // Two ticks of credit lets a reader keep going while the next grant is computed
+        Flow flow = new Flow(rate, Math.max(quantumBytes, 2 * tickBudget));
+        lock.lock();
+        try {
+            flows.addLast(flow);
+            flowsPresent.signal();
+        } finally {
+            lock.unlock();
+        }
+        return flow;
+    }
+
+    private long perFlowRate(Double declaredSpeedMbps) {
+        if (!paceToDeclaredSpeed || declaredSpeedMbps == null || declaredSpeedMbps <= 0) {
+            return 0;
+        }
+        return toBytesPerSecond(declaredSpeedMbps * declaredSpeedHeadroom);
+    }
+
+    private static long toBytesPerSecond(double mbps) {
+        return mbps > 0 ? (long) (mbps * 1_000_000 / 8) : 0;
+    }
+
+    private void scheduleLoop() {
+        long last = System.nanoTime();
+        while (running) {
+            lock.lock();
+            try {
+                while (flows.isEmpty() && running) {
+                    flowsPresent.await();
+                    last = System.nanoTime();
+                }
+                long now = System.nanoTime();
+                distribute((now - last) / 1e9);
+                last = now;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(tickMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * One tick of deficit round-robin. Caller holds the lock. Each round every
+     * flow with room for more credit earns a quantum of deficit and is granted
+     * what its deficit, its own bucket and the remaining global budget allow.
+     * Rounds repeat until the budget is spent or no flow can take more; the
+     * next tick starts one flow further along so no flow is always first.
+     */
+    private void distribute(double elapsedSeconds) {
+        long budget = totalBytesPerSecond > 0
+                ? (long) Math.min(totalBytesPerSecond * elapsedSeconds, totalBytesPerSecond * 2.0 * tickMs / 1000)
+                : Long.MAX_VALUE;
+        for (Flow flow : flows) {
+            if (flow.rate > 0) {
+                flow.tokens = Math.min(flow.creditLimit, flow.tokens + flow.rate * elapsedSeconds);
+            }
+        }
+        // A quantum larger than a tick's fair slice would hand whole ticks to single flows
+        long quantum = budget == Long.MAX_VALUE ? quantumBytes
+                : Math.max(MIN_QUANTUM_BYTES, Math.min(quantumBytes, budget / Math.max(1, flows.size())));
+        boolean progress = true;
+        while (budget > 0 && progress) {
+            progress = false;
+            for (Flow flow : flows) {
+                long room = flow.creditLimit - flow.credit;
+                long allowed = flow.rate > 0 ? (long) flow.tokens : Long.MAX_VALUE;
+                if (room <= 0 || allowed <= 0) {
+                    // Not backlogged: classic DRR forgets deficit it could not use
+                    flow.deficit = 0;
+                    continue;
+                }
+                flow.deficit += quantum;
+                long grant = Math.min(Math.min(flow.deficit, room), Math.min(allowed, budget));
+                if (grant <= 0) {
+                    continue;
+                }
+                boolean wasEmpty = flow.credit <= 0;
+                flow.credit += grant;
+                flow.deficit -= grant;
+                flow.tokens -= flow.rate > 0 ? grant : 0;
+                budget -= grant;
+                progress = true;
+                if (wasEmpty) {
+                    flow.creditAvailable.signal();
+                }
+                if (budget == 0) {
+                    break;
+                }
+            }
+        }
+        if (!flows.isEmpty()) {
+            flows.addLast(flows.pollFirst());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        scheduler.interrupt();
+    }
+
+    /** Byte credit of one paced download. */
+    public final class Flow {
+
+        private final long rate;
+        private final long creditLimit;
+        private final Condition creditAvailable = lock.newCondition();
+        private double tokens;
+        private long credit;
+        private long deficit;
+        private boolean closed;
+
+        private Flow(long rate, long creditLimit) {
+            this.rate = rate;
+            this.creditLimit = creditLimit;
+        }
+
+        /** Blocks until some credit is available and takes up to {@code max} bytes of it (at least one). */
+        public int acquire(int max) throws IOException {
+            lock.lock();
+            try {
+                while (credit <= 0) {
+                    if (closed) {
+                        throw new IOException("Egress flow closed");
+                    }
+                    creditAvailable.await();
+                }
+                int take = (int) Math.min(max, credit);
+                credit -= take;
+                return take;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while paced");
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Gives back credit that was acquired but not sent (short read or end of stream). */
+        public void refund(int bytes) {
+            if (bytes <= 0) {
+                return;
+            }
+            lock.lock();
+            try {
+                credit = Math.min(creditLimit, credit + bytes);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void close() {
+            lock.lock();
+            try {
+                if (!closed) {
+                    closed = true;
+                    flows.remove(this);
+                    creditAvailable.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
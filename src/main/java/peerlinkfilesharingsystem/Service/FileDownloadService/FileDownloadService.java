@@ -1,6 +1,7 @@
 package peerlinkfilesharingsystem.Service.FileDownloadService;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -12,42 +13,88 @@ import peerlinkfilesharingsystem.Dto.FileShareDownloadDTO;
 import peerlinkfilesharingsystem.Enums.MarkFileAs;
 import peerlinkfilesharingsystem.Exception.UnauthorizedFileAccessException;
 import peerlinkfilesharingsystem.Model.*;
-import peerlinkfilesharingsystem.Repo.FileDownloadRepo;
-import peerlinkfilesharingsystem.Repo.FileShareRepo;
-import peerlinkfilesharingsystem.Repo.FileTransferRepo;
 import peerlinkfilesharingsystem.Repo.UserRepo;
+import peerlinkfilesharingsystem.Service.CompressionService.BgzfCodec;
+import peerlinkfilesharingsystem.Service.CompressionService.CompressionCodec;
+import peerlinkfilesharingsystem.Service.CompressionService.CompressionCodecRegistry;
+import peerlinkfilesharingsystem.Service.CompressionService.DeflateCodec;
+import peerlinkfilesharingsystem.Service.CompressionService.ParallelCompressionExecutor;
+import peerlinkfilesharingsystem.Service.CompressionService.StoreCodec;
+import peerlinkfilesharingsystem.Service.DownloadCounterService.DownloadCounterService;
+import peerlinkfilesharingsystem.Service.DownloadJournalService.DownloadJournalService;
+import peerlinkfilesharingsystem.Service.EgressService.EgressService;
 import peerlinkfilesharingsystem.Service.FileStorageService.FileStorageService;
+import peerlinkfilesharingsystem.Service.HotFileCacheService.HotFileCacheService;
+import peerlinkfilesharingsystem.Service.IdAllocatorService.IdAllocatorService;
+import peerlinkfilesharingsystem.Service.IdAllocatorService.ShareCodeCodec;
 import peerlinkfilesharingsystem.Service.IntelligencePredictionService.IntelligencePredictionService;
+import peerlinkfilesharingsystem.Service.MetadataCacheService.MetadataCacheService;
+import peerlinkfilesharingsystem.Service.PopularityService.PopularityService;
 
 import java.io.*;
 import java.time.LocalDateTime;
 import java.util.Optional;
-import java.util.zip.GZIPInputStream;
 
 @Service
 @Slf4j
 public class FileDownloadService {
 
-    private final FileDownloadRepo fileDownloadRepo;
-    private final FileShareRepo fileShareRepo;
+    private final DownloadJournalService downloadJournalService;
     private final FileStorageService fileStorageService;
-    private FileTransferRepo fileTransferRepo;
+    private final MetadataCacheService metadataCacheService;
     private IntelligencePredictionService intelligencePredictionService;
     private UserRepo userRepo;
+    private final CompressionCodecRegistry codecRegistry;
+    private final IdAllocatorService idAllocatorService;
+    private final ParallelCompressionExecutor parallelCompressionExecutor;
+    private final HotFileCacheService hotFileCacheService;
+    private final PopularityService popularityService;
+    private final DownloadCounterService downloadCounterService;
 
+    private static final int DECODER_BUFFER_SIZE = 64 * 1024;
+
+    @Value("${file.download.gzip-passthrough:true}")
+    private boolean gzipPassthrough;
+
+    @Value("${file.download.sendfile:true}")
+    private boolean sendfileEnabled;
     private static final int GZIP_MAGIC_BYTE_1 = 0x1f;
     private static final int GZIP_MAGIC_BYTE_2 = 0x8b;
 
     public FileDownloadService(
-            FileTransferRepo fileTransferRepo,
+            MetadataCacheService metadataCacheService,
             UserRepo userRepo,
-            IntelligencePredictionService intelligencePredictionService, FileDownloadRepo fileDownloadRepo, FileShareRepo fileShareRepo, FileStorageService fileStorageService) {
-        this.fileTransferRepo = fileTransferRepo;
+            IntelligencePredictionService intelligencePredictionService, DownloadJournalService downloadJournalService, FileStorageService fileStorageService,
+            CompressionCodecRegistry codecRegistry, IdAllocatorService idAllocatorService,
+            ParallelCompressionExecutor parallelCompressionExecutor, HotFileCacheService hotFileCacheService,
+            PopularityService popularityService, DownloadCounterService downloadCounterService) {
+        this.metadataCacheService = metadataCacheService;
         this.intelligencePredictionService = intelligencePredictionService;
-        this.fileDownloadRepo = fileDownloadRepo;
-        this.fileShareRepo = fileShareRepo;
+        this.downloadJournalService = downloadJournalService;
         this.fileStorageService = fileStorageService;
         this.userRepo = userRepo;
+        this.codecRegistry = codecRegistry;
+        this.idAllocatorService = idAllocatorService;
+        this.parallelCompressionExecutor = parallelCompressionExecutor;
+        this.hotFileCacheService = hotFileCacheService;
+        this.popularityService = popularityService;
+        this.downloadCounterService = downloadCounterService;
+    }
+
+    /**
+     * Recorded when the body is closed: the journal row always, and one download
+     * count for a whole file or a first range (resumes and parallel range fetches
+     * are parts of one download, not new ones).
+     */
+    private ChunkedInputStream.CloseListener finishedListener(FileDownload fileDownload, String transferId,
+                                                              Long rangeStart) {
+        boolean countsAsDownload = rangeStart == null || rangeStart == 0;
+        return (bytesSent, reachedEnd) -> {
+            if (countsAsDownload) {
+                downloadCounterService.increment(transferId);
+            }
+            downloadJournalService.recordFinished(fileDownload, bytesSent, reachedEnd);
+        };
     }
 
 
@@ -55,7 +102,7 @@ public class FileDownloadService {
         log.info("Querying database for transferId: {}", transferId);
 
         try {
-            Optional<FileTransferEntity> transferOpt = fileTransferRepo.findByTransferId(transferId);
+            Optional<FileTransferEntity> transferOpt = metadataCacheService.transferById(transferId);
             if (transferOpt.get() != null) {
                 FileTransferEntity transfer = transferOpt.get();
                 log.info("Transfer found in database");
@@ -72,17 +119,24 @@ public class FileDownloadService {
             return null;
         }
     }
+    /**
+     * A public link may carry the share token (UUID) or the short base62 share
+     * code; each form is recognised from its shape and resolved straight to the
+     * transfer it serves. Raw share IDs are sequential, so they are never
+     * accepted here: anyone could walk them.
+     */
+    private Optional<FileTransferEntity> resolvePublicShare(String key) {
+        if (key.indexOf('-') >= 0) {
+            return metadataCacheService.publicTransferByShareToken(key);
+        }
+        Long shareId = ShareCodeCodec.looksLikeCode(key) ? idAllocatorService.fromShareCode(key) : null;
+        return metadataCacheService.publicTransferByShareId(shareId);
+    }
+
     public FileTransferEntity getShareById(String ShareId) {
         log.info("Querying database for ShareId: {}", ShareId);
-        FileShare fileShare = null;
         try {
-                if (ShareId.length() < 6) {
-                    fileShare = fileShareRepo.findByShareId(Long.parseLong(ShareId));
-                } else {
-                    fileShare = fileShareRepo.findByShareToken(ShareId);
-                }
-
-            Optional<FileTransferEntity> transferOpt = fileTransferRepo.findByShareToken(fileShare.getShareToken());
+            Optional<FileTransferEntity> transferOpt = resolvePublicShare(ShareId);
 
             if (transferOpt.isPresent()) {
                 FileTransferEntity transfer = transferOpt.get();
@@ -120,6 +174,132 @@ public class FileDownloadService {
         }
     }
 
+    /**
+     * The codec recorded at upload time decides the decoder. Transfers stored
+     * before codecs were tracked fall back to sniffing the GZIP magic bytes.
+     */
+    private CompressionCodec resolveCodec(FileTransferEntity transfer, File file) {
+        if (codecRegistry.contains(transfer.getCompressionCodec())) {
+            return codecRegistry.get(transfer.getCompressionCodec());
+        }
+        return codecRegistry.get(isGzipCompressed(file) ? DeflateCodec.NAME : StoreCodec.NAME);
+    }
+
+    /**
+     * Builds the response body for a download. Bytes that are served exactly as
+     * stored (objects kept without compression, and gzip passthrough) are handed
+     * to the container's sendfile when {@code zeroCopy} is set, so they never pass
+     * through the heap; everything else is decoded through a {@link ChunkedInputStream},
+     * from the hot-file cache when the transfer is popular enough to be held there.
+     */
+    private ChunkedDownloadResource buildResource(FileTransferEntity transfer, File file, CompressionCodec codec,
+                                                  boolean isCompressed,
+                                                  IntelligencePredictionService.OptimizationParams optimizationParams,
+                                                  Long rangeStart, Long rangeEnd, String acceptEncoding,
+                                                  boolean zeroCopy, ChunkedInputStream.CloseListener onFinished)
+            throws IOException {
+        String passthroughEncoding = rangeStart == null ? passthroughEncoding(transfer, codec, acceptEncoding) : null;
+        boolean storedAsIs = passthroughEncoding != null
+                || (StoreCodec.NAME.equals(codec.getName()) && transfer.getStorageLayout() == null);
+        long fileOffset = rangeStart == null ? 0 : rangeStart;
+        long fileLength = rangeStart == null ? file.length() : rangeEnd - rangeStart + 1;
+
+        ChunkedDownloadResource.ChunkedDownloadResourceBuilder builder = ChunkedDownloadResource.builder()
+                .fileName(transfer.getFileName())
+                .originalSizeBytes(transfer.getFileSize())
+                .compressedSizeBytes(transfer.getBytesTransferred())
+                .chunkSize(optimizationParams.getChunkSize())
+                .networkCondition(optimizationParams.getNetworkCondition())
+                .isCompressed(isCompressed)
+                .rangeStart(rangeStart)
+                .rangeEnd(rangeEnd)
+                .contentEncoding(passthroughEncoding)
+                .encodedSizeBytes(passthroughEncoding != null ? file.length() : null);
+
+        if (storedAsIs && zeroCopy && sendfileEnabled) {
+            log.info("Serving {} bytes of {} with sendfile", fileLength, transfer.getFileName());
+            // The container writes the body after we return and reports nothing back, so this is the handoff
+            onFinished.closed(fileLength, true);
+            return builder.sendfilePath(file.getCanonicalPath())
+                    .sendfileOffset(fileOffset)
+                    .sendfileLength(fileLength)
+                    .build();
+        }
+
+        // Create chunked input stream
+        InputStream baseInputStream;
+        InputStream cached = passthroughEncoding == null
+                ? hotFileCacheService.open(transfer, fileOffset, fileLength) : null;
+        if (cached != null) {
+            log.info("Serving {} from the hot-file cache", transfer.getFileName());
+            baseInputStream = cached;
+        } else if (passthroughEncoding != null) {
+            log.info("Client accepts {} - sending stored bytes without decoding", passthroughEncoding);
+            baseInputStream = new FileInputStream(file);
+        } else {
+            baseInputStream = rangeStart == null
+                    ? fileStorageService.openContentStream(transfer, codec, DECODER_BUFFER_SIZE)
+                    : fileStorageService.openContentRange(transfer, codec, rangeStart,
+                            rangeEnd - rangeStart + 1, DECODER_BUFFER_SIZE);
+            // A single BGZF object already inflates ahead on the pool; every other decoder gets a read-ahead thread
+            if (!storedAsIs && !(BgzfCodec.NAME.equals(codec.getName()) && transfer.getStorageLayout() == null)) {
+                baseInputStream = parallelCompressionExecutor.readAhead(baseInputStream);
+            }
+            if (rangeStart == null) {
+                baseInputStream = hotFileCacheService.fillWhileReading(transfer, baseInputStream);
+            }
+        }
+
+        // Wrap in chunked resource with adaptive chunk size
+        ChunkedInputStream chunkedInputStream = new ChunkedInputStream(
+                baseInputStream,
+                optimizationParams.getChunkSize(),
+                transfer.getFileName()
+        ).onClose(onFinished);
+        return builder.inputStream(chunkedInputStream).build();
+    }
+
+    /**
+     * The content-coding to send the stored object in as-is, or null to decode on
+     * the server. Only whole single-object files qualify, and only when the client
+     * accepts the coding the object is already in.
+     */
+    private String passthroughEncoding(FileTransferEntity transfer, CompressionCodec codec, String acceptEncoding) {
+        if (!gzipPassthrough || acceptEncoding == null || transfer.getStorageLayout() != null) {
+            return null;
+        }
+        String coding = codecRegistry.contentEncodingFor(codec.getName());
+        return coding != null && acceptsCoding(acceptEncoding, coding) ? coding : null;
+    }
+
+    /** Accept-Encoding check per RFC 9110: an explicit entry wins over "*", and q=0 means no. */
+    static boolean acceptsCoding(String acceptEncoding, String coding) {
+        Double explicit = null;
+        Double wildcard = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            String name = params[0].trim().toLowerCase();
+            double q = 1.0;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (name.equals(coding) || ("gzip".equals(coding) && name.equals("x-gzip"))) {
+                explicit = q;
+            } else if (name.equals("*")) {
+                wildcard = q;
+            }
+        }
+        double q = explicit != null ? explicit : wildcard != null ? wildcard : 0;
+        return q > 0;
+    }
+
     private String getFileExtension(String fileName) {
         if (fileName == null || fileName.lastIndexOf(".") == -1) {
             return "";
@@ -135,17 +315,25 @@ public class FileDownloadService {
      * 2. Decompresses GZIP files on-the-fly if needed
      * 3. Streams data efficiently to avoid memory issues
      * 4. Logs progress metrics
+     * 5. Serves a byte range of the original content when one is given
+     *
+     * @param rangeStart first byte to return, or null for the whole file
+     * @param rangeEnd   last byte to return (inclusive); ignored when rangeStart is null
      */
 
     public ChunkedDownloadResource downloadFileWithAdaptiveChunking(
             String transferId,
             Double networkSpeedMbps,
-            Integer latencyMs) {
+            Integer latencyMs,
+            Long rangeStart,
+            Long rangeEnd,
+            String acceptEncoding,
+            boolean zeroCopy) {
         Users users  = retriveLoggedInUser();
         log.info("Starting adaptive chunked download for transferId: {}", transferId);
 
         try {
-            Optional<FileTransferEntity> transferOpt = fileTransferRepo.findByTransferId(transferId);
+            Optional<FileTransferEntity> transferOpt = metadataCacheService.transferById(transferId);
 
             if(transferOpt.get().getDeleted()) {
                 log.info("File deleted from Storage");
@@ -167,10 +355,13 @@ public class FileDownloadService {
             fileDownload.setFileSize(transferEntity.getFileSize());
             fileDownload.setFileType(transferEntity.getFileType());
             fileDownload.setChunkSize(transferOpt.get().getChunkSize());
-            fileDownload.setTransferDurationSeconds(LocalDateTime.now());
-            fileDownloadRepo.save(fileDownload);
+            fileDownload.setStoragePath(transferEntity.getStoragePath());
+            fileDownload.setStartedAt(LocalDateTime.now());
             FileTransferEntity transfer = transferOpt.get();
-            transfer.setDownloadCount(transfer.getDownloadCount() + 1);
+            // Resumes and parallel range fetches are parts of one download, not new ones
+            if (rangeStart == null || rangeStart == 0) {
+                popularityService.recordDownload(transferId);
+            }
             String storagePath = transfer.getStoragePath();
 
             File file = new File(storagePath);
@@ -182,9 +373,9 @@ public class FileDownloadService {
 
             log.info("File found on disk - Size: {} bytes", file.length());
 
-            // Check if file is GZIP compressed
-            boolean isCompressed = isGzipCompressed(file);
-            log.info("File is {} compressed", isCompressed ? "GZIP" : "NOT");
+            CompressionCodec codec = resolveCodec(transfer, file);
+            boolean isCompressed = !StoreCodec.NAME.equals(codec.getName());
+            log.info("File stored with codec: {}", codec.getName());
 
             // Get file extension
             String extension = getFileExtension(transfer.getFileName());
@@ -204,30 +395,9 @@ public class FileDownloadService {
             log.info("  Chunk Size: {} bytes", optimizationParams.getChunkSize());
             log.info("  Compression Level: {}", optimizationParams.getCompressionLevel());
 
-            // Create chunked input stream
-            InputStream baseInputStream = new FileInputStream(file);
-
-            if (isCompressed) {
-                baseInputStream = new GZIPInputStream(baseInputStream);
-                log.info("GZIPInputStream created - file will be decompressed");
-            }
-
-            // Wrap in chunked resource with adaptive chunk size
-            ChunkedInputStream chunkedInputStream = new ChunkedInputStream(
-                    baseInputStream,
-                    optimizationParams.getChunkSize(),
-                    transfer.getFileName()
-            );
-
-            return ChunkedDownloadResource.builder()
-                    .inputStream(chunkedInputStream)
-                    .fileName(transfer.getFileName())
-                    .originalSizeBytes(transfer.getFileSize())
-                    .compressedSizeBytes(transfer.getBytesTransferred())
-                    .chunkSize(optimizationParams.getChunkSize())
-                    .networkCondition(optimizationParams.getNetworkCondition())
-                    .isCompressed(isCompressed)
-                    .build();
+            return buildResource(transfer, file, codec, isCompressed, optimizationParams,
+                    rangeStart, rangeEnd, acceptEncoding, zeroCopy,
+                    finishedListener(fileDownload, transfer.getTransferId(), rangeStart));
 
         } catch (Exception e) {
             log.error("Error in adaptive download for transferId: {}", transferId, e);
@@ -235,25 +405,15 @@ public class FileDownloadService {
         }
     }
     public ResponseEntity<?> getTransferInfoOfPublicFile(String shareId) {
-        FileShare fileShare = null;
         try {
-            if (shareId.length() < 6) {
-                fileShare = fileShareRepo.findByShareId(Long.parseLong(shareId));
-            } else {
-                fileShare = fileShareRepo.findByShareToken(shareId);
-            }
-
-            if (fileShare == null) {
-                return new ResponseEntity<>("File Not Found or Link Expired", HttpStatus.NOT_FOUND);
-            }
-
-            Optional<FileTransferEntity> transferOpt = fileTransferRepo.findByShareToken(fileShare.getShareToken());
+            Optional<FileTransferEntity> transferOpt = resolvePublicShare(shareId);
 
             if (transferOpt.isEmpty()) {
-                return new ResponseEntity<>("File Not Found", HttpStatus.NOT_FOUND);
+                return new ResponseEntity<>("File Not Found or Link Expired", HttpStatus.NOT_FOUND);
             }
 
             FileTransferEntity transfer = transferOpt.get();
+            popularityService.recordInfoView(transfer.getTransferId());
 
             double compressionRatio = 0.0;
             if (transfer.getFileSize() != null && transfer.getFileSize() > 0 &&
@@ -263,7 +423,7 @@ public class FileDownloadService {
 
             FileShareDownloadDTO dto = FileShareDownloadDTO.builder()
                     .success(transfer.getSuccess())
-                    .shareToken(fileShare.getShareToken())
+                    .shareToken(transfer.getShareToken())
                     .fileName(transfer.getFileName())
                     .fileType(transfer.getFileType())
                     .originalSizeBytes(transfer.getFileSize())
@@ -288,18 +448,24 @@ public class FileDownloadService {
             String transferId,
             Double networkSpeedMbps,
             String shareId,
-            Integer latencyMs) {
+            Integer latencyMs,
+            Long rangeStart,
+            Long rangeEnd,
+            String acceptEncoding,
+            boolean zeroCopy) {
 
         log.info("Starting adaptive chunked download for transferId: {}", transferId);
 
         try {
-            Optional<FileTransferEntity> transferOpt = fileTransferRepo.findByTransferId(transferId);
-            FileShare fileShare = fileShareRepo.findByShareToken(shareId);
+            Optional<FileTransferEntity> transferOpt = metadataCacheService.transferById(transferId);
+            boolean shared = resolvePublicShare(shareId)
+                    .map(sharedTransfer -> sharedTransfer.getTransferId().equals(transferId))
+                    .orElse(false);
             if (transferOpt.get().getDeleted()){
                 log.info("File deleted from Storage");
                 throw new FileNotFoundException("File Expired");
             }
-            if (transferOpt.isEmpty() || fileShare == null ) {
+            if (transferOpt.isEmpty() || !shared ) {
                 log.error("Transfer not found: {}", transferId);
                 return null;
             }
@@ -317,11 +483,14 @@ public class FileDownloadService {
             fileDownload.setFileSize(transferEntity.getFileSize());
             fileDownload.setFileType(transferEntity.getFileType());
             fileDownload.setChunkSize(transferOpt.get().getChunkSize());
-            fileDownloadRepo.save(fileDownload);
+            fileDownload.setStoragePath(transferEntity.getStoragePath());
+            fileDownload.setStartedAt(LocalDateTime.now());
             FileTransferEntity transfer = transferOpt.get();
-            transfer.setDownloadCount(transfer.getDownloadCount() + 1);
+            // Resumes and parallel range fetches are parts of one download, not new ones
+            if (rangeStart == null || rangeStart == 0) {
+                popularityService.recordDownload(transferId);
+            }
             String storagePath = transfer.getStoragePath();
-            fileTransferRepo.save(transfer);
             File file = new File(storagePath);
 
             if (!file.exists() || !file.isFile()) {
@@ -331,9 +500,9 @@ public class FileDownloadService {
 
             log.info("File found on disk - Size: {} bytes", file.length());
 
-            // Check if file is GZIP compressed
-            boolean isCompressed = isGzipCompressed(file);
-            log.info("File is {} compressed", isCompressed ? "GZIP" : "NOT");
+            CompressionCodec codec = resolveCodec(transfer, file);
+            boolean isCompressed = !StoreCodec.NAME.equals(codec.getName());
+            log.info("File stored with codec: {}", codec.getName());
 
             // Get file extension
             String extension = getFileExtension(transfer.getFileName());
@@ -353,30 +522,9 @@ public class FileDownloadService {
             log.info("  Chunk Size: {} bytes", optimizationParams.getChunkSize());
             log.info("  Compression Level: {}", optimizationParams.getCompressionLevel());
 
-            // Create chunked input stream
-            InputStream baseInputStream = new FileInputStream(file);
-
-            if (isCompressed) {
-                baseInputStream = new GZIPInputStream(baseInputStream);
-                log.info("GZIPInputStream created - file will be decompressed");
-            }
-
-            // Wrap in chunked resource with adaptive chunk size
-            ChunkedInputStream chunkedInputStream = new ChunkedInputStream(
-                    baseInputStream,
-                    optimizationParams.getChunkSize(),
-                    transfer.getFileName()
-            );
-
-            return ChunkedDownloadResource.builder()
-                    .inputStream(chunkedInputStream)
-                    .fileName(transfer.getFileName())
-                    .originalSizeBytes(transfer.getFileSize())
-                    .compressedSizeBytes(transfer.getBytesTransferred())
-                    .chunkSize(optimizationParams.getChunkSize())
-                    .networkCondition(optimizationParams.getNetworkCondition())
-                    .isCompressed(isCompressed)
-                    .build();
+            return buildResource(transfer, file, codec, isCompressed, optimizationParams,
+                    rangeStart, rangeEnd, acceptEncoding, zeroCopy,
+                    finishedListener(fileDownload, transfer.getTransferId(), rangeStart));
 
         } catch (Exception e) {
             log.error("Error in adaptive download for transferId: {}", transferId, e);
@@ -409,6 +557,15 @@ public class FileDownloadService {
         private long startTime;
         private int chunkCount = 0;
         private long lastLogTime = System.currentTimeMillis();
+        private boolean reachedEnd;
+        private boolean closed;
+        private CloseListener closeListener;
+        private EgressService.Flow egressFlow;
+
+        /** Told once, on close, how many bytes went out and whether the stream was read to its end. */
+        public interface CloseListener {
+            void closed(long bytesSent, boolean reachedEnd);
+        }
 
         public ChunkedInputStream(InputStream delegate, int chunkSize, String fileName) {
             this.delegate = delegate;
@@ -418,18 +575,47 @@ public class FileDownloadService {
             this.startTime = System.currentTimeMillis();
         }
 
+        public ChunkedInputStream onClose(CloseListener closeListener) {
+            this.closeListener = closeListener;
+            return this;
+        }
+
+        /** Spends credit from the flow before every read, which paces the response writer. Closed with the stream. */
+        public ChunkedInputStream pacedBy(EgressService.Flow egressFlow) {
+            this.egressFlow = egressFlow;
+            return this;
+        }
+
         @Override
         public int read() throws IOException {
+            if (egressFlow != null) {
+                egressFlow.acquire(1);
+            }
             int byte_ = delegate.read();
+            if (egressFlow != null && byte_ == -1) {
+                egressFlow.refund(1);
+            }
             if (byte_ != -1) {
                 totalBytesRead++;
+            } else {
+                reachedEnd = true;
             }
             return byte_;
         }
 
         @Override
         public int read(byte[] b, int off, int len) throws IOException {
-            int bytesRead = delegate.read(b, off, Math.min(len, this.chunkSize));
+            int allowed = Math.min(len, this.chunkSize);
+            if (egressFlow != null && allowed > 0) {
+                allowed = egressFlow.acquire(allowed);
+            }
+            int bytesRead = delegate.read(b, off, allowed);
+            if (egressFlow != null) {
+                egressFlow.refund(allowed - Math.max(bytesRead, 0));
+            }
+            if (bytesRead == -1) {
+                reachedEnd = true;
+            }
 
             if (bytesRead > 0) {
                 totalBytesRead += bytesRead;
@@ -457,6 +643,10 @@ public class FileDownloadService {
 
         @Override
         public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
             long totalTime = System.currentTimeMillis() - startTime;
             double avgSpeedMbps = (totalBytesRead * 8.0) / (totalTime * 1000.0);
 
@@ -469,7 +659,16 @@ public class FileDownloadService {
                     avgSpeedFormatted
             );
 
-            delegate.close();
+            try {
+                delegate.close();
+            } finally {
+                if (egressFlow != null) {
+                    egressFlow.close();
+                }
+                if (closeListener != null) {
+                    closeListener.closed(totalBytesRead, reachedEnd);
+                }
+            }
         }
 
 
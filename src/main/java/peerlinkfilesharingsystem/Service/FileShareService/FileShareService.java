@@ -22,6 +22,9 @@ import peerlinkfilesharingsystem.Repo.FileShareRepo;
 import peerlinkfilesharingsystem.Repo.FileTransferRepo;
 import peerlinkfilesharingsystem.Repo.UserRepo;
 import peerlinkfilesharingsystem.Service.FileStorageService.FileStorageService;
+import peerlinkfilesharingsystem.Service.HotFileCacheService.HotFileCacheService;
+import peerlinkfilesharingsystem.Service.MetadataCacheService.MetadataCacheService;
+import peerlinkfilesharingsystem.Service.IdAllocatorService.IdAllocatorService;
 import peerlinkfilesharingsystem.Service.MailService.MailService;
 
 import java.io.FileNotFoundException;
@@ -38,14 +41,20 @@ public class FileShareService {
     private final FileStorageService fileStorageService;
     private final MailService mailService;
     private final UserRepo userRepo;
+    private final IdAllocatorService idAllocatorService;
+    private final HotFileCacheService hotFileCacheService;
+    private final MetadataCacheService metadataCacheService;
 
-    public FileShareService(FileTransferRepo fileTransferRepo, FileShareRepo fileShareRepo, SecurityConfig config, FileStorageService fileStorageService, FileStorageService fileStorageService1, MailService mailService1,UserRepo userRepo) {
+    public FileShareService(FileTransferRepo fileTransferRepo, FileShareRepo fileShareRepo, SecurityConfig config, FileStorageService fileStorageService, FileStorageService fileStorageService1, MailService mailService1,UserRepo userRepo, IdAllocatorService idAllocatorService, HotFileCacheService hotFileCacheService, MetadataCacheService metadataCacheService) {
         this.fileTransferRepo = fileTransferRepo;
         this.fileShareRepo = fileShareRepo;
         this.config = config;
         this.fileStorageService = fileStorageService1;
         this.mailService = mailService1;
         this.userRepo = userRepo;
+        this.idAllocatorService = idAllocatorService;
+        this.hotFileCacheService = hotFileCacheService;
+        this.metadataCacheService = metadataCacheService;
     }
 
     public ResponseEntity<?> markFileAspublic(String transferId) {
@@ -60,7 +69,7 @@ public class FileShareService {
         Users users = retriveLoggedInUser();
 
         try {
-            fileStorageService.validateUserAccess(users.getId().toString(), fileTransferEntity.getStoragePath());
+            fileStorageService.validateTransferAccess(users.getId().toString(), fileTransferEntity);
         } catch (UnauthorizedFileAccessException ex) {
             return new ResponseEntity<>("Invalid Access", HttpStatus.UNAUTHORIZED);
         }
@@ -79,16 +88,19 @@ public class FileShareService {
         file.setMarkFileAs(MarkFileAs.PUBLIC);
         file.setShareToken(UUID.randomUUID().toString());
         fileTransferRepo.save(file);
+        metadataCacheService.invalidateTransfer(transferId);
+        metadataCacheService.invalidateShare(fileShare1);
 
         FileShare fileShare = new FileShare();
         fileShare.setFileName(file.getFileName());
         fileShare.setFileSize(file.getFileSize());
         fileShare.setFileType(file.getFileType());
         fileShare.setShareToken(file.getShareToken());
-        fileShare.setShareId(generateUniqueShareId());
+        fileShare.setShareId(idAllocatorService.nextShareId());
 //        fileShare.setShareExpiresAt(LocalDateTime.now().plusSeconds(15));
         fileShare.setShareExpiresAt(LocalDateTime.now().plusDays(1));
         fileShareRepo.save(fileShare);
+        metadataCacheService.shareCreated(fileShare);
         return new ResponseEntity<>("File marked as PUBLIC: " + transferId, HttpStatus.OK);
     }
 
@@ -101,7 +113,7 @@ public class FileShareService {
             return ResponseEntity.status(404).body("File not found");
         }
         try {
-            fileStorageService.validateUserAccess(users.getId().toString(), fileOpt.get().getStoragePath());
+            fileStorageService.validateTransferAccess(users.getId().toString(), fileOpt.get());
         } catch (UnauthorizedFileAccessException ex) {
             return new ResponseEntity<>("Invalid Access", HttpStatus.UNAUTHORIZED);
         }
@@ -132,7 +144,8 @@ public class FileShareService {
         ShareFileResponse response = new ShareFileResponse(
                 fileShare.getFileName(),
                 shareUrl,
-                fileShare.getShareId());
+                fileShare.getShareId(),
+                idAllocatorService.toShareCode(fileShare.getShareId()));
         return ResponseEntity.ok(response);
     }
     public ResponseEntity<?> markFileAsPrivate(String transferId) throws FileNotFoundException {
@@ -146,7 +159,7 @@ public class FileShareService {
                 );
         System.out.println(fileTransferEntity.getStoragePath());
         try {
-            fileStorageService.validateUserAccess(users.getId().toString(), fileTransferEntity.getStoragePath());
+            fileStorageService.validateTransferAccess(users.getId().toString(), fileTransferEntity);
         } catch (UnauthorizedFileAccessException ex) {
             return new ResponseEntity<>("Invalid Access", HttpStatus.UNAUTHORIZED);
         }
@@ -160,24 +173,12 @@ public class FileShareService {
         file.setShareToken(null);
         fileTransferRepo.save(file);
         fileShareRepo.delete(fileShare1);
+        hotFileCacheService.invalidate(transferId);
+        metadataCacheService.invalidateTransfer(transferId);
+        metadataCacheService.invalidateShare(fileShare1);
         return new ResponseEntity<>("File marked as PRIVATE : " + transferId, HttpStatus.OK);
     }
 
-    public Long generateRandomId() {
-        return 10000 + (long)(Math.random() * 90000);
-    }
-
-    public Long generateUniqueShareId() {
-        Long randomId;
-
-        do {
-            randomId = generateRandomId();
-        } while (fileShareRepo.checkShareId(randomId));
-
-        return randomId;    }
-
-
-
     public ResponseEntity<?> mailShareUrl(String transferId) {
         Users users = retriveLoggedInUser();
         Optional<FileTransferEntity> fileOpt = fileTransferRepo.findByShareToken(transferId);
@@ -186,7 +187,7 @@ public class FileShareService {
             return ResponseEntity.status(404).body("File not found");
         }
         try {
-            fileStorageService.validateUserAccess(users.getId().toString(), fileOpt.get().getStoragePath());
+            fileStorageService.validateTransferAccess(users.getId().toString(), fileOpt.get());
         } catch (UnauthorizedFileAccessException ex) {
             return new ResponseEntity<>("Invalid Access", HttpStatus.UNAUTHORIZED);
         }
@@ -217,7 +218,8 @@ public class FileShareService {
         ShareFileResponse response = new ShareFileResponse(
                 fileShare.getFileName(),
                 shareUrl,
-                fileShare.getShareId());
+                fileShare.getShareId(),
+                idAllocatorService.toShareCode(fileShare.getShareId()));
         return ResponseEntity.ok(response);
     }
 
@@ -259,7 +261,7 @@ public class FileShareService {
                         "File transfer not found with ID: " + transferId)
                 );
         try {
-            fileStorageService.validateUserAccess(users.getId().toString(), fileTransferEntity.getStoragePath());
+            fileStorageService.validateTransferAccess(users.getId().toString(), fileTransferEntity);
         } catch (UnauthorizedFileAccessException ex) {
             return new ResponseEntity<>("Invalid Access", HttpStatus.UNAUTHORIZED);
         }
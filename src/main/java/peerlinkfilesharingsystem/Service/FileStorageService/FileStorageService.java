@@ -3,16 +3,31 @@ package peerlinkfilesharingsystem.Service.FileStorageService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import peerlinkfilesharingsystem.Exception.UnauthorizedFileAccessException;
 import peerlinkfilesharingsystem.Model.DeletedFiles;
 import peerlinkfilesharingsystem.Model.FileTransferEntity;
 import peerlinkfilesharingsystem.Repo.DeletedFilesRepo;
 import peerlinkfilesharingsystem.Repo.FileTransferRepo;
+import peerlinkfilesharingsystem.Service.ChunkStoreService.ChunkStoreService;
+import peerlinkfilesharingsystem.Service.CompressionService.BgzfIndex;
+import peerlinkfilesharingsystem.Service.CompressionService.CompressionCodec;
+import peerlinkfilesharingsystem.Service.ContentStoreService.ContentStoreService;
+import peerlinkfilesharingsystem.Service.DownloadCounterService.DownloadCounterService;
+import peerlinkfilesharingsystem.Service.HotFileCacheService.HotFileCacheService;
+import peerlinkfilesharingsystem.Service.MetadataCacheService.MetadataCacheService;
+import peerlinkfilesharingsystem.Service.PopularityService.PopularityService;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -21,12 +36,34 @@ public class FileStorageService {
 
     private final FileTransferRepo fileTransferRepo;
     private final DeletedFilesRepo deletedFilesRepo;
+    private final ContentStoreService contentStoreService;
+    private final ChunkStoreService chunkStoreService;
+    private final HotFileCacheService hotFileCacheService;
+    private final PopularityService popularityService;
+    private final DownloadCounterService downloadCounterService;
+    private final MetadataCacheService metadataCacheService;
+    private final TransactionTemplate cleanupTransaction;
     @Value("${file.storage.path:./uploads}")
     private String baseUploadDirectory;
 
-    public FileStorageService(FileTransferRepo fileTransferRepo, DeletedFilesRepo deletedFilesRepo) {
+    private static final int DELETE_BATCH_SIZE = 500;
+    private static final String STATUS_EXPIRED = "EXPIRED";
+
+    public FileStorageService(FileTransferRepo fileTransferRepo, DeletedFilesRepo deletedFilesRepo,
+                              ContentStoreService contentStoreService, ChunkStoreService chunkStoreService,
+                              HotFileCacheService hotFileCacheService, PopularityService popularityService,
+                              DownloadCounterService downloadCounterService,
+                              MetadataCacheService metadataCacheService,
+                              PlatformTransactionManager transactionManager) {
         this.fileTransferRepo = fileTransferRepo;
         this.deletedFilesRepo = deletedFilesRepo;
+        this.contentStoreService = contentStoreService;
+        this.chunkStoreService = chunkStoreService;
+        this.hotFileCacheService = hotFileCacheService;
+        this.popularityService = popularityService;
+        this.downloadCounterService = downloadCounterService;
+        this.metadataCacheService = metadataCacheService;
+        this.cleanupTransaction = new TransactionTemplate(transactionManager);
     }
 
 
@@ -87,62 +124,147 @@ public class FileStorageService {
     }
 
 
+    /**
+     * Ownership check on the transfer metadata. Deduplicated transfers point into
+     * the shared object store, so the storage path says nothing about the owner.
+     */
+    public boolean validateTransferAccess(String requestingUserId, FileTransferEntity transfer) {
+        if (transfer.getUserId() == null || !transfer.getUserId().toString().equals(requestingUserId)) {
+            log.warn("OWNERSHIP VIOLATION: User {} tried accessing transfer {} owned by another user",
+                    requestingUserId, transfer.getTransferId());
+            throw new UnauthorizedFileAccessException("Access denied: This transfer does not belong to you");
+        }
+        log.debug("Access granted: User {} accessing transfer {}", requestingUserId, transfer.getTransferId());
+        return true;
+    }
+
+
+    /**
+     * Opens the original bytes of a transfer, whichever layout it was stored in.
+     */
+    public InputStream openContentStream(FileTransferEntity transfer, CompressionCodec codec, int bufferSize)
+            throws IOException {
+        if (ChunkStoreService.LAYOUT_CDC.equals(transfer.getStorageLayout())) {
+            return chunkStoreService.openStream(transfer.getStoragePath());
+        }
+        return codec.decoder(new FileInputStream(transfer.getStoragePath()), bufferSize);
+    }
+
+    /**
+     * Opens exactly {@code length} original bytes starting at {@code start}. Seekable
+     * layouts (BGZF, stored, chunk manifests) only decode what the range touches.
+     */
+    public InputStream openContentRange(FileTransferEntity transfer, CompressionCodec codec, long start,
+                                        long length, int bufferSize) throws IOException {
+        InputStream in = ChunkStoreService.LAYOUT_CDC.equals(transfer.getStorageLayout())
+                ? chunkStoreService.openStream(transfer.getStoragePath(), start)
+                : codec.decoderFrom(Paths.get(transfer.getStoragePath()), start, bufferSize);
+        return new BoundedInputStream(in, length);
+    }
+
+    private boolean isSharedStorage(FileTransferEntity transfer) {
+        return transfer.getContentHash() != null
+                || ChunkStoreService.LAYOUT_CDC.equals(transfer.getStorageLayout());
+    }
+
+    private boolean releaseStoredContent(FileTransferEntity transfer) {
+        try {
+            if (ChunkStoreService.LAYOUT_CDC.equals(transfer.getStorageLayout())) {
+                chunkStoreService.release(transfer.getStoragePath());
+            } else {
+                contentStoreService.release(transfer.getContentHash());
+            }
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to release stored content of {}: {}", transfer.getTransferId(), e.getMessage());
+            return false;
+        }
+    }
+
+
     public String getUserDirectoryPath(String userId) {
         return baseUploadDirectory + "/user_" + userId;
     }
 
     public void deleteExpiredFiles() {
 
-        List<FileTransferEntity> expiredFiles =
-                fileTransferRepo.findExpiredFiles(LocalDateTime.now());
+        // Loaded and flagged in one transaction, so the flags are flushed as one JDBC batch.
+        // Rows the soft-expiry job already flagged EXPIRED still hold their content and are reclaimed here.
+        List<FileTransferEntity> expiredFiles = cleanupTransaction.execute(status -> {
+            List<FileTransferEntity> files = fileTransferRepo.findExpiredFiles(LocalDateTime.now()).stream()
+                    .filter(file -> !file.getDeleted() || STATUS_EXPIRED.equals(file.getStatus()))
+                    .toList();
+            files.forEach(file -> file.setDeleted(true));
+            return files;
+        });
 
         if (expiredFiles.isEmpty()) {
             log.info("No expired files found.");
             System.out.println("No Expired files found.");
+            return;
         }
 
-        boolean allDeleted = true;
-
+        List<DeletedFiles> deletedRecords = new ArrayList<>(expiredFiles.size());
         for (FileTransferEntity file : expiredFiles) {
-            if (!file.getDeleted()) {
-
-                DeletedFiles deletedFiles = new DeletedFiles();
-                deletedFiles.setFileName(file.getFileName());
-                deletedFiles.setFileType(file.getFileType());
-                deletedFiles.setFilePath(file.getStoragePath());
-                deletedFiles.setDeletedAt(LocalDateTime.now());
-                deletedFiles.setTransferId(file.getTransferId());
-                deletedFiles.setUserId(file.getUserId().toString());
-                deletedFilesRepo.save(deletedFiles);
 
-                file.setDeleted(true);
-                fileTransferRepo.save(file);
-                String filePath = file.getStoragePath();
+            DeletedFiles deletedFiles = new DeletedFiles();
+            deletedFiles.setFileName(file.getFileName());
+            deletedFiles.setFileType(file.getFileType());
+            deletedFiles.setFilePath(file.getStoragePath());
+            deletedFiles.setDeletedAt(LocalDateTime.now());
+            deletedFiles.setTransferId(file.getTransferId());
+            deletedFiles.setUserId(file.getUserId().toString());
+            deletedRecords.add(deletedFiles);
+
+            hotFileCacheService.invalidate(file.getTransferId());
+            metadataCacheService.invalidateTransfer(file.getTransferId());
+            popularityService.forget(file.getTransferId());
+            downloadCounterService.forget(file.getTransferId());
+            String filePath = file.getStoragePath();
+
+            boolean deleted = false;
+            if (isSharedStorage(file)) {
+                // Shared objects/chunks: drop this transfer's references, the store unlinks them when unused
+                deleted = releaseStoredContent(file);
+                log.info("Released expired file: {} → {}", file.getFileName(), deleted);
+            } else {
                 File physicalFile = new File(filePath);
-
-                boolean deleted = false;
+                BgzfIndex.deleteSidecar(filePath);
                 if (physicalFile.exists()) {
                     deleted = physicalFile.delete();
                     log.info("Deleted expired file: {} → {}", file.getFileName(), deleted);
                 } else {
                     log.warn("File not found on disk: {}", filePath);
                 }
+            }
+        }
 
-                fileTransferRepo.delete(file);
-                log.info("Deleted DB entry for file: {}", file.getTransferId());
+        cleanupTransaction.executeWithoutResult(status -> {
+            deletedFilesRepo.saveAll(deletedRecords);
+            deleteInBatches(expiredFiles);
+        });
+        log.info("Deleted DB entries for {} expired files", expiredFiles.size());
+    }
 
-                if (!deleted) {
-                    allDeleted = false;
-                }
-            }
+    /** One DELETE statement per slice, instead of a select and a delete per row. */
+    private void deleteInBatches(List<FileTransferEntity> files) {
+        for (int from = 0; from < files.size(); from += DELETE_BATCH_SIZE) {
+            fileTransferRepo.deleteAllInBatch(files.subList(from, Math.min(files.size(), from + DELETE_BATCH_SIZE)));
         }
     }
 
     public void deleteExpiredFilesinTransferEntity() {
         LocalDateTime now = LocalDateTime.now();
 
-        List<FileTransferEntity> expiredFiles = fileTransferRepo
-                .findByExpiresAtBeforeAndDeletedFalse(now);
+        // Loaded and saved in one transaction: the rows stay managed, so the updates go out batched without re-selects
+        List<FileTransferEntity> expiredFiles = cleanupTransaction.execute(status -> {
+            List<FileTransferEntity> files = fileTransferRepo.findByExpiresAtBeforeAndDeletedFalse(now);
+            files.forEach(file -> {
+                file.setDeleted(true);
+                file.setStatus(STATUS_EXPIRED);
+            });
+            return fileTransferRepo.saveAll(files);
+        });
 
         if (expiredFiles.isEmpty()) {
             log.info("No expired files found");
@@ -150,12 +272,11 @@ public class FileStorageService {
         }
 
         expiredFiles.forEach(file -> {
-            file.setDeleted(true);
-            file.setStatus("EXPIRED");
+            hotFileCacheService.invalidate(file.getTransferId());
+            metadataCacheService.invalidateTransfer(file.getTransferId());
+            popularityService.forget(file.getTransferId());
         });
 
-        fileTransferRepo.saveAll(expiredFiles);
-
         log.info("Expired files deleted: {}", expiredFiles.size());
     }
 
@@ -167,11 +288,19 @@ public class FileStorageService {
 
         log.info("Unsuccessful transfers found: {}", failedFiles.size());
 
+        List<FileTransferEntity> released = new ArrayList<>(failedFiles.size());
         for (FileTransferEntity file : failedFiles) {
 
             try {
-                if (file.getStoragePath() != null) {
+                hotFileCacheService.invalidate(file.getTransferId());
+                metadataCacheService.invalidateTransfer(file.getTransferId());
+                popularityService.forget(file.getTransferId());
+                downloadCounterService.forget(file.getTransferId());
+                if (isSharedStorage(file)) {
+                    releaseStoredContent(file);
+                } else if (file.getStoragePath() != null) {
                     File f = new File(file.getStoragePath());
+                    BgzfIndex.deleteSidecar(file.getStoragePath());
                     if (f.exists()) {
                         boolean deleted = f.delete();
                         log.info("Deleted failed file from disk: {} -> {}",
@@ -179,13 +308,17 @@ public class FileStorageService {
                     }
                 }
 
-                fileTransferRepo.delete(file);
-                log.info("Deleted failed file metadata with transferId: {}", file.getTransferId());
+                released.add(file);
 
             } catch (Exception e) {
                 log.error("Error deleting failed file {} : {}", file.getTransferId(), e.getMessage());
             }
         }
+
+        if (!released.isEmpty()) {
+            cleanupTransaction.executeWithoutResult(status -> deleteInBatches(released));
+            log.info("Deleted failed file metadata for {} transfers", released.size());
+        }
     }
 
 //    private void deleteFileFromDisk(String path) {
@@ -197,4 +330,43 @@ public class FileStorageService {
 //            log.info("Deleted file from disk {} -> {}", path, result);
 //        }
 //    }
+
+    /** Ends after a fixed number of bytes; the range's end is never read past. */
+    private static class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+    }
 }
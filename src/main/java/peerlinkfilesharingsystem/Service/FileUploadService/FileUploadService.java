@@ -1,25 +1,46 @@
 package peerlinkfilesharingsystem.Service.FileUploadService;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import peerlinkfilesharingsystem.Dto.ContentHashCheckResponse;
 import peerlinkfilesharingsystem.Dto.FileUploadResponse;
+import peerlinkfilesharingsystem.Dto.UploadByHashRequest;
+import peerlinkfilesharingsystem.Exception.UploadQueueFullException;
 import peerlinkfilesharingsystem.Model.FileTransferEntity;
 import peerlinkfilesharingsystem.Model.IntelligentModelParametersEntity;
+import peerlinkfilesharingsystem.Model.StoredObject;
 import peerlinkfilesharingsystem.Model.Users;
 import peerlinkfilesharingsystem.Repo.FileTransferRepo;
 import peerlinkfilesharingsystem.Repo.IntelligentModelParametersRepo;
 import peerlinkfilesharingsystem.Repo.UserRepo;
+import peerlinkfilesharingsystem.Service.ChunkStoreService.ChunkStoreService;
+import peerlinkfilesharingsystem.Service.CompressionService.CompressionCodecRegistry;
+import peerlinkfilesharingsystem.Service.CompressionService.EntropySampler;
 import peerlinkfilesharingsystem.Service.CompressionService.FileCompressionService;
+import peerlinkfilesharingsystem.Service.CompressionService.StoreCodec;
+import peerlinkfilesharingsystem.Service.ContentStoreService.ContentStoreService;
 import peerlinkfilesharingsystem.Service.FileStorageService.FileStorageService;
+import peerlinkfilesharingsystem.Service.IdAllocatorService.IdAllocatorService;
 import peerlinkfilesharingsystem.Service.IntelligencePredictionService.IntelligencePredictionService;
+import peerlinkfilesharingsystem.Service.UploadQueueService.UploadQueueService;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -28,6 +49,15 @@ import java.util.Optional;
 @Slf4j
 public class FileUploadService {
 
+    private static final long MAX_UPLOAD_SIZE_BYTES = 10 * 1024 * 1024 * 1024L;
+    private static final int MIN_PIPELINE_BUFFER = 64 * 1024;
+    private static final String STAGING_SUFFIX = ".upload";
+
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_PROCESSING = "PROCESSING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
     private final FileStorageService fileStorageService;
     @Value("${file.storage.path:./uploads}")
     private String uploadDirectory;
@@ -37,14 +67,23 @@ public class FileUploadService {
     private FileCompressionService compressionService;
     private IntelligentModelParametersRepo intelligentModelParametersRepo;
     private UserRepo userRepo;
+    private CompressionCodecRegistry codecRegistry;
+    private ContentStoreService contentStoreService;
+    private ChunkStoreService chunkStoreService;
+    private UploadQueueService uploadQueueService;
+    private IdAllocatorService idAllocatorService;
 
 
     public FileUploadService(FileTransferRepo fileTransferRepo,
                              IntelligencePredictionService intelligencePredictionService,
                              FileCompressionService fileCompressionService,
                              IntelligentModelParametersRepo intelligentModelParametersRepo, FileStorageService fileStorageService,
-                             UserRepo userRepo
-
+                             UserRepo userRepo,
+                             CompressionCodecRegistry codecRegistry,
+                             ContentStoreService contentStoreService,
+                             ChunkStoreService chunkStoreService,
+                             UploadQueueService uploadQueueService,
+                             IdAllocatorService idAllocatorService
                              ) {
         this.fileTransferRepo = fileTransferRepo;
         this.intelligencePredictionService = intelligencePredictionService;
@@ -52,12 +91,17 @@ public class FileUploadService {
         this.intelligentModelParametersRepo = intelligentModelParametersRepo;
         this.fileStorageService = fileStorageService;
         this.userRepo = userRepo;
-
+        this.codecRegistry = codecRegistry;
+        this.contentStoreService = contentStoreService;
+        this.chunkStoreService = chunkStoreService;
+        this.uploadQueueService = uploadQueueService;
+        this.idAllocatorService = idAllocatorService;
     }
 
     public FileUploadResponse handleFile(MultipartFile file, Integer latencyMs,
-                                         Double networkSpeedMbps, String deviceType, String clientIp) {
-        String transferId = String.valueOf(generateUniqueShareId());
+                                         Double networkSpeedMbps, String deviceType, String clientIp,
+                                         String contentEncoding) {
+        String transferId = idAllocatorService.nextTransferId();
         String filename = file.getOriginalFilename();
         String extension = extractFileType(filename);
 
@@ -69,26 +113,181 @@ public class FileUploadService {
         log.info("Network Speed: {} Mbps, Latency: {} ms", networkSpeedMbps, latencyMs);
 
         try {
-            FileTransferEntity fileTransferEntity = new FileTransferEntity();
-            fileTransferEntity.setTransferId(transferId);
-            fileTransferEntity.setUserId(users.getId());
-            fileTransferEntity.setFileName(filename);
-            fileTransferEntity.setFileType(extension);
-            fileTransferEntity.setDeviceType(deviceType);
-            fileTransferEntity.setFileSize(file.getSize());
-            fileTransferEntity.setLatencyMs(latencyMs);
-            fileTransferEntity.setNetworkSpeedMbps(networkSpeedMbps);
-            fileTransferEntity.setClientIp(clientIp);
-//            fileTransferEntity.setExpiresAt(LocalDateTime.now().plusMinutes(1));
-            fileTransferEntity.setExpiresAt(LocalDateTime.now().plusDays(2));
+            String clientCodec = codecRegistry.forContentEncoding(contentEncoding);
+            FileTransferEntity fileTransferEntity = newTransferEntity(transferId, users, filename, extension,
+                    deviceType, file.getSize(), latencyMs, networkSpeedMbps, clientIp);
             log.info("FileTransferEntity created and saved");
 
-            log.info("Requesting ML predictions...");
-            IntelligencePredictionService.OptimizationParams params =
-                    intelligencePredictionService.predictOptimalParameters(
-                            filename, extension, networkSpeedMbps, latencyMs, file.getSize());
+            try (InputStream rawStream = file.getInputStream()) {
+                return processUpload(fileTransferEntity, rawStream, clientCodec);
+            }
+        } catch (Exception e) {
+            log.error("========== UPLOAD FAILED ==========", e);
+            return FileUploadResponse.builder()
+                    .transferId(transferId)
+                    .success(false)
+                    .message("Upload failed: " + e.getMessage())
+                    .build();
+        }
+    }
+
+    /**
+     * Asynchronous upload: the multipart bytes are moved into a staging file next
+     * to the final object (a rename when the container spooled them to the same
+     * disk) and processing is queued on the fair worker pool. The request ends as
+     * soon as the bytes are durable; progress is visible through the status endpoint.
+     */
+    public FileUploadResponse acceptFile(MultipartFile file, Integer latencyMs,
+                                         Double networkSpeedMbps, String deviceType, String clientIp,
+                                         String contentEncoding) throws IOException {
+        String clientCodec = codecRegistry.forContentEncoding(contentEncoding);
+        Users users = retriveLoggedInUser();
+        if (!uploadQueueService.hasCapacity(users.getId())) {
+            throw new UploadQueueFullException(uploadQueueService.suggestRetryAfterSeconds(users.getId()));
+        }
+
+        String transferId = idAllocatorService.nextTransferId();
+        String filename = file.getOriginalFilename();
+        log.info("Async upload received - TransferID: {}, File: {}, Size: {} bytes", transferId, filename, file.getSize());
+
+        FileTransferEntity fileTransferEntity = newTransferEntity(transferId, users, filename, extractFileType(filename),
+                deviceType, file.getSize(), latencyMs, networkSpeedMbps, clientIp);
+        String Userpath = fileStorageService.createUserDirectory(String.valueOf(users.getId()));
+        fileStorageService.validateUserAccess(users.getId().toString(), Userpath);
+        String stagingPath = Userpath + "/" + transferId + STAGING_SUFFIX;
+        file.transferTo(Paths.get(stagingPath));
+
+        fileTransferEntity.setStatus(STATUS_QUEUED);
+        fileTransferEntity.setStoragePath(stagingPath);
+        // Remembered across restarts until processing replaces it with the stored codec
+        fileTransferEntity.setCompressionCodec(clientCodec);
+        fileTransferRepo.save(fileTransferEntity);
+
+        if (!uploadQueueService.submit(users.getId(), () -> processStagedUpload(transferId))) {
+            Files.deleteIfExists(Paths.get(stagingPath));
+            fileTransferRepo.delete(fileTransferEntity);
+            throw new UploadQueueFullException(uploadQueueService.suggestRetryAfterSeconds(users.getId()));
+        }
+
+        return FileUploadResponse.builder()
+                .fileId(fileTransferEntity.getFileId())
+                .transferId(transferId)
+                .fileName(filename)
+                .fileSizeBytes(file.getSize())
+                .status(STATUS_QUEUED)
+                .success(true)
+                .message("Upload received, processing queued")
+                .uploadedAt(LocalDateTime.now())
+                .build();
+    }
+
+    /** Worker side of {@link #acceptFile}. */
+    public void processStagedUpload(String transferId) {
+        FileTransferEntity fileTransferEntity = fileTransferRepo.findByTransferId(transferId).orElse(null);
+        if (fileTransferEntity == null) {
+            log.warn("Queued upload {} no longer exists", transferId);
+            return;
+        }
+        String stagingPath = fileTransferEntity.getStoragePath();
+        String clientCodec = fileTransferEntity.getCompressionCodec();
+        fileTransferEntity.setStatus(STATUS_PROCESSING);
+        fileTransferRepo.save(fileTransferEntity);
+
+        try (InputStream rawStream = new FileInputStream(stagingPath)) {
+            processUpload(fileTransferEntity, rawStream, clientCodec);
+        } catch (IOException e) {
+            log.error("Queued upload {} could not read its staging file", transferId, e);
+            markFailed(fileTransferEntity);
+        }
+        try {
+            Files.deleteIfExists(Paths.get(stagingPath));
+        } catch (IOException e) {
+            log.warn("Could not delete staging file {}", stagingPath);
+        }
+    }
+
+    public FileUploadResponse getUploadStatus(String transferId) {
+        Users users = retriveLoggedInUser();
+        FileTransferEntity transfer = fileTransferRepo.findByTransferId(transferId)
+                .orElseThrow(() -> new IllegalArgumentException("Transfer not found: " + transferId));
+        fileStorageService.validateTransferAccess(users.getId().toString(), transfer);
+        return uploadStatusOf(transfer);
+    }
+
+    /** The upload response as recorded on the transfer row, for callers that already checked access. */
+    public FileUploadResponse uploadStatusOf(FileTransferEntity transfer) {
+        String status = transfer.getStatus() != null ? transfer.getStatus()
+                : Boolean.TRUE.equals(transfer.getSuccess()) ? STATUS_COMPLETED : STATUS_PROCESSING;
+        return FileUploadResponse.builder()
+                .fileId(transfer.getFileId())
+                .transferId(transfer.getTransferId())
+                .fileName(transfer.getFileName())
+                .fileSizeBytes(transfer.getFileSize())
+                .compressedSizeBytes(STATUS_COMPLETED.equals(status) ? transfer.getBytesTransferred() : null)
+                .appliedCompressionLevel(STATUS_COMPLETED.equals(status) ? transfer.getCompressionLevel() : null)
+                .appliedCodec(STATUS_COMPLETED.equals(status) ? transfer.getCompressionCodec() : null)
+                .appliedChunkSize(transfer.getChunkSize())
+                .status(status)
+                .success(!STATUS_FAILED.equals(status))
+                .message(STATUS_QUEUED.equals(status)
+                        ? uploadQueueService.queuedFor(transfer.getUserId()) + " of your uploads waiting"
+                        : null)
+                .uploadedAt(transfer.getCompletedAt())
+                .build();
+    }
+
+    /**
+     * Uploads that were received but not processed when the server stopped are
+     * queued again from their staging files.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeQueuedUploads() {
+        for (FileTransferEntity transfer : fileTransferRepo.findByStatusIn(List.of(STATUS_QUEUED, STATUS_PROCESSING))) {
+            String stagingPath = transfer.getStoragePath();
+            if (stagingPath == null || !stagingPath.endsWith(STAGING_SUFFIX)) {
+                continue;
+            }
+            if (!new File(stagingPath).isFile()) {
+                markFailed(transfer);
+                continue;
+            }
+            String transferId = transfer.getTransferId();
+            uploadQueueService.submitAccepted(transfer.getUserId(), () -> processStagedUpload(transferId));
+            log.info("Re-queued upload {} after restart", transferId);
+        }
+    }
+
+    /**
+     * Samples, compresses and stores one upload whose entity is already built.
+     * Shared by the synchronous request path and the queued workers.
+     */
+    private FileUploadResponse processUpload(FileTransferEntity fileTransferEntity, InputStream rawStream,
+                                             String clientCodec) {
+        String transferId = fileTransferEntity.getTransferId();
+        String filename = fileTransferEntity.getFileName();
+        String extension = fileTransferEntity.getFileType();
+        long fileSize = fileTransferEntity.getFileSize();
+        Double networkSpeedMbps = fileTransferEntity.getNetworkSpeedMbps();
+        Integer latencyMs = fileTransferEntity.getLatencyMs();
+        String userId = String.valueOf(fileTransferEntity.getUserId());
+
+        try {
+            InputStream uploadStream = new BufferedInputStream(rawStream, EntropySampler.SAMPLE_BYTES);
+            IntelligencePredictionService.OptimizationParams params;
+            if (clientCodec != null) {
+                log.info("Client pre-compressed payload ({}) - stored as received", clientCodec);
+                params = predictForPrecompressed(filename, extension, networkSpeedMbps, latencyMs, fileSize, clientCodec);
+            } else {
+                Double sampledEntropy = EntropySampler.sample(uploadStream);
+                log.info("Sampled content entropy: {} bits/byte", sampledEntropy);
+
+                log.info("Requesting ML predictions...");
+                params = intelligencePredictionService.predictOptimalParameters(
+                        filename, extension, networkSpeedMbps, latencyMs, fileSize, sampledEntropy);
+            }
 
             log.info("ML PREDICTION RESULTS:");
+            log.info("  Codec: {}", params.getCodec());
             log.info("  Compression Level: {} (higher = more compression)", params.getCompressionLevel());
             log.info("  Chunk Size: {} bytes ({} KB)", params.getChunkSize(), params.getChunkSize() / 1024);
             log.info("  Network Condition: {}", params.getNetworkCondition());
@@ -96,79 +295,234 @@ public class FileUploadService {
             log.info("  Predicted Success Rate: {:.2f}%", params.getPredictedSuccessRate() * 100);
 
             fileTransferEntity.setCompressionLevel(params.getCompressionLevel());
+            fileTransferEntity.setCompressionCodec(params.getCodec());
             fileTransferEntity.setChunkSize(params.getChunkSize());
 
-            String Userpath  = fileStorageService.createUserDirectory(String.valueOf(fileTransferEntity.getUserId()));
-            if (fileStorageService.validateUserAccess(users.getId().toString(),Userpath)) {
+            String Userpath  = fileStorageService.createUserDirectory(userId);
+            if (fileStorageService.validateUserAccess(userId, Userpath)) {
                 fileTransferRepo.save(fileTransferEntity);
 
                 log.info("Starting compression process..." + Userpath);
                 long startTime = System.currentTimeMillis();
 
-                CompressionResult compressionResult = processUploadWithCompression(
-                        file.getInputStream(), fileTransferEntity, Userpath, params);
+                FileCompressionService.StreamCompressionResult compressionResult;
+                MessageDigest contentDigest = ContentStoreService.newDigest();
+                try (uploadStream) {
+                    compressionResult = processUploadWithCompression(
+                            uploadStream, fileTransferEntity, Userpath, params, clientCodec != null, contentDigest);
+                }
 
                 long duration = (System.currentTimeMillis() - startTime) / 1000;
 
                 log.info("COMPRESSION RESULTS:");
-                log.info("  Original Size: {} bytes ({} MB)", compressionResult.totalBytesRead, compressionResult.totalBytesRead / 1024 / 1024);
-                log.info("  Compressed Size: {} bytes ({} MB)", compressionResult.totalBytesCompressed, compressionResult.totalBytesCompressed / 1024 / 1024);
+                log.info("  Original Size: {} bytes ({} MB)", compressionResult.getOriginalSize(), compressionResult.getOriginalSize() / 1024 / 1024);
+                log.info("  Compressed Size: {} bytes ({} MB)", compressionResult.getCompressedSize(), compressionResult.getCompressedSize() / 1024 / 1024);
                 log.info("  Compression Ratio: {:.2f}% saved",
-                        (1.0 - (double) compressionResult.totalBytesCompressed / compressionResult.totalBytesRead) * 100);
+                        (1.0 - (double) compressionResult.getCompressedSize() / compressionResult.getOriginalSize()) * 100);
                 log.info("  Duration: {} seconds", duration);
-                log.info("  Chunks Processed: {}", compressionResult.chunkCount);
+                log.info("  Compression Rate: {} MB/s", String.format("%.2f", compressionResult.getThroughputMBps()));
 
-                fileTransferEntity.setBytesTransferred(compressionResult.totalBytesCompressed);
+                fileTransferEntity.setFileSize(compressionResult.getOriginalSize());
                 fileTransferEntity.setTransferDurationSeconds((int) duration);
                 fileTransferEntity.setSuccess(true);
+                fileTransferEntity.setStatus(STATUS_COMPLETED);
                 fileTransferEntity.setCompletedAt(LocalDateTime.now());
-                fileTransferEntity.setStoragePath(Userpath + "/" + transferId);
+                boolean deduplicated = adoptIntoContentStore(fileTransferEntity, params,
+                        ContentStoreService.toHex(contentDigest), Userpath + "/" + transferId, compressionResult);
                 fileTransferRepo.save(fileTransferEntity);
 
-                log.info("Updating ML Model Parameters...");
-                updateMLParamsAfterUpload(
-                        extension,
-                        params.getNetworkCondition(),
-                        params.getCompressionLevel(),
-                        params.getChunkSize(),
-                        true);
-                log.info("ML Model Parameters updated");
-
-                double compressionRatio = (1.0 - (double) compressionResult.totalBytesCompressed / file.getSize()) * 100;
-
+                if (clientCodec == null) {
+                    learnFromUpload(extension, params, params.getChunkSize(), deduplicated);
+                }
 
                 log.info("========== UPLOAD SUCCESS ==========\n");
 
-                return FileUploadResponse.builder()
-                        .fileId(fileTransferEntity.getFileId())
-                        .transferId(transferId)
-                        .fileName(filename)
-                        .fileSizeBytes(file.getSize())
-                        .compressedSizeBytes(compressionResult.totalBytesCompressed)
-                        .compressionRatioPercent(String.format("%.2f%%", compressionRatio))
-                        .appliedCompressionLevel(params.getCompressionLevel())
-                        .appliedChunkSize(params.getChunkSize())
-                        .success(true)
-                        .message("File uploaded successfully with " + String.format("%.2f%%", compressionRatio) + " compression")
-                        .uploadedAt(LocalDateTime.now())
-                        .build();
+                FileUploadResponse response = buildSuccessResponse(fileTransferEntity, params, compressionResult);
+                response.setDeduplicated(deduplicated);
+                return response;
             }
             return null;
         } catch (Exception e) {
             log.error("========== UPLOAD FAILED ==========", e);
+            markFailed(fileTransferEntity);
+            return FileUploadResponse.builder()
+                    .transferId(transferId)
+                    .success(false)
+                    .status(STATUS_FAILED)
+                    .message("Upload failed: " + e.getMessage())
+                    .build();
+        }
+    }
+
+    private void markFailed(FileTransferEntity transfer) {
+        transfer.setSuccess(false);
+        transfer.setStatus(STATUS_FAILED);
+        fileTransferRepo.save(transfer);
+    }
+
+
+    /**
+     * Single-pass upload: the multipart body is parsed straight off the servlet
+     * input stream and piped through the deflater into the final object, so the
+     * payload is neither spooled by the multipart resolver nor staged as a .tmp.
+     */
+    public FileUploadResponse handleStreamingUpload(HttpServletRequest request, Integer latencyMs,
+                                                    Double networkSpeedMbps, String deviceType, String clientIp,
+                                                    String contentEncoding) {
+        String transferId = idAllocatorService.nextTransferId();
+        Users users = retriveLoggedInUser();
+        log.info("========== STREAMING UPLOAD START ==========");
+        log.info("TransferID: {}", transferId);
+        log.info("Declared Request Size: {} bytes", request.getContentLengthLong());
+
+        FileTransferEntity fileTransferEntity = null;
+        try {
+            JakartaServletFileUpload<?, ?> upload = new JakartaServletFileUpload<>();
+            upload.setFileSizeMax(MAX_UPLOAD_SIZE_BYTES);
+            FileItemInputIterator items = upload.getItemIterator(request);
+
+            while (items.hasNext()) {
+                FileItemInput item = items.next();
+                if (item.isFormField() || !"file".equals(item.getFieldName())) {
+                    continue;
+                }
+
+                String filename = item.getName();
+                String extension = extractFileType(filename);
+                // A Content-Encoding on the part itself wins over the request-level declaration
+                String partEncoding = item.getHeaders() == null ? null : item.getHeaders().getHeader("Content-Encoding");
+                String clientCodec = codecRegistry.forContentEncoding(partEncoding != null ? partEncoding : contentEncoding);
+                // Exact size is unknown until the stream ends; the request length is a close upper bound
+                long estimatedSize = Math.max(request.getContentLengthLong(), 0L);
+                log.info("Filename: {}, Extension: {}", filename, extension);
+
+                fileTransferEntity = newTransferEntity(transferId, users, filename, extension,
+                        deviceType, estimatedSize, latencyMs, networkSpeedMbps, clientIp);
+
+                String Userpath = fileStorageService.createUserDirectory(String.valueOf(users.getId()));
+                fileStorageService.validateUserAccess(users.getId().toString(), Userpath);
+
+                String finalCompressedPath = Userpath + "/" + transferId;
+                IntelligencePredictionService.OptimizationParams params;
+                long startTime = System.currentTimeMillis();
+                FileCompressionService.StreamCompressionResult result;
+                MessageDigest contentDigest = ContentStoreService.newDigest();
+                try (InputStream partStream = new BufferedInputStream(item.getInputStream(), EntropySampler.SAMPLE_BYTES)) {
+                    if (clientCodec != null) {
+                        log.info("Client pre-compressed payload ({}) - stored as received", clientCodec);
+                        params = predictForPrecompressed(filename, extension, networkSpeedMbps, latencyMs, estimatedSize, clientCodec);
+                    } else {
+                        // The sample is read ahead of the deflater and replayed, so nothing is consumed twice
+                        Double sampledEntropy = EntropySampler.sample(partStream);
+                        log.info("Sampled content entropy: {} bits/byte", sampledEntropy);
+
+                        params = intelligencePredictionService.predictOptimalParameters(
+                                filename, extension, networkSpeedMbps, latencyMs, estimatedSize, sampledEntropy);
+                    }
+                    fileTransferEntity.setCompressionLevel(params.getCompressionLevel());
+                    fileTransferEntity.setCompressionCodec(params.getCodec());
+                    fileTransferEntity.setChunkSize(params.getChunkSize());
+                    fileTransferRepo.save(fileTransferEntity);
+
+                    result = processUploadWithCompression(
+                            partStream, fileTransferEntity, Userpath, params, clientCodec != null, contentDigest);
+                }
+                long duration = (System.currentTimeMillis() - startTime) / 1000;
+
+                if (result.getOriginalSize() == 0L) {
+                    new File(fileTransferEntity.getStoragePath()).delete();
+                    fileTransferRepo.delete(fileTransferEntity);
+                    return FileUploadResponse.builder()
+                            .transferId(transferId)
+                            .success(false)
+                            .message("Upload failed: File Cant be Empty")
+                            .build();
+                }
+
+                fileTransferEntity.setFileSize(result.getOriginalSize());
+                fileTransferEntity.setTransferDurationSeconds((int) duration);
+                fileTransferEntity.setSuccess(true);
+                fileTransferEntity.setStatus(STATUS_COMPLETED);
+                fileTransferEntity.setCompletedAt(LocalDateTime.now());
+                boolean deduplicated = adoptIntoContentStore(fileTransferEntity, params,
+                        ContentStoreService.toHex(contentDigest), finalCompressedPath, result);
+                fileTransferRepo.save(fileTransferEntity);
+
+                if (clientCodec == null) {
+                    learnFromUpload(extension, params, params.getChunkSize(), deduplicated);
+                }
+
+                log.info("========== STREAMING UPLOAD SUCCESS ==========\n");
+                FileUploadResponse response = buildSuccessResponse(fileTransferEntity, params, result);
+                response.setDeduplicated(deduplicated);
+                return response;
+            }
+
+            return FileUploadResponse.builder()
+                    .transferId(transferId)
+                    .success(false)
+                    .message("Upload failed: No 'file' part in request")
+                    .build();
+
+        } catch (Exception e) {
+            log.error("========== STREAMING UPLOAD FAILED ==========", e);
+            if (fileTransferEntity != null) {
+                markFailed(fileTransferEntity);
+            }
             return FileUploadResponse.builder()
                     .transferId(transferId)
                     .success(false)
+                    .status(STATUS_FAILED)
                     .message("Upload failed: " + e.getMessage())
                     .build();
         }
     }
 
+    public FileTransferEntity newTransferEntity(String transferId, Users users, String filename, String extension,
+                                                 String deviceType, long fileSize, Integer latencyMs,
+                                                 Double networkSpeedMbps, String clientIp) {
+        FileTransferEntity fileTransferEntity = new FileTransferEntity();
+        fileTransferEntity.setTransferId(transferId);
+        fileTransferEntity.setUserId(users.getId());
+        fileTransferEntity.setFileName(filename);
+        fileTransferEntity.setFileType(extension);
+        fileTransferEntity.setDeviceType(deviceType);
+        fileTransferEntity.setFileSize(fileSize);
+        fileTransferEntity.setLatencyMs(latencyMs);
+        fileTransferEntity.setNetworkSpeedMbps(networkSpeedMbps);
+        fileTransferEntity.setClientIp(clientIp);
+        fileTransferEntity.setExpiresAt(LocalDateTime.now().plusDays(2));
+        return fileTransferEntity;
+    }
 
-    private CompressionResult processUploadWithCompression(InputStream fileInputStream,
+    public FileUploadResponse buildSuccessResponse(FileTransferEntity transfer,
+                                                    IntelligencePredictionService.OptimizationParams params,
+                                                    FileCompressionService.StreamCompressionResult compressionResult) {
+        double compressionRatio = (1.0 - (double) transfer.getBytesTransferred() / transfer.getFileSize()) * 100;
+        return FileUploadResponse.builder()
+                .fileId(transfer.getFileId())
+                .transferId(transfer.getTransferId())
+                .fileName(transfer.getFileName())
+                .fileSizeBytes(transfer.getFileSize())
+                .compressedSizeBytes(transfer.getBytesTransferred())
+                .compressionRatioPercent(String.format("%.2f%%", compressionRatio))
+                .appliedCompressionLevel(transfer.getCompressionLevel())
+                .appliedCodec(transfer.getCompressionCodec())
+                .appliedChunkSize(params.getChunkSize())
+                .compressionThroughputMBps(Math.round(compressionResult.getThroughputMBps() * 100) / 100.0)
+                .success(true)
+                .message("File uploaded successfully with " + String.format("%.2f%%", compressionRatio) + " compression")
+                .uploadedAt(LocalDateTime.now())
+                .build();
+    }
+
+
+    public FileCompressionService.StreamCompressionResult processUploadWithCompression(InputStream fileInputStream,
                                                            FileTransferEntity transfer,
                                                            String path,
-                                                           IntelligencePredictionService.OptimizationParams params)
+                                                           IntelligencePredictionService.OptimizationParams params,
+                                                           boolean clientCompressed,
+                                                           MessageDigest contentDigest)
             throws IOException {
 
         log.info("Starting file compression process...");
@@ -179,50 +533,191 @@ public class FileUploadService {
             uploadDir.mkdirs();
         }
 
-        // Path for temporary original file
-        String tempOriginalPath = path + "/" + transfer.getTransferId() + ".tmp";
         String finalCompressedPath = path + "/" + transfer.getTransferId();
 
-        // Step 1: Save original file temporarily
-        log.info("Saving original file to temp location...");
-        long originalFileSize = 0;
-        try (FileOutputStream tempFos = new FileOutputStream(tempOriginalPath)) {
-            int optimalBufferSize = params.getChunkSize();
-            byte[] buffer = new byte[optimalBufferSize];
-            int bytesRead;
-            while ((bytesRead = fileInputStream.read(buffer)) != -1) {
-                tempFos.write(buffer, 0, bytesRead);
-                originalFileSize += bytesRead;
-            }
+        if (clientCompressed) {
+            FileCompressionService.StreamCompressionResult result = compressionService.storePrecompressed(
+                    fileInputStream, finalCompressedPath, codecRegistry.get(params.getCodec()), contentDigest);
+            transfer.setStoragePath(finalCompressedPath);
+            return result;
         }
 
-        log.info("Original file saved: {} bytes", originalFileSize);
+        if (chunkStoreService.isEnabled()) {
+            log.info("Chunking upload stream into the CDC store with {} (level {})...",
+                    params.getCodec(), params.getCompressionLevel());
+            FileCompressionService.StreamCompressionResult result = chunkStoreService.ingest(
+                    fileInputStream, transfer.getTransferId(), codecRegistry.get(params.getCodec()),
+                    params.getCompressionLevel(), contentDigest);
+            transfer.setStorageLayout(ChunkStoreService.LAYOUT_CDC);
+            transfer.setStoragePath(chunkStoreService.manifestPath(transfer.getTransferId()));
+            return result;
+        }
 
-        // Step 2: Compress the entire file at once using GZIP
-        log.info("Compressing file with GZIP...");
-        long compressedFileSize = 0;
+        // Receive and compress in one pass - no temp copy of the original is written
+        log.info("Compressing upload stream with {} (level {})...", params.getCodec(), params.getCompressionLevel());
+        FileCompressionService.StreamCompressionResult result = compressionService.compressStream(
+                new DigestInputStream(fileInputStream, contentDigest),
+                finalCompressedPath,
+                codecRegistry.get(params.getCodec()),
+                params.getCompressionLevel(),
+                Math.max(params.getChunkSize(), MIN_PIPELINE_BUFFER),
+                transfer.getFileSize());
+
+        transfer.setStoragePath(finalCompressedPath);
+
+        return result;
+    }
+
+
+    /**
+     * Hands the object just written to the content store and points the transfer at
+     * whatever the store kept. On a hit the new copy is dropped and the transfer
+     * inherits the existing object's codec, level and stored size; {@code params}
+     * keep what this upload asked for. Returns true on a hit.
+     */
+    public boolean adoptIntoContentStore(FileTransferEntity transfer,
+                                         IntelligencePredictionService.OptimizationParams params,
+                                         String contentHash, String writtenPath,
+                                         FileCompressionService.StreamCompressionResult result) throws IOException {
+        if (ChunkStoreService.LAYOUT_CDC.equals(transfer.getStorageLayout())) {
+            // Deduplicated per chunk already; the manifest is the stored object
+            transfer.setCompressionCodec(params.getCodec());
+            transfer.setCompressionLevel(params.getCompressionLevel());
+            transfer.setBytesTransferred(result.getCompressedSize());
+            return false;
+        }
+        StoredObject stored = contentStoreService.adopt(contentHash, writtenPath, params.getCodec(),
+                params.getCompressionLevel(), result.getOriginalSize(), result.getCompressedSize());
+        boolean deduplicated = stored.getRefCount() > 1;
+        chunkStoreService.recordObjectIngest(result.getOriginalSize(),
+                deduplicated ? 0 : stored.getStoredSize(), result.getDurationMs());
+        transfer.setContentHash(contentHash);
+        transfer.setStoragePath(stored.getStoragePath());
+        transfer.setCompressionCodec(stored.getCodec());
+        transfer.setCompressionLevel(stored.getCompressionLevel());
+        transfer.setBytesTransferred(stored.getStoredSize());
+        return deduplicated;
+    }
+
+    public ContentHashCheckResponse checkContentHash(String contentHash, Long fileSize) {
+        Users users = retriveLoggedInUser();
+        if (fileSize == null || fileSize <= 0) {
+            throw new IllegalArgumentException("File size is required");
+        }
+        return contentStoreService.check(users.getId(), ContentStoreService.normalizeHash(contentHash), fileSize);
+    }
+
+    /**
+     * Creates a transfer for content the store already holds, without the client
+     * sending the bytes. Requires the answer to the challenge issued by
+     * {@link #checkContentHash}.
+     */
+    public FileUploadResponse handleUploadByHash(UploadByHashRequest request, Integer latencyMs,
+                                                 Double networkSpeedMbps, String deviceType, String clientIp) {
+        String transferId = idAllocatorService.nextTransferId();
+        Users users = retriveLoggedInUser();
+        // The reference taken by retain, until a saved transfer row owns it
+        String retainedHash = null;
         try {
-            compressedFileSize = compressionService.compressFileToGzip(
-                    tempOriginalPath,
-                    finalCompressedPath);
-
-            double compressionRatio = (1.0 - (double) compressedFileSize / originalFileSize) * 100;
-            log.info("Compression complete: {:.2f}% compression achieved", compressionRatio);
-
-        } finally {
-            // Clean up temporary file
-            File tempFile = new File(tempOriginalPath);
-            if (tempFile.exists()) {
-                tempFile.delete();
-                log.info("Temporary file cleaned up");
+            String contentHash = ContentStoreService.normalizeHash(request.getContentHash());
+            if (!contentStoreService.verifyChallenge(users.getId(), contentHash, request.getChallengeResponse())) {
+                return FileUploadResponse.builder()
+                        .transferId(transferId)
+                        .success(false)
+                        .message("Upload failed: Content proof rejected, check the hash again and retry")
+                        .build();
             }
-        }
+            StoredObject stored = contentStoreService.retain(contentHash);
+            if (stored == null || request.getFileSize() == null || !request.getFileSize().equals(stored.getOriginalSize())) {
+                if (stored != null) {
+                    contentStoreService.release(contentHash);
+                }
+                return FileUploadResponse.builder()
+                        .transferId(transferId)
+                        .success(false)
+                        .message("Upload failed: Content not available, upload the file instead")
+                        .build();
+            }
+            retainedHash = contentHash;
 
-        transfer.setStoragePath(finalCompressedPath);
+            String filename = request.getFileName();
+            String extension = extractFileType(filename);
+            IntelligencePredictionService.OptimizationParams params =
+                    intelligencePredictionService.predictOptimalParameters(
+                            filename, extension, networkSpeedMbps, latencyMs, stored.getOriginalSize());
 
-        return new CompressionResult(originalFileSize, compressedFileSize, 1);
+            FileTransferEntity fileTransferEntity = newTransferEntity(transferId, users, filename, extension,
+                    deviceType, stored.getOriginalSize(), latencyMs, networkSpeedMbps, clientIp);
+            fileTransferEntity.setChunkSize(params.getChunkSize());
+            fileTransferEntity.setContentHash(contentHash);
+            fileTransferEntity.setStoragePath(stored.getStoragePath());
+            fileTransferEntity.setCompressionCodec(stored.getCodec());
+            fileTransferEntity.setCompressionLevel(stored.getCompressionLevel());
+            fileTransferEntity.setBytesTransferred(stored.getStoredSize());
+            fileTransferEntity.setTransferDurationSeconds(0);
+            fileTransferEntity.setSuccess(true);
+            fileTransferEntity.setCompletedAt(LocalDateTime.now());
+            fileTransferRepo.save(fileTransferEntity);
+            retainedHash = null;
+            log.info("Upload by hash - TransferId: {}, Object: {}, no bytes received", transferId, contentHash);
+
+            FileUploadResponse response = buildSuccessResponse(fileTransferEntity, params,
+                    new FileCompressionService.StreamCompressionResult(stored.getOriginalSize(), stored.getStoredSize(), 1));
+            response.setCompressionThroughputMBps(null);
+            response.setDeduplicated(true);
+            return response;
+        } catch (Exception e) {
+            log.error("Upload by hash failed", e);
+            if (retainedHash != null) {
+                try {
+                    contentStoreService.release(retainedHash);
+                } catch (Exception releaseError) {
+                    log.error("Could not release object {} after failed upload by hash", retainedHash, releaseError);
+                }
+            }
+            return FileUploadResponse.builder()
+                    .transferId(transferId)
+                    .success(false)
+                    .message("Upload failed: " + e.getMessage())
+                    .build();
+        }
     }
 
+    /**
+     * Network-derived parameters for a payload the client already compressed. The
+     * server applies no level of its own, so the learned parameters are left alone.
+     */
+    public IntelligencePredictionService.OptimizationParams predictForPrecompressed(String filename, String extension,
+                                                                                    Double networkSpeedMbps, Integer latencyMs,
+                                                                                    long fileSize, String clientCodec) {
+        IntelligencePredictionService.OptimizationParams params =
+                intelligencePredictionService.predictOptimalParameters(filename, extension, networkSpeedMbps, latencyMs, fileSize);
+        params.setCodec(clientCodec);
+        params.setCompressionLevel(null);
+        params.setEstimatedTimeSavingPercent(0);
+        return params;
+    }
+
+    /**
+     * Feeds a finished upload back into the learned parameters. Content the sampler
+     * sent to store says nothing about the level its file type wants, so its level 0
+     * is not averaged in; neither is an upload that landed on an existing object,
+     * whose own encode was thrown away.
+     */
+    public void learnFromUpload(String fileType, IntelligencePredictionService.OptimizationParams params,
+                                int chunkSize, boolean deduplicated) {
+        if (deduplicated) {
+            log.info("Deduplicated onto a stored object - ML parameters for {} left unchanged", fileType);
+            return;
+        }
+        if (StoreCodec.NAME.equals(params.getCodec())) {
+            log.info("Stored without compression - ML parameters for {} left unchanged", fileType);
+            return;
+        }
+        log.info("Updating ML Model Parameters...");
+        updateMLParamsAfterUpload(fileType, params.getNetworkCondition(), params.getCompressionLevel(), chunkSize, true);
+        log.info("ML Model Parameters updated");
+    }
 
     public void updateMLParamsAfterUpload(String fileType, String networkCondition,
                                           int compressionLevel, int chunkSize, boolean wasSuccessful) {
@@ -278,20 +773,6 @@ public class FileUploadService {
         return "unknown";
     }
 
-    public Long generateRandomId() {
-        return 10000 + (long)(Math.random() * 90000);
-    }
-
-    public String generateUniqueShareId() {
-        Long randomId;
-
-        do {
-            randomId = generateRandomId();
-        } while (fileTransferRepo.checkShareId(randomId));
-
-        return randomId.toString();    }
-
-
     private Users retriveLoggedInUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if(authentication == null || !authentication.isAuthenticated())
@@ -305,21 +786,4 @@ public class FileUploadService {
     }
 
 
-    public List<FileTransferEntity> getRecentTransfers(Integer limit) {
-        Users users = retriveLoggedInUser();
-        return fileTransferRepo.findLastUploads(users.getId(),limit);
-    }
-
-    private static class CompressionResult {
-        long totalBytesRead;
-        long totalBytesCompressed;
-        int chunkCount;
-
-        CompressionResult(long totalBytesRead, long totalBytesCompressed, int chunkCount) {
-            this.totalBytesRead = totalBytesRead;
-            this.totalBytesCompressed = totalBytesCompressed;
-            this.chunkCount = chunkCount;
-        }
-    }
-
 }
\ No newline at end of file
@@ -0,0 +1,274 @@
+package peerlinkfilesharingsystem.Service.HotFileCacheService;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import peerlinkfilesharingsystem.Model.FileTransferEntity;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decoded content of frequently downloaded files, kept in direct (off-heap)
+ * buffers so a viral share is served from memory instead of being re-opened
+ * and re-inflated on every request.
+ *
+ * Caffeine's W-TinyLFU policy decides which entries stay when the byte budget
+ * is full: a newcomer only displaces a resident entry if it has been asked
+ * for more often. A doorkeeper in front of it keeps one-off downloads from
+ * being buffered at all; a file is only copied on its second miss.
+ *
+ * Buffers being filled and resident entries share the one byte budget: while
+ * fills are running the cache's own limit shrinks by their size, and fills
+ * may take at most half of the budget. Direct memory only returns to the OS
+ * when an evicted buffer is collected, so a fill whose allocation still fails
+ * is simply served uncached.
+ */
+@Service
+@Slf4j
+public class HotFileCacheService {
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicLong bytesFilling = new AtomicLong();
+
+    @Value("${file.hot-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${file.hot-cache.max-bytes:268435456}")
+    private long maxBytes;
+
+    @Value("${file.hot-cache.max-entry-bytes:16777216}")
+    private long maxEntryBytes;
+
+    @Value("${file.hot-cache.expire-after-access-minutes:30}")
+    private long expireAfterAccessMinutes;
+
+    private Cache<String, ByteBuffer> cache;
+    private Cache<String, Boolean> doorkeeper;
+
+    public HotFileCacheService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String transferId, ByteBuffer content) -> content.capacity())
+                .expireAfterAccess(Duration.ofMinutes(expireAfterAccessMinutes))
+                .removalListener((String transferId, ByteBuffer content, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        log.debug("Hot cache evicted {} ({})", transferId, cause);
+                    }
+                })
+                .recordStats()
+                .build();
+        doorkeeper = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(Duration.ofMinutes(expireAfterAccessMinutes))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "file.hot-cache");
+        Gauge.builder("file.hot-cache.bytes", this, c -> c.cache.policy().eviction()
+                        .map(e -> e.weightedSize().orElse(0L)).orElse(0L))
+                .description("Off-heap bytes held by the hot-file cache")
+                .register(meterRegistry);
+        log.info("Hot-file cache {} - Budget: {} MB, Max entry: {} MB",
+                enabled ? "enabled" : "disabled", maxBytes >> 20, maxEntryBytes >> 20);
+    }
+
+    /** Decoded bytes [offset, offset + length) of a cached transfer, or null on a miss. */
+    public InputStream open(FileTransferEntity transfer, long offset, long length) {
+        if (!eligible(transfer)) {
+            return null;
+        }
+        ByteBuffer content = cache.getIfPresent(transfer.getTransferId());
+        if (content == null || content.capacity() != transfer.getFileSize()) {
+            return null;
+        }
+        return new ByteBufferInputStream(content.slice((int) offset, (int) length));
+    }
+
+    /**
+     * Called on a miss for a whole-file download. The first miss only marks the
+     * transfer as seen; from the second one on the decoded stream is copied into
+     * an off-heap buffer as it is sent, and offered to the cache once the client
+     * has read it to the end.
+     */
+    public InputStream fillWhileReading(FileTransferEntity transfer, InputStream decoded) {
+        if (!eligible(transfer)) {
+            return decoded;
+        }
+        String transferId = transfer.getTransferId();
+        if (doorkeeper.asMap().putIfAbsent(transferId, Boolean.TRUE) == null) {
+            return decoded;
+        }
+        long size = transfer.getFileSize();
+        if (bytesFilling.addAndGet(size) > maxBytes / 2) {
+            bytesFilling.addAndGet(-size);
+            return decoded;
+        }
+        ByteBuffer content;
+        try {
+            resizeForFills();
+            content = ByteBuffer.allocateDirect((int) size);
+        } catch (OutOfMemoryError e) {
+            log.warn("No direct memory for a {} byte hot-cache copy of {}, serving uncached", size, transferId);
+            releaseFill(size);
+            return decoded;
+        }
+        return new FillingInputStream(decoded, transferId, content);
+    }
+
+    /** Resident entries get whatever the running fills leave of the budget; shrinking evicts right away. */
+    private void resizeForFills() {
+        cache.policy().eviction().ifPresent(eviction ->
+                eviction.setMaximum(Math.max(0, maxBytes - bytesFilling.get())));
+    }
+
+    private void releaseFill(long size) {
+        bytesFilling.addAndGet(-size);
+        resizeForFills();
+    }
+
+    public void invalidate(String transferId) {
+        if (transferId != null) {
+            cache.invalidate(transferId);
+            doorkeeper.invalidate(transferId);
+        }
+    }
+
+    private boolean eligible(FileTransferEntity transfer) {
+        // A direct buffer is int-indexed, so no entry can exceed 2 GB whatever the setting
+        return enabled && transfer.getFileSize() != null && transfer.getFileSize() > 0
+                && transfer.getFileSize() <= Math.min(maxEntryBytes, Integer.MAX_VALUE);
+    }
+
+    /** Copies what the client reads into a direct buffer and caches it only if every byte came through. */
+    private class FillingInputStream extends FilterInputStream {
+
+        private final String transferId;
+        private ByteBuffer content;
+        private boolean done;
+
+        FillingInputStream(InputStream in, String transferId, ByteBuffer content) {
+            super(in);
+            this.transferId = transferId;
+            this.content = content;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                finish();
+            } else {
+                copy(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                finish();
+            } else {
+                copy(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes never reach the buffer, so this copy can no longer be cached
+            abandon();
+            return super.skip(n);
+        }
+
+        @Override
+        public void close() throws IOException {
+            abandon();
+            super.close();
+        }
+
+        private void copy(byte[] b, int off, int n) {
+            if (content == null) {
+                return;
+            }
+            if (n > content.remaining()) {
+                abandon();
+                return;
+            }
+            content.put(b, off, n);
+        }
+
+        private void finish() {
+            if (content != null && !content.hasRemaining()) {
+                ByteBuffer filled = content.flip().asReadOnlyBuffer();
+                // Hand the fill's share of the budget back before the entry competes for it
+                abandon();
+                cache.put(transferId, filled);
+                log.info("Cached decoded content of {} ({} bytes)", transferId, filled.capacity());
+            }
+            abandon();
+        }
+
+        private void abandon() {
+            if (!done) {
+                done = true;
+                releaseFill(content != null ? content.capacity() : 0);
+            }
+            content = null;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package peerlinkfilesharingsystem.Service.IdAllocatorService;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import peerlinkfilesharingsystem.Model.IdBlock;
+import peerlinkfilesharingsystem.Repo.IdBlockRepo;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out transfer IDs and share IDs without a database round trip per ID.
+ *
+ * Each sequence leases a block of values from the {@code id_block} table in its
+ * own short transaction (row locked, so concurrent instances never overlap) and
+ * serves them from memory until the block runs out. Values lost in an unused
+ * block on shutdown are simply skipped. Sequences start above the old random
+ * 5-digit range so new IDs can never collide with existing rows.
+ */
+@Service
+@Slf4j
+public class IdAllocatorService {
+
+    public static final String TRANSFER_SEQUENCE = "transfer";
+    public static final String SHARE_SEQUENCE = "share";
+
+    private static final long FIRST_VALUE = 100_000L;
+
+    private final IdBlockRepo idBlockRepo;
+    private final TransactionTemplate leaseTransaction;
+    private final Map<String, Range> ranges = new ConcurrentHashMap<>();
+    private final ShareCodeCodec shareCodeCodec;
+
+    @Value("${id.allocator.block-size:1000}")
+    private int blockSize;
+
+    public IdAllocatorService(IdBlockRepo idBlockRepo,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${share.code.secret:peerlink-share-codes}") String shareCodeSecret) {
+        this.idBlockRepo = idBlockRepo;
+        this.leaseTransaction = new TransactionTemplate(transactionManager);
+        this.leaseTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.shareCodeCodec = new ShareCodeCodec(shareCodeSecret);
+    }
+
+    public String nextTransferId() {
+        return String.valueOf(next(TRANSFER_SEQUENCE));
+    }
+
+    public Long nextShareId() {
+        return next(SHARE_SEQUENCE);
+    }
+
+    public String toShareCode(Long shareId) {
+        return shareId == null ? null : shareCodeCodec.encode(shareId);
+    }
+
+    /** Share ID for a code, or null if the text is not a valid share code. */
+    public Long fromShareCode(String code) {
+        long shareId = shareCodeCodec.decode(code);
+        return shareId < 0 ? null : shareId;
+    }
+
+    public long next(String sequenceName) {
+        Range range = ranges.computeIfAbsent(sequenceName, name -> new Range());
+        synchronized (range) {
+            if (range.next >= range.limit) {
+                long start = lease(sequenceName);
+                range.next = start;
+                range.limit = start + blockSize;
+            }
+            return range.next++;
+        }
+    }
+
+    private long lease(String sequenceName) {
+        Long start = leaseBlock(sequenceName);
+        if (start == null) {
+            createSequence(sequenceName);
+            start = leaseBlock(sequenceName);
+        }
+        log.info("Leased {} IDs for sequence '{}' starting at {}", blockSize, sequenceName, start);
+        return start;
+    }
+
+    /** First value of a freshly leased block, or null if the sequence row does not exist yet. */
+    private Long leaseBlock(String sequenceName) {
+        return leaseTransaction.execute(status -> {
+            IdBlock block = idBlockRepo.findForUpdate(sequenceName).orElse(null);
+            if (block == null) {
+                return null;
+            }
+            long first = block.getNextValue();
+            block.setNextValue(first + blockSize);
+            idBlockRepo.save(block);
+            return first;
+        });
+    }
+
+    /**
+     * Inserts the sequence row on its own, so the lease that follows always goes
+     * through the row lock. Creating and leasing in one step let two instances
+     * both start at the first value: the loser's save merged onto the winner's
+     * freshly committed row instead of failing.
+     */
+    private void createSequence(String sequenceName) {
+        try {
+            leaseTransaction.executeWithoutResult(status -> idBlockRepo.insertSequence(sequenceName, FIRST_VALUE));
+        } catch (DataIntegrityViolationException e) {
+            // Another instance created the sequence row first; its row is now there to lock
+        }
+    }
+
+    private static class Range {
+        long next;
+        long limit;
+    }
+}
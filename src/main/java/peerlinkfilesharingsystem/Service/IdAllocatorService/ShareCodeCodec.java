@@ -0,0 +1,138 @@
+package peerlinkfilesharingsystem.Service.IdAllocatorService;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Turns sequential share IDs into fixed-width base62 codes and back.
+ *
+ * The ID is first run through a keyed Feistel permutation of [0, 2^47), so
+ * consecutive shares get unrelated codes and a code cannot be guessed from a
+ * neighbour. The result is offset so every code is exactly eight characters
+ * and starts with a letter, which keeps codes apart from numeric share IDs
+ * and UUID share tokens when a link is resolved. No lookup table is needed in
+ * either direction.
+ */
+public final class ShareCodeCodec {
+
+    public static final int CODE_LENGTH = 8;
+
+    private static final char[] ALPHABET =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final int DOMAIN_BITS = 47;
+    private static final long DOMAIN = 1L << DOMAIN_BITS;
+    private static final int HALF_BITS = 24;
+    private static final long HALF_MASK = (1L << HALF_BITS) - 1;
+    private static final int ROUNDS = 4;
+    private static final long POW62_7 = 3_521_614_606_208L;
+    /** Ten leading "digits" of offset push the first character past '9'. */
+    private static final long LETTER_OFFSET = 10 * POW62_7;
+
+    private final long[] roundKeys = new long[ROUNDS];
+
+    public ShareCodeCodec(String secret) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+            ByteBuffer buffer = ByteBuffer.wrap(hash);
+            for (int i = 0; i < ROUNDS; i++) {
+                roundKeys[i] = buffer.getLong();
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public String encode(long shareId) {
+        if (shareId < 0 || shareId >= DOMAIN) {
+            throw new IllegalArgumentException("Share ID out of range: " + shareId);
+        }
+        long value = permute(shareId) + LETTER_OFFSET;
+        char[] code = new char[CODE_LENGTH];
+        for (int i = CODE_LENGTH - 1; i >= 0; i--) {
+            code[i] = ALPHABET[(int) (value % 62)];
+            value /= 62;
+        }
+        return new String(code);
+    }
+
+    /** Returns the share ID, or -1 if the text is not a well-formed code. */
+    public long decode(String code) {
+        if (code == null || code.length() != CODE_LENGTH) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < CODE_LENGTH; i++) {
+            int digit = digitOf(code.charAt(i));
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * 62 + digit;
+        }
+        value -= LETTER_OFFSET;
+        if (value < 0 || value >= DOMAIN) {
+            return -1;
+        }
+        return unpermute(value);
+    }
+
+    public static boolean looksLikeCode(String text) {
+        return text != null && text.length() == CODE_LENGTH && Character.isLetter(text.charAt(0))
+                && text.chars().allMatch(c -> digitOf((char) c) >= 0);
+    }
+
+    // The Feistel network works on 48 bits; cycle-walking keeps it a bijection on 47
+    private long permute(long value) {
+        do {
+            value = feistel(value, true);
+        } while (value >= DOMAIN);
+        return value;
+    }
+
+    private long unpermute(long value) {
+        do {
+            value = feistel(value, false);
+        } while (value >= DOMAIN);
+        return value;
+    }
+
+    private long feistel(long value, boolean forward) {
+        long left = value >>> HALF_BITS;
+        long right = value & HALF_MASK;
+        if (forward) {
+            for (int i = 0; i < ROUNDS; i++) {
+                long next = left ^ round(right, roundKeys[i]);
+                left = right;
+                right = next;
+            }
+        } else {
+            for (int i = ROUNDS - 1; i >= 0; i--) {
+                long previous = right ^ round(left, roundKeys[i]);
+                right = left;
+                left = previous;
+            }
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    private static long round(long half, long key) {
+        long z = half * 0x9E3779B97F4A7C15L + key;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (z ^ (z >>> 31)) & HALF_MASK;
+    }
+
+    private static int digitOf(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 10;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 36;
+        }
+        return -1;
+    }
+}
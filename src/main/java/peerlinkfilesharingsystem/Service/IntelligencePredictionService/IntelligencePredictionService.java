@@ -8,6 +8,10 @@ import org.springframework.stereotype.Service;
 import peerlinkfilesharingsystem.Model.IntelligentModelParametersEntity;
 import peerlinkfilesharingsystem.Repo.FileTransferRepo;
 import peerlinkfilesharingsystem.Repo.IntelligentModelParametersRepo;
+import peerlinkfilesharingsystem.Service.CompressionService.BgzfCodec;
+import peerlinkfilesharingsystem.Service.CompressionService.EntropySampler;
+import peerlinkfilesharingsystem.Service.CompressionService.Lz4Codec;
+import peerlinkfilesharingsystem.Service.CompressionService.StoreCodec;
 
 import java.util.Optional;
 import java.util.Set;
@@ -47,17 +51,43 @@ public class IntelligencePredictionService {
             Double networkSpeedMbps,
             Integer latencyMs,
             Long fileSizeBytes) {
+        return predictOptimalParameters(fileName, extention, networkSpeedMbps, latencyMs, fileSizeBytes, null);
+    }
+
+    /**
+     * @param sampledEntropy bits/byte measured on the first blocks of the content, or
+     *                       {@code null} when no sample is available. When present it
+     *                       overrides what the extension claims.
+     */
+    public OptimizationParams predictOptimalParameters(
+            String fileName,
+            String extention,
+            Double networkSpeedMbps,
+            Integer latencyMs,
+            Long fileSizeBytes,
+            Double sampledEntropy) {
 
         String networkCondition = classifyNetworkCondition(networkSpeedMbps, latencyMs);
 
         boolean isAlreadyCompressed = PRECOMPRESSED_FORMATS.contains(extention);
         boolean isTextFile = TEXT_FORMATS.contains(extention);
 
+        if (sampledEntropy != null) {
+            boolean looksIncompressible = sampledEntropy >= EntropySampler.INCOMPRESSIBLE_BITS_PER_BYTE;
+            if (looksIncompressible != isAlreadyCompressed) {
+                log.info("Content sample ({} bits/byte) overrides extension '{}': treating as {}",
+                        String.format("%.2f", sampledEntropy), extention,
+                        looksIncompressible ? "incompressible" : "compressible");
+            }
+            isAlreadyCompressed = looksIncompressible;
+            isTextFile = isTextFile && !looksIncompressible;
+        }
+
         Optional<IntelligentModelParametersEntity> learnedParams =
                 intelligentModelParametersRepo.findByFileTypeAndNetworkCondition(extention, networkCondition);
 
         if (learnedParams.isPresent()) {
-            return buildFromLearned(learnedParams.get(), isAlreadyCompressed);
+            return buildFromLearned(learnedParams.get(), isAlreadyCompressed, isTextFile);
         }
         else {
             return predictUsingRules(extention, networkSpeedMbps, latencyMs, isAlreadyCompressed, isTextFile, fileSizeBytes);
@@ -69,7 +99,7 @@ public class IntelligencePredictionService {
         int chunkSize;
 
         if (isAlreadyCompressed) {
-            compressionLevel = 1;
+            compressionLevel = 0;
         } else {
             if (networkSpeedMbps < 5.0) {
                 compressionLevel = 8;
@@ -99,12 +129,14 @@ public class IntelligencePredictionService {
         }
 
         int timeSavingPercent = isAlreadyCompressed ? 10 : (int) (50 * compressionLevel / 9);
+        String networkCondition = classifyNetworkCondition(networkSpeedMbps, latencyMs);
 
         return OptimizationParams.builder()
                 .compressionLevel(compressionLevel)
+                .codec(selectCodec(isAlreadyCompressed, isTextFile, networkCondition))
                 .chunkSize(chunkSize)
                 .fileType(fileType)
-                .networkCondition(classifyNetworkCondition(networkSpeedMbps, latencyMs))
+                .networkCondition(networkCondition)
                 .estimatedTimeSavingPercent(timeSavingPercent)
                 .predictedSuccessRate(0.96)
                 .build();
@@ -117,10 +149,24 @@ public class IntelligencePredictionService {
         else return "FAST";
     }
 
-    private OptimizationParams buildFromLearned(IntelligentModelParametersEntity learned, boolean isAlreadyCompressed) {
-        int compression = isAlreadyCompressed ? 1 : learned.getOptimalCompressionLevel();
+    /**
+     * Slow links are bandwidth bound, so deflate at the predicted level pays for itself.
+     * On fast links CPU becomes the bottleneck and LZ4 keeps up with the wire;
+     * text still goes to deflate there because its ratio gain is too large to give up.
+     * Deflate output is written as BGZF so downloads can resume and serve ranges.
+     */
+    private String selectCodec(boolean isAlreadyCompressed, boolean isTextFile, String networkCondition) {
+        if (isAlreadyCompressed) return StoreCodec.NAME;
+        if ("FAST".equals(networkCondition) && !isTextFile) return Lz4Codec.NAME;
+        return BgzfCodec.NAME;
+    }
+
+    private OptimizationParams buildFromLearned(IntelligentModelParametersEntity learned, boolean isAlreadyCompressed,
+                                                boolean isTextFile) {
+        int compression = isAlreadyCompressed ? 0 : learned.getOptimalCompressionLevel();
         return OptimizationParams.builder()
                 .compressionLevel(compression)
+                .codec(selectCodec(isAlreadyCompressed, isTextFile, learned.getNetworkCondition()))
                 .chunkSize(learned.getOptimalChunkSize())
                 .fileType(learned.getFileType())
                 .networkCondition(learned.getNetworkCondition())
@@ -139,6 +185,7 @@ public class IntelligencePredictionService {
      @Builder
     public static class OptimizationParams {
         private Integer compressionLevel;
+        private String codec;
         private Integer chunkSize;
         private String fileType;
         private String networkCondition;
@@ -0,0 +1,327 @@
+package peerlinkfilesharingsystem.Service.MetadataCacheService;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import peerlinkfilesharingsystem.Model.FileShare;
+import peerlinkfilesharingsystem.Model.FileTransferEntity;
+import peerlinkfilesharingsystem.Repo.FileShareRepo;
+import peerlinkfilesharingsystem.Repo.FileTransferRepo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache for the transfer and share rows the download and info
+ * endpoints look up on every request, often more than once.
+ *
+ * Transfers are cached by transferId, with a shareToken -> transferId index in
+ * front; a token hit is only trusted if the cached transfer still carries that
+ * token. Only finished uploads are cached, since rows of uploads in progress
+ * change under them. Misses are not cached, so a new transfer or share is
+ * visible at once. Anything that changes a cached row must call one of the
+ * invalidate methods; the TTL only bounds how long a missed call goes unseen.
+ *
+ * Public links (share token, or share code decoded to its share ID) resolve
+ * through one join to the transfer they serve. Keys are screened first: a Bloom filter of every
+ * share key answers "never issued" without a query, and keys that were looked
+ * up and not found sit in a short-lived negative cache. Both only know shares
+ * created by this process or present at its last rebuild, so screening is off
+ * by default ({@code file.share-filter.enabled}) and only safe for a single
+ * instance: with several, a share created on one would be rejected by the
+ * others until their rebuild or the negative entry's expiry.
+ *
+ * Returned entities are detached and shared between requests: read them, never
+ * modify them.
+ */
+@Service
+@Slf4j
+public class MetadataCacheService {
+
+    private static final String CACHE_NAME = "file.metadata-cache";
+
+    private final FileTransferRepo fileTransferRepo;
+    private final FileShareRepo fileShareRepo;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${file.metadata-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${file.metadata-cache.max-entries:10000}")
+    private long maxEntries;
+
+    @Value("${file.metadata-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${file.share-filter.enabled:false}")
+    private boolean shareFilterEnabled;
+
+    @Value("${file.share-filter.expected-shares:1000000}")
+    private long expectedShares;
+
+    @Value("${file.share-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${file.share-filter.negative-cache-entries:100000}")
+    private long negativeCacheEntries;
+
+    @Value("${file.share-filter.negative-cache-ttl-seconds:600}")
+    private long negativeCacheTtlSeconds;
+
+    private Cache<String, FileTransferEntity> transfers;
+    private Cache<String, String> transferIdsByShareToken;
+    private Cache<String, String> shareTokensByKey;
+    private Cache<String, Boolean> unknownShareKeys;
+    private Counter transferQueries;
+    private Counter shareQueries;
+    private Counter rejectedByFilter;
+    private Counter rejectedByNegativeCache;
+
+    private final Object shareFilterLock = new Object();
+    /** Null until first built, or when disabled or the build failed: every key is then looked up. */
+    private volatile BloomFilter shareFilter;
+    /** Keys added while a rebuild reads the table, replayed into the new filter; null otherwise. */
+    private List<String> keysAddedDuringRebuild;
+
+    public MetadataCacheService(FileTransferRepo fileTransferRepo, FileShareRepo fileShareRepo,
+                                MeterRegistry meterRegistry) {
+        this.fileTransferRepo = fileTransferRepo;
+        this.fileShareRepo = fileShareRepo;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        transfers = newCache();
+        transferIdsByShareToken = newCache();
+        shareTokensByKey = newCache();
+        unknownShareKeys = Caffeine.newBuilder()
+                .maximumSize(negativeCacheEntries)
+                .expireAfterWrite(Duration.ofSeconds(negativeCacheTtlSeconds))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, transfers, CACHE_NAME, "entity", "transfer");
+        CaffeineCacheMetrics.monitor(meterRegistry, transferIdsByShareToken, CACHE_NAME, "entity", "share-token");
+        CaffeineCacheMetrics.monitor(meterRegistry, shareTokensByKey, CACHE_NAME, "entity", "share");
+        transferQueries = dbQueryCounter("transfer");
+        shareQueries = dbQueryCounter("share");
+        rejectedByFilter = rejectedCounter("filter");
+        rejectedByNegativeCache = rejectedCounter("negative-cache");
+        FunctionCounter.builder(CACHE_NAME + ".db.queries.avoided", this,
+                        c -> c.transfers.stats().hitCount() + c.shareTokensByKey.stats().hitCount()
+                                + c.rejectedByFilter.count() + c.rejectedByNegativeCache.count())
+                .description("Metadata lookups answered without a database query")
+                .register(meterRegistry);
+        Gauge.builder(CACHE_NAME + ".share-filter.bytes", this,
+                        c -> c.shareFilter == null ? 0 : c.shareFilter.sizeBytes())
+                .description("Heap held by the Bloom filter of issued share keys")
+                .register(meterRegistry);
+        log.info("Metadata cache {} - Max entries: {}, TTL: {}s",
+                enabled ? "enabled" : "disabled", maxEntries, ttlSeconds);
+        rebuildShareFilter();
+    }
+
+    private <V> Cache<String, V> newCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    private Counter dbQueryCounter(String entity) {
+        return Counter.builder(CACHE_NAME + ".db.queries")
+                .tag("entity", entity)
+                .description("Metadata lookups that went to the database")
+                .register(meterRegistry);
+    }
+
+    private Counter rejectedCounter(String by) {
+        return Counter.builder(CACHE_NAME + ".public.rejected")
+                .tag("by", by)
+                .description("Public-link lookups for unknown keys answered without a database query")
+                .register(meterRegistry);
+    }
+
+    public Optional<FileTransferEntity> transferById(String transferId) {
+        if (transferId == null) {
+            return Optional.empty();
+        }
+        FileTransferEntity cached = enabled ? transfers.getIfPresent(transferId) : null;
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        transferQueries.increment();
+        Optional<FileTransferEntity> loaded = fileTransferRepo.findByTransferId(transferId);
+        loaded.ifPresent(this::cacheTransfer);
+        return loaded;
+    }
+
+    public Optional<FileTransferEntity> transferByShareToken(String shareToken) {
+        if (shareToken == null) {
+            return Optional.empty();
+        }
+        String transferId = enabled ? transferIdsByShareToken.getIfPresent(shareToken) : null;
+        if (transferId != null) {
+            Optional<FileTransferEntity> transfer = transferById(transferId);
+            if (transfer.isPresent() && shareToken.equals(transfer.get().getShareToken())) {
+                return transfer;
+            }
+            transferIdsByShareToken.invalidate(shareToken);
+        }
+        transferQueries.increment();
+        Optional<FileTransferEntity> loaded = fileTransferRepo.findByShareToken(shareToken);
+        loaded.ifPresent(this::cacheTransfer);
+        return loaded;
+    }
+
+    /** The transfer a public share token serves, if the share still exists. */
+    public Optional<FileTransferEntity> publicTransferByShareToken(String shareToken) {
+        if (shareToken == null) {
+            return Optional.empty();
+        }
+        return publicTransfer(tokenKey(shareToken), () -> fileTransferRepo.findPublicByShareToken(shareToken));
+    }
+
+    /** The transfer a share ID decoded from a share code serves, if the share still exists. */
+    public Optional<FileTransferEntity> publicTransferByShareId(Long shareId) {
+        if (shareId == null) {
+            return Optional.empty();
+        }
+        return publicTransfer(idKey(shareId), () -> fileTransferRepo.findPublicByShareId(shareId));
+    }
+
+    private Optional<FileTransferEntity> publicTransfer(String key, Supplier<Optional<FileTransferEntity>> query) {
+        if (enabled) {
+            BloomFilter filter = shareFilter;
+            if (filter != null && !filter.mightContain(key)) {
+                rejectedByFilter.increment();
+                return Optional.empty();
+            }
+            if (shareFilterEnabled && unknownShareKeys.getIfPresent(key) != null) {
+                rejectedByNegativeCache.increment();
+                return Optional.empty();
+            }
+            String shareToken = shareTokensByKey.getIfPresent(key);
+            if (shareToken != null) {
+                Optional<FileTransferEntity> transfer = transferByShareToken(shareToken);
+                if (transfer.isPresent()) {
+                    return transfer;
+                }
+                shareTokensByKey.invalidate(key);
+            }
+        }
+        shareQueries.increment();
+        Optional<FileTransferEntity> loaded = query.get();
+        if (!enabled) {
+            return loaded;
+        }
+        if (loaded.isEmpty()) {
+            if (shareFilterEnabled) {
+                unknownShareKeys.put(key, Boolean.TRUE);
+            }
+        } else if (Boolean.TRUE.equals(loaded.get().getSuccess())) {
+            cacheTransfer(loaded.get());
+            shareTokensByKey.put(key, loaded.get().getShareToken());
+        }
+        return loaded;
+    }
+
+    private static String tokenKey(String shareToken) {
+        return "token:" + shareToken;
+    }
+
+    private static String idKey(Long shareId) {
+        return "id:" + shareId;
+    }
+
+    private void cacheTransfer(FileTransferEntity transfer) {
+        if (!enabled || !Boolean.TRUE.equals(transfer.getSuccess())) {
+            return;
+        }
+        transfers.put(transfer.getTransferId(), transfer);
+        if (transfer.getShareToken() != null) {
+            transferIdsByShareToken.put(transfer.getShareToken(), transfer.getTransferId());
+        }
+    }
+
+    /** Drops a transfer row; the share-token index heals itself on the next lookup. */
+    public void invalidateTransfer(String transferId) {
+        if (transferId != null) {
+            transfers.invalidate(transferId);
+        }
+    }
+
+    public void invalidateShare(FileShare share) {
+        if (share != null) {
+            shareTokensByKey.invalidate(tokenKey(share.getShareToken()));
+            shareTokensByKey.invalidate(idKey(share.getShareId()));
+        }
+    }
+
+    /** Makes a newly saved share resolvable: adds its keys to the filter and clears any cached miss. */
+    public void shareCreated(FileShare share) {
+        String[] keys = {tokenKey(share.getShareToken()), idKey(share.getShareId())};
+        synchronized (shareFilterLock) {
+            for (String key : keys) {
+                if (shareFilter != null) {
+                    shareFilter.put(key);
+                }
+                if (keysAddedDuringRebuild != null) {
+                    keysAddedDuringRebuild.add(key);
+                }
+            }
+        }
+        unknownShareKeys.invalidateAll(List.of(keys));
+    }
+
+    /**
+     * Rebuilds the share-key filter from the table, which also sheds keys of
+     * deleted shares. Shares created while the table is read are replayed into
+     * the new filter before it replaces the old one.
+     */
+    public void rebuildShareFilter() {
+        if (!enabled || !shareFilterEnabled) {
+            return;
+        }
+        synchronized (shareFilterLock) {
+            keysAddedDuringRebuild = new ArrayList<>();
+        }
+        BloomFilter next = null;
+        long started = System.currentTimeMillis();
+        try {
+            List<Object[]> rows = fileShareRepo.findAllShareKeys();
+            next = new BloomFilter(Math.max(expectedShares, rows.size() * 2L) * 2, falsePositiveRate);
+            for (Object[] row : rows) {
+                if (row[0] != null) {
+                    next.put(tokenKey((String) row[0]));
+                }
+                if (row[1] != null) {
+                    next.put(idKey((Long) row[1]));
+                }
+            }
+            log.info("Share filter built - Shares: {}, Size: {} KB, Took: {} ms",
+                    rows.size(), next.sizeBytes() >> 10, System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            log.error("Could not build the share filter; public links are looked up unfiltered", e);
+        } finally {
+            synchronized (shareFilterLock) {
+                if (next != null) {
+                    keysAddedDuringRebuild.forEach(next::put);
+                }
+                shareFilter = next;
+                keysAddedDuringRebuild = null;
+            }
+        }
+    }
+}
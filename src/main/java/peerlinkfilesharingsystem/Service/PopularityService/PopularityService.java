@@ -0,0 +1,341 @@
+package peerlinkfilesharingsystem.Service.PopularityService;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import peerlinkfilesharingsystem.Dto.PopularTransferDto;
+import peerlinkfilesharingsystem.Enums.UserRole;
+import peerlinkfilesharingsystem.Model.Users;
+import peerlinkfilesharingsystem.Repo.UserRepo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * What is hot right now, in fixed memory however many files exist.
+ *
+ * Two Count-Min sketches estimate per-transfer download and info-page counts,
+ * and a Space-Saving summary keeps the top-K transfers by a combined score
+ * (a download counts 1, an info view {@code infoViewWeight}). Everything decays
+ * exponentially with a configurable half-life. Decay is done forward: new events
+ * are weighted by 2^(age of the sketch / half-life) instead of touching every
+ * counter on a timer, and the counters are rescaled once that weight grows large.
+ *
+ * Recording never waits on the lock: events go into a concurrent buffer and
+ * whichever thread finds the buffer long enough and the lock free applies the
+ * whole batch. Reads apply whatever is pending first. The top-K counters sit
+ * in a min-heap, so replacing the smallest one is O(log K).
+ */
+@Service
+@Slf4j
+public class PopularityService {
+
+    private static final int DEPTH = 4;
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0x27D4EB2F165667C5L};
+    private static final double RESCALE_THRESHOLD = 0x1p32;
+    private static final int DRAIN_THRESHOLD = 64;
+
+    private final UserRepo userRepo;
+
+    @Value("${popularity.sketch.width:16384}")
+    private int width;
+
+    @Value("${popularity.top-k:256}")
+    private int capacity;
+
+    @Value("${popularity.half-life-minutes:60}")
+    private double halfLifeMinutes;
+
+    @Value("${popularity.info-view-weight:0.25}")
+    private double infoViewWeight;
+
+    private double[][] downloads;
+    private double[][] infoViews;
+    private final Map<String, Counter> topK = new HashMap<>();
+    private Counter[] heap;
+    private int heapSize;
+    private final ConcurrentLinkedQueue<Event> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private long landmarkMillis;
+    private double halfLifeMillis;
+
+    public PopularityService(UserRepo userRepo) {
+        this.userRepo = userRepo;
+    }
+
+    @PostConstruct
+    void init() {
+        // A power of two lets the column be taken with a mask
+        width = Integer.highestOneBit(Math.max(64, width - 1) << 1);
+        downloads = new double[DEPTH][width];
+        infoViews = new double[DEPTH][width];
+        heap = new Counter[capacity];
+        halfLifeMillis = halfLifeMinutes * 60_000;
+        landmarkMillis = System.currentTimeMillis();
+        log.info("Popularity sketch - Width: {}, Top-K: {}, Half-life: {} min", width, capacity, halfLifeMinutes);
+    }
+
+    public void recordDownload(String transferId) {
+        record(transferId, downloads, 1.0);
+    }
+
+    public void recordInfoView(String transferId) {
+        record(transferId, infoViews, infoViewWeight);
+    }
+
+    /** Decayed download + weighted info-view estimate for one transfer; never underestimates. */
+    public double score(String transferId) {
+        lock.lock();
+        try {
+            drain();
+            double weight = weightNow();
+            long hash = hash(transferId);
+            return (estimate(downloads, hash) + infoViewWeight * estimate(infoViews, hash)) / weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The hottest transfers right now, hottest first. */
+    public List<PopularTransferDto> top(int limit) {
+        List<PopularTransferDto> result;
+        lock.lock();
+        try {
+            drain();
+            double weight = weightNow();
+            result = new ArrayList<>(heapSize);
+            for (int i = 0; i < heapSize; i++) {
+                Counter counter = heap[i];
+                long hash = hash(counter.transferId);
+                result.add(PopularTransferDto.builder()
+                        .transferId(counter.transferId)
+                        .score(counter.count / weight)
+                        .maxOverestimate(counter.error / weight)
+                        .downloads(estimate(downloads, hash) / weight)
+                        .infoViews(estimate(infoViews, hash) / weight)
+                        .build());
+            }
+        } finally {
+            lock.unlock();
+        }
+        result.sort(Comparator.comparingDouble(PopularTransferDto::getScore).reversed());
+        return result.subList(0, Math.min(Math.max(0, limit), result.size()));
+    }
+
+    public ResponseEntity<?> getPopular(int limit) {
+        Users user = retriveLoggedInUser();
+        if (user.getRole() != UserRole.ADMIN) {
+            return new ResponseEntity<>("Admin access required", HttpStatus.FORBIDDEN);
+        }
+        return ResponseEntity.ok(top(limit));
+    }
+
+    /** Forgets a transfer in the top-K; its sketch counts fade out with the decay. */
+    public void forget(String transferId) {
+        lock.lock();
+        try {
+            drain();
+            Counter counter = topK.remove(transferId);
+            if (counter != null) {
+                removeFromHeap(counter);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(String transferId, double[][] sketch, double amount) {
+        if (transferId == null) {
+            return;
+        }
+        pending.offer(new Event(transferId, sketch, amount, System.currentTimeMillis()));
+        // Busy lock means another thread is draining and will pick this event up
+        if (pendingCount.incrementAndGet() >= DRAIN_THRESHOLD && lock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Applies the events buffered so far, each weighted by the time it happened.
+     * Bounded by what was pending on entry, so a steady stream of new events
+     * cannot keep one caller draining. Caller holds the lock.
+     */
+    private void drain() {
+        weightNow();
+        Event event;
+        for (int budget = pendingCount.get(); budget > 0 && (event = pending.poll()) != null; budget--) {
+            pendingCount.decrementAndGet();
+            double increment = event.amount * Math.pow(2, (event.timeMillis - landmarkMillis) / halfLifeMillis);
+            long hash = hash(event.transferId);
+            for (int row = 0; row < DEPTH; row++) {
+                event.sketch[row][column(hash, row)] += increment;
+            }
+            offer(event.transferId, increment);
+        }
+    }
+
+    /** Space-Saving: a newcomer takes over the smallest counter and inherits its count as error. */
+    private void offer(String transferId, double increment) {
+        Counter counter = topK.get(transferId);
+        if (counter == null && heapSize >= capacity) {
+            counter = heap[0];
+            topK.remove(counter.transferId);
+            counter.transferId = transferId;
+            counter.error = counter.count;
+            topK.put(transferId, counter);
+        } else if (counter == null) {
+            counter = new Counter(transferId);
+            counter.index = heapSize;
+            heap[heapSize++] = counter;
+            siftUp(counter.index);
+            topK.put(transferId, counter);
+        }
+        counter.count += increment;
+        siftDown(counter.index);
+    }
+
+    private void removeFromHeap(Counter counter) {
+        int index = counter.index;
+        Counter last = heap[--heapSize];
+        heap[heapSize] = null;
+        if (index < heapSize) {
+            heap[index] = last;
+            last.index = index;
+            siftDown(index);
+            siftUp(last.index);
+        }
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter counter, int index) {
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private double estimate(double[][] sketch, long hash) {
+        double min = Double.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, sketch[row][column(hash, row)]);
+        }
+        return min;
+    }
+
+    /** FNV-1a over the UTF-8 bytes, finished with a 64-bit mix; each row then reseeds it. */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    private int column(long hash, int row) {
+        long h = (hash ^ SEEDS[row]) * 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & (width - 1);
+    }
+
+    /** Current forward-decay weight; rescales every counter when it gets large. Caller holds the lock. */
+    private double weightNow() {
+        long now = System.currentTimeMillis();
+        double weight = Math.pow(2, (now - landmarkMillis) / halfLifeMillis);
+        if (weight < RESCALE_THRESHOLD) {
+            return weight;
+        }
+        double factor = 1 / weight;
+        for (double[][] sketch : List.of(downloads, infoViews)) {
+            for (double[] row : sketch) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] *= factor;
+                }
+            }
+        }
+        // Scaling every counter alike keeps the heap ordered
+        for (int i = 0; i < heapSize; i++) {
+            heap[i].count *= factor;
+            heap[i].error *= factor;
+        }
+        landmarkMillis = now;
+        return 1.0;
+    }
+
+    private Users retriveLoggedInUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated())
+            throw new BadCredentialsException("Bad Credentials login ");
+        Users user = userRepo.findByUsername(authentication.getName());
+        if (user == null) {
+            throw new UsernameNotFoundException("User Not Found");
+        }
+        return user;
+    }
+
+    private static final class Counter {
+        String transferId;
+        double count;
+        double error;
+        int index;
+
+        Counter(String transferId) {
+            this.transferId = transferId;
+        }
+    }
+
+    private record Event(String transferId, double[][] sketch, double amount, long timeMillis) {
+    }
+}
@@ -0,0 +1,135 @@
+package peerlinkfilesharingsystem.Service.TransferHistoryService;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import peerlinkfilesharingsystem.Dto.KeysetPage;
+import peerlinkfilesharingsystem.Dto.SharedFileResponse;
+import peerlinkfilesharingsystem.Dto.TransferHistoryItem;
+import peerlinkfilesharingsystem.Model.Users;
+import peerlinkfilesharingsystem.Repo.FileShareRepo;
+import peerlinkfilesharingsystem.Repo.FileTransferRepo;
+import peerlinkfilesharingsystem.Repo.UserRepo;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.ToLongFunction;
+
+/**
+ * Transfer history and share listings for the logged-in user, paged by keyset
+ * on (user_id, file_id) so page 1000 costs the same as page 1, and exported as
+ * NDJSON one page at a time so a user with tens of thousands of transfers never
+ * holds a connection or a full result list for the length of the download.
+ */
+@Service
+@Slf4j
+public class TransferHistoryService {
+
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final FileTransferRepo fileTransferRepo;
+    private final FileShareRepo fileShareRepo;
+    private final UserRepo userRepo;
+    private final ObjectMapper objectMapper;
+
+    @Value("${file.history.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value("${file.history.export-batch-size:1000}")
+    private int exportBatchSize;
+
+    public TransferHistoryService(FileTransferRepo fileTransferRepo, FileShareRepo fileShareRepo,
+                                  UserRepo userRepo, ObjectMapper objectMapper) {
+        this.fileTransferRepo = fileTransferRepo;
+        this.fileShareRepo = fileShareRepo;
+        this.userRepo = userRepo;
+        this.objectMapper = objectMapper;
+    }
+
+    public KeysetPage<TransferHistoryItem> historyPage(Long cursor, int limit) {
+        UUID userId = retriveLoggedInUser().getId();
+        return page(cursor, limit, (before, l) -> fileTransferRepo.findHistoryPage(userId, before, l),
+                TransferHistoryItem::getFileId);
+    }
+
+    public KeysetPage<SharedFileResponse> sharesPage(Long cursor, int limit) {
+        UUID userId = retriveLoggedInUser().getId();
+        return page(cursor, limit, (before, l) -> fileShareRepo.findSharesPage(userId, before, l),
+                SharedFileResponse::getFileId);
+    }
+
+    /** The whole history, newest first, one JSON object per line. */
+    public StreamingResponseBody exportHistory() {
+        UUID userId = retriveLoggedInUser().getId();
+        return export(userId, (before, l) -> fileTransferRepo.findHistoryPage(userId, before, l),
+                TransferHistoryItem::getFileId);
+    }
+
+    /** Every share of the caller, newest first, one JSON object per line. */
+    public StreamingResponseBody exportShares() {
+        UUID userId = retriveLoggedInUser().getId();
+        return export(userId, (before, l) -> fileShareRepo.findSharesPage(userId, before, l),
+                SharedFileResponse::getFileId);
+    }
+
+    /** Reads one row past the page so the last page says so instead of costing an empty round trip. */
+    private <T> KeysetPage<T> page(Long cursor, int limit, PageQuery<T> query, ToLongFunction<T> key) {
+        int size = Math.max(1, Math.min(limit, maxPageSize));
+        List<T> rows = query.fetch(cursor == null ? Long.MAX_VALUE : cursor, Limit.of(size + 1));
+        if (rows.size() <= size) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, size);
+        return new KeysetPage<>(items, key.applyAsLong(items.get(size - 1)));
+    }
+
+    /**
+     * Runs on the async executor after the request thread has returned, so the
+     * user is resolved up front. Each batch is its own short query: the
+     * connection goes back to the pool while the client drains the bytes.
+     */
+    private <T> StreamingResponseBody export(UUID userId, PageQuery<T> query, ToLongFunction<T> key) {
+        return out -> {
+            long before = Long.MAX_VALUE;
+            long rows = 0;
+            List<T> batch;
+            do {
+                batch = query.fetch(before, Limit.of(exportBatchSize));
+                for (T row : batch) {
+                    out.write(objectMapper.writeValueAsBytes(row));
+                    out.write(NEWLINE);
+                }
+                out.flush();
+                rows += batch.size();
+                if (!batch.isEmpty()) {
+                    before = key.applyAsLong(batch.get(batch.size() - 1));
+                }
+            } while (batch.size() == exportBatchSize);
+            log.info("Exported {} rows for user {}", rows, userId);
+        };
+    }
+
+    @FunctionalInterface
+    private interface PageQuery<T> {
+        List<T> fetch(long before, Limit limit);
+    }
+
+    private Users retriveLoggedInUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated())
+            throw new BadCredentialsException("Bad Credentials login ");
+        String username = authentication.getName();
+        Users user = userRepo.findByUsername(username);
+        if (user == null) {
+            throw new UsernameNotFoundException("User Not Found");
+        }
+        return user;
+    }
+}
@@ -0,0 +1,212 @@
+package peerlinkfilesharingsystem.Service.UploadQueueService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded worker pool for post-upload processing (compression, dedup, storage).
+ *
+ * Jobs are queued per user and workers serve users round-robin, and no user may
+ * hold more than a fixed share of the workers at once. A user with one 10 GB
+ * upload and another with fifty thumbnails therefore progress side by side
+ * instead of in arrival order. Admission is capped per user as well as overall,
+ * so one user's batch cannot fill the queue and turn everyone else away.
+ */
+@Service
+@Slf4j
+public class UploadQueueService {
+
+    @Value("${upload.processing.workers:0}")
+    private int configuredWorkers;
+
+    @Value("${upload.processing.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${upload.processing.max-concurrent-per-user:0}")
+    private int configuredPerUserLimit;
+
+    @Value("${upload.processing.max-queued-per-user:0}")
+    private int configuredPerUserQueueLimit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Map<UUID, Deque<Runnable>> queues = new HashMap<>();
+    private final Deque<UUID> rotation = new ArrayDeque<>();
+    private final Map<UUID, Integer> running = new HashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private int queued;
+    private int perUserLimit;
+    private int perUserQueueLimit;
+    private volatile boolean shuttingDown;
+    /** Smoothed job duration, used to suggest a Retry-After when full. */
+    private volatile double averageJobSeconds = 5.0;
+
+    @PostConstruct
+    void start() {
+        int workerCount = configuredWorkers > 0
+                ? configuredWorkers
+                : Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        perUserLimit = configuredPerUserLimit > 0 ? configuredPerUserLimit : Math.max(1, workerCount / 2);
+        perUserQueueLimit = configuredPerUserQueueLimit > 0
+                ? Math.min(configuredPerUserQueueLimit, queueCapacity)
+                : Math.max(1, queueCapacity / 4);
+        for (int i = 1; i <= workerCount; i++) {
+            Thread worker = new Thread(this::workLoop, "upload-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("Upload processing pool started - Workers: {}, Queue capacity: {}, Per-user limit: {}, Per-user queue limit: {}",
+                workerCount, queueCapacity, perUserLimit, perUserQueueLimit);
+    }
+
+    /**
+     * Queues a job for the user. Returns false when the queue is full, or the user
+     * already has their share of it waiting, and the job was not accepted; callers
+     * should answer 429 with {@link #suggestRetryAfterSeconds(UUID)}.
+     */
+    public boolean submit(UUID userId, Runnable job) {
+        return enqueue(userId, job, false);
+    }
+
+    /**
+     * Queues a job that must not be refused because its bytes are already on the
+     * server (e.g. the last chunk of a resumable upload). It still waits its fair turn.
+     */
+    public void submitAccepted(UUID userId, Runnable job) {
+        enqueue(userId, job, true);
+    }
+
+    /** Whether a job from this user would be accepted right now. */
+    public boolean hasCapacity(UUID userId) {
+        lock.lock();
+        try {
+            return queued < queueCapacity && queuedByUser(userId) < perUserQueueLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Time until the queue, or this user's own backlog at their worker share, has drained a slot. */
+    public long suggestRetryAfterSeconds(UUID userId) {
+        lock.lock();
+        try {
+            double waves = Math.max(
+                    Math.ceil((double) queued / Math.max(1, workers.size())),
+                    Math.ceil((double) queuedByUser(userId) / perUserLimit));
+            return Math.max(1, Math.min(300, Math.round(waves * averageJobSeconds)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Jobs ahead of the user's next job, counting the user's own queue only. */
+    public int queuedFor(UUID userId) {
+        lock.lock();
+        try {
+            return queuedByUser(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Caller holds the lock. */
+    private int queuedByUser(UUID userId) {
+        Deque<Runnable> queue = queues.get(userId);
+        return queue == null ? 0 : queue.size();
+    }
+
+    private boolean enqueue(UUID userId, Runnable job, boolean mandatory) {
+        lock.lock();
+        try {
+            if (shuttingDown || (!mandatory
+                    && (queued >= queueCapacity || queuedByUser(userId) >= perUserQueueLimit))) {
+                return false;
+            }
+            Deque<Runnable> queue = queues.computeIfAbsent(userId, id -> new ArrayDeque<>());
+            if (queue.isEmpty() && !rotation.contains(userId)) {
+                rotation.addLast(userId);
+            }
+            queue.addLast(job);
+            queued++;
+            workAvailable.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void workLoop() {
+        while (!shuttingDown) {
+            UUID userId;
+            Runnable job;
+            lock.lock();
+            try {
+                while ((userId = nextEligibleUser()) == null) {
+                    if (shuttingDown) {
+                        return;
+                    }
+                    workAvailable.await(1, TimeUnit.SECONDS);
+                }
+                Deque<Runnable> queue = queues.get(userId);
+                job = queue.pollFirst();
+                queued--;
+                if (queue.isEmpty()) {
+                    queues.remove(userId);
+                } else {
+                    // Back of the line: everyone else with pending work goes first
+                    rotation.addLast(userId);
+                }
+                running.merge(userId, 1, Integer::sum);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            long startTime = System.nanoTime();
+            try {
+                job.run();
+            } catch (Throwable t) {
+                log.error("Upload processing job failed for user {}", userId, t);
+            } finally {
+                double seconds = (System.nanoTime() - startTime) / 1e9;
+                averageJobSeconds = averageJobSeconds * 0.8 + seconds * 0.2;
+                lock.lock();
+                try {
+                    running.merge(userId, -1, (a, b) -> a + b == 0 ? null : a + b);
+                    // A slot for this user opened up; a waiting worker may now take its next job
+                    workAvailable.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /** Pops the first user in rotation that is below its concurrency limit. Caller holds the lock. */
+    private UUID nextEligibleUser() {
+        for (Iterator<UUID> it = rotation.iterator(); it.hasNext(); ) {
+            UUID candidate = it.next();
+            if (running.getOrDefault(candidate, 0) < perUserLimit) {
+                it.remove();
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        workers.forEach(Thread::interrupt);
+    }
+}
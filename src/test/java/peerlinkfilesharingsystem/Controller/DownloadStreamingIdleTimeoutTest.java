@@ -0,0 +1,87 @@
+package peerlinkfilesharingsystem.Controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import peerlinkfilesharingsystem.Repo.FileShareRepo;
+import peerlinkfilesharingsystem.Repo.FileTransferRepo;
+import peerlinkfilesharingsystem.Service.DownloadStreamingService.DownloadStreamingService;
+import peerlinkfilesharingsystem.Service.MetadataCacheService.MetadataCacheService;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * A client that requests a large file and then never reads: once the socket
+ * buffers fill, its body makes no progress, and its download thread must be
+ * freed within a few idle timeouts rather than held for the whole request.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "download.streaming.idle-timeout-ms=2000",
+        "file.hot-cache.enabled=false"
+})
+@ActiveProfiles("test")
+class DownloadStreamingIdleTimeoutTest {
+
+    private static final int FILE_SIZE = 64 << 20;
+    private static final long IDLE_TIMEOUT_MS = 2_000;
+
+    @TempDir
+    static Path storage;
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) {
+        registry.add("file.storage.path", storage::toString);
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private FileTransferRepo fileTransferRepo;
+    @Autowired
+    private FileShareRepo fileShareRepo;
+    @Autowired
+    private MetadataCacheService metadataCacheService;
+    @Autowired
+    private DownloadStreamingService downloadStreamingService;
+
+    @Test
+    void stalledClientLosesItsThread() throws Exception {
+        String shareToken = PublicDownloadFixture.publish(fileTransferRepo, fileShareRepo, metadataCacheService, storage,
+                FILE_SIZE);
+        try (Socket socket = new Socket()) {
+            // A tiny receive window: the server's writes block as soon as the socket buffers fill
+            socket.setReceiveBufferSize(4096);
+            socket.connect(new InetSocketAddress("127.0.0.1", port));
+            OutputStream out = socket.getOutputStream();
+            // A network speed header keeps it on the streamed path rather than sendfile
+            out.write(("GET /files/download/" + shareToken + "/public HTTP/1.1\r\n"
+                    + "Host: 127.0.0.1:" + port + "\r\n"
+                    + "X-Network-Speed: 10000.0\r\n"
+                    + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            await().atMost(10, TimeUnit.SECONDS).until(() -> downloadStreamingService.getActiveCount() == 1);
+            long stalledAt = System.nanoTime();
+
+            await().atMost(IDLE_TIMEOUT_MS * 3, TimeUnit.MILLISECONDS)
+                    .until(() -> downloadStreamingService.getActiveCount() == 0
+                            && downloadStreamingService.getExecutor().getActiveCount() == 0);
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stalledAt))
+                    .isLessThan(IDLE_TIMEOUT_MS * 3);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package peerlinkfilesharingsystem.Controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import peerlinkfilesharingsystem.Repo.FileShareRepo;
+import peerlinkfilesharingsystem.Repo.FileTransferRepo;
+import peerlinkfilesharingsystem.Service.DownloadStreamingService.DownloadStreamingService;
+import peerlinkfilesharingsystem.Service.MetadataCacheService.MetadataCacheService;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 2,000 throttled clients against eight download threads and a queue of
+ * sixteen: the pool must not grow, every client must get either its whole
+ * file or a 503 with Retry-After, and the pool must serve again afterwards.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "download.streaming.max-threads=8",
+        "download.streaming.queue-capacity=16",
+        "download.streaming.retry-after-seconds=3",
+        "file.hot-cache.enabled=false"
+})
+@ActiveProfiles("test")
+class DownloadStreamingSaturationTest {
+
+    private static final int CLIENTS = 2_000;
+    private static final int MAX_THREADS = 8;
+    private static final int FILE_SIZE = 64 * 1024;
+
+    @TempDir
+    static Path storage;
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) {
+        registry.add("file.storage.path", storage::toString);
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private FileTransferRepo fileTransferRepo;
+    @Autowired
+    private FileShareRepo fileShareRepo;
+    @Autowired
+    private MetadataCacheService metadataCacheService;
+    @Autowired
+    private DownloadStreamingService downloadStreamingService;
+
+    @Test
+    void saturatedPoolAnswersServiceUnavailableWithRetryAfter() throws Exception {
+        String shareToken = PublicDownloadFixture.publish(fileTransferRepo, fileShareRepo, metadataCacheService, storage, FILE_SIZE);
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+
+        List<CompletableFuture<HttpResponse<byte[]>>> responses = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            // ~0.2s per body at 2 Mbps: the paced stream path, never sendfile
+            responses.add(client.sendAsync(PublicDownloadFixture.download(port, shareToken, 2.0),
+                    HttpResponse.BodyHandlers.ofByteArray()));
+        }
+
+        int served = 0;
+        int rejected = 0;
+        for (CompletableFuture<HttpResponse<byte[]>> response : responses) {
+            HttpResponse<byte[]> r = response.get(2, TimeUnit.MINUTES);
+            assertThat(r.statusCode()).isIn(200, 503);
+            if (r.statusCode() == 200) {
+                assertThat(r.body()).hasSize(FILE_SIZE);
+                served++;
+            } else {
+                assertThat(r.headers().firstValue(HttpHeaders.RETRY_AFTER)).hasValue("3");
+                rejected++;
+            }
+        }
+        assertThat(served).isGreaterThanOrEqualTo(MAX_THREADS);
+        assertThat(rejected).isPositive();
+        assertThat(downloadStreamingService.getExecutor().getThreadPoolExecutor().getLargestPoolSize())
+                .isLessThanOrEqualTo(MAX_THREADS);
+
+        HttpResponse<byte[]> after = client.send(PublicDownloadFixture.download(port, shareToken, 2.0),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(after.statusCode()).isEqualTo(200);
+        assertThat(after.body()).hasSize(FILE_SIZE);
+    }
+}
@@ -0,0 +1,99 @@
+package peerlinkfilesharingsystem.Controller;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import peerlinkfilesharingsystem.Repo.FileDownloadRepo;
+import peerlinkfilesharingsystem.Repo.FileShareRepo;
+import peerlinkfilesharingsystem.Repo.FileTransferRepo;
+import peerlinkfilesharingsystem.Service.DownloadCounterService.DownloadCounterService;
+import peerlinkfilesharingsystem.Service.MetadataCacheService.MetadataCacheService;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Downloads hold no pooled connection while the body is written: with two
+ * connections and a 5s acquire timeout, 200 paced downloads that each take
+ * seconds must all complete, and every one of them must still be counted.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.hikari.maximum-pool-size=2",
+        "spring.datasource.hikari.connection-timeout=5000",
+        "download.journal.flush-interval-ms=200",
+        "download.counters.flush-interval-ms=200"
+})
+@ActiveProfiles("test")
+class PublicDownloadConnectionPoolTest {
+
+    private static final int DOWNLOADS = 200;
+    private static final int FILE_SIZE = 1 << 20;
+
+    @TempDir
+    static Path storage;
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) {
+        registry.add("file.storage.path", storage::toString);
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private FileTransferRepo fileTransferRepo;
+    @Autowired
+    private FileShareRepo fileShareRepo;
+    @Autowired
+    private FileDownloadRepo fileDownloadRepo;
+    @Autowired
+    private MetadataCacheService metadataCacheService;
+    @Autowired
+    private DownloadCounterService downloadCounterService;
+    @Autowired
+    private HikariDataSource dataSource;
+
+    @Test
+    void pacedDownloadsDoNotHoldPooledConnections() throws Exception {
+        String shareToken = PublicDownloadFixture.publish(fileTransferRepo, fileShareRepo, metadataCacheService, storage, FILE_SIZE);
+        String transferId = PublicDownloadFixture.transferIdOf(fileTransferRepo, shareToken);
+        long journalBefore = fileDownloadRepo.count();
+
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        List<CompletableFuture<HttpResponse<byte[]>>> responses = new ArrayList<>();
+        for (int i = 0; i < DOWNLOADS; i++) {
+            // ~3s per body at 2 Mbps, so every download overlaps every other one
+            responses.add(client.sendAsync(PublicDownloadFixture.download(port, shareToken, 2.0),
+                    HttpResponse.BodyHandlers.ofByteArray()));
+        }
+
+        for (CompletableFuture<HttpResponse<byte[]>> response : responses) {
+            HttpResponse<byte[]> r = response.get(2, TimeUnit.MINUTES);
+            assertThat(r.statusCode()).isEqualTo(200);
+            assertThat(r.body()).hasSize(FILE_SIZE);
+        }
+        assertThat(dataSource.getHikariPoolMXBean().getThreadsAwaitingConnection()).isZero();
+
+        await().atMost(10, TimeUnit.SECONDS).untilAsserted(() -> {
+            downloadCounterService.flush();
+            assertThat(fileTransferRepo.findByTransferId(transferId).orElseThrow().getDownloadCount())
+                    .isEqualTo(DOWNLOADS);
+            assertThat(fileDownloadRepo.count() - journalBefore).isEqualTo(DOWNLOADS);
+        });
+    }
+}
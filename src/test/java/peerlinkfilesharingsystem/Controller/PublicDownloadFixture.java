@@ -0,0 +1,69 @@
+package peerlinkfilesharingsystem.Controller;
+
+import peerlinkfilesharingsystem.Enums.MarkFileAs;
+import peerlinkfilesharingsystem.Model.FileShare;
+import peerlinkfilesharingsystem.Model.FileTransferEntity;
+import peerlinkfilesharingsystem.Repo.FileShareRepo;
+import peerlinkfilesharingsystem.Repo.FileTransferRepo;
+import peerlinkfilesharingsystem.Service.MetadataCacheService.MetadataCacheService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Publishes a stored-as-is file under a public share token, the way markFileAspublic leaves it. */
+final class PublicDownloadFixture {
+
+    private PublicDownloadFixture() {
+    }
+
+    static String publish(FileTransferRepo fileTransferRepo, FileShareRepo fileShareRepo,
+                          MetadataCacheService metadataCacheService, Path storageDir, int size) throws IOException {
+        byte[] content = new byte[size];
+        ThreadLocalRandom.current().nextBytes(content);
+        String transferId = UUID.randomUUID().toString();
+        Path file = storageDir.resolve(transferId + ".bin");
+        Files.write(file, content);
+
+        FileTransferEntity transfer = new FileTransferEntity();
+        transfer.setTransferId(transferId);
+        transfer.setFileName("fixture.bin");
+        transfer.setFileType("bin");
+        transfer.setFileSize((long) size);
+        transfer.setBytesTransferred((long) size);
+        transfer.setCompressionCodec("store");
+        transfer.setChunkSize(65536);
+        transfer.setStoragePath(file.toString());
+        transfer.setClientIp("127.0.0.1");
+        transfer.setSuccess(true);
+        transfer.setDeleted(false);
+        transfer.setShareToken(UUID.randomUUID().toString());
+        transfer.setMarkFileAs(MarkFileAs.PUBLIC);
+        fileTransferRepo.save(transfer);
+
+        FileShare share = new FileShare();
+        share.setShareToken(transfer.getShareToken());
+        share.setFileName(transfer.getFileName());
+        share.setFileSize(transfer.getFileSize());
+        share.setShareId(ThreadLocalRandom.current().nextLong(1, 1_000_000_000_000L));
+        fileShareRepo.save(share);
+        metadataCacheService.shareCreated(share);
+        return transfer.getShareToken();
+    }
+
+    static HttpRequest download(int port, String shareToken, double networkSpeedMbps) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/files/download/" + shareToken + "/public"))
+                .header("X-Network-Speed", String.valueOf(networkSpeedMbps))
+                .timeout(Duration.ofMinutes(2))
+                .build();
+    }
+
+    static String transferIdOf(FileTransferRepo fileTransferRepo, String shareToken) {
+        return fileTransferRepo.findByShareToken(shareToken).orElseThrow().getTransferId();
+    }
+}
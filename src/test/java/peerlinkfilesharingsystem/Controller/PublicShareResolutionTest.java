@@ -0,0 +1,63 @@
+package peerlinkfilesharingsystem.Controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import peerlinkfilesharingsystem.Repo.FileShareRepo;
+import peerlinkfilesharingsystem.Repo.FileTransferRepo;
+import peerlinkfilesharingsystem.Service.IdAllocatorService.IdAllocatorService;
+import peerlinkfilesharingsystem.Service.MetadataCacheService.MetadataCacheService;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Public links resolve by share token or share code, never by the sequential share ID behind them. */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class PublicShareResolutionTest {
+
+    @TempDir
+    static Path storage;
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) {
+        registry.add("file.storage.path", storage::toString);
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private FileTransferRepo fileTransferRepo;
+    @Autowired
+    private FileShareRepo fileShareRepo;
+    @Autowired
+    private MetadataCacheService metadataCacheService;
+    @Autowired
+    private IdAllocatorService idAllocatorService;
+
+    @Test
+    void numericShareIdIsNotAPublicLink() throws Exception {
+        String shareToken = PublicDownloadFixture.publish(fileTransferRepo, fileShareRepo, metadataCacheService, storage, 1024);
+        Long shareId = fileShareRepo.findByShareToken(shareToken).getShareId();
+        String shareCode = idAllocatorService.toShareCode(shareId);
+        HttpClient client = HttpClient.newHttpClient();
+
+        assertThat(status(client, shareToken)).isEqualTo(200);
+        assertThat(status(client, shareCode)).isEqualTo(200);
+        assertThat(status(client, String.valueOf(shareId))).isEqualTo(404);
+    }
+
+    private int status(HttpClient client, String key) throws Exception {
+        return client.send(PublicDownloadFixture.download(port, key, 1000.0), HttpResponse.BodyHandlers.discarding())
+                .statusCode();
+    }
+}
@@ -0,0 +1,146 @@
+package peerlinkfilesharingsystem.Controller;
+
+import com.sun.management.OperatingSystemMXBean;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import peerlinkfilesharingsystem.Repo.FileShareRepo;
+import peerlinkfilesharingsystem.Repo.FileTransferRepo;
+import peerlinkfilesharingsystem.Service.FileDownloadService.FileDownloadService;
+import peerlinkfilesharingsystem.Service.MetadataCacheService.MetadataCacheService;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Serves the same stored-as-is file with Tomcat sendfile and through the
+ * streamed body, and reports throughput and process CPU per GB for each.
+ * Client and server share the JVM, so the CPU figures include the client's
+ * reads; that cost is the same in both modes, the difference is the server's.
+ *
+ * Run with {@code mvn test -Pbenchmark -Dtest=SendfileDownloadBenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "file.hot-cache.enabled=false",
+        "egress.total-bandwidth-mbps=0"
+})
+@ActiveProfiles("test")
+class SendfileDownloadBenchmark {
+
+    private static final int FILE_SIZE = 256 << 20;
+    private static final int CONCURRENCY = 8;
+    private static final int DOWNLOADS = 32;
+    private static final double GB = 1024.0 * 1024 * 1024;
+
+    @TempDir
+    static Path storage;
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) {
+        registry.add("file.storage.path", storage::toString);
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private FileTransferRepo fileTransferRepo;
+    @Autowired
+    private FileShareRepo fileShareRepo;
+    @Autowired
+    private MetadataCacheService metadataCacheService;
+    @Autowired
+    private FileDownloadService fileDownloadService;
+
+    private final OperatingSystemMXBean os =
+            (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+    @Test
+    void sendfileAgainstStreamedBody() throws Exception {
+        String shareToken = PublicDownloadFixture.publish(fileTransferRepo, fileShareRepo, metadataCacheService, storage, FILE_SIZE);
+        HttpClient client = HttpClient.newHttpClient();
+
+        // Warm both paths (JIT, page cache) before measuring either
+        run(client, shareToken, true, CONCURRENCY);
+        run(client, shareToken, false, CONCURRENCY);
+
+        Result stream = run(client, shareToken, false, DOWNLOADS);
+        Result sendfile = run(client, shareToken, true, DOWNLOADS);
+
+        System.out.printf("%nDownload benchmark: %d downloads of %d MB, %d concurrent%n",
+                DOWNLOADS, FILE_SIZE >> 20, CONCURRENCY);
+        System.out.println(stream.describe("stream"));
+        System.out.println(sendfile.describe("sendfile"));
+
+        assertThat(sendfile.bytes).isEqualTo(stream.bytes);
+    }
+
+    private Result run(HttpClient client, String shareToken, boolean sendfile, int downloads) throws Exception {
+        ReflectionTestUtils.setField(fileDownloadService, "sendfileEnabled", sendfile);
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+        try {
+            long cpuBefore = os.getProcessCpuTime();
+            long start = System.nanoTime();
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < downloads; i++) {
+                results.add(clients.submit(() -> download(client, shareToken)));
+            }
+            long bytes = 0;
+            for (Future<Long> result : results) {
+                long received = result.get(5, TimeUnit.MINUTES);
+                assertThat(received).isEqualTo(FILE_SIZE);
+                bytes += received;
+            }
+            return new Result(bytes, System.nanoTime() - start, os.getProcessCpuTime() - cpuBefore);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    /** No X-Network-Speed header, so egress pacing stays out of the way and sendfile is allowed. */
+    private long download(HttpClient client, String shareToken) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://127.0.0.1:" + port + "/files/download/" + shareToken + "/public")).build();
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        assertThat(response.statusCode()).isEqualTo(200);
+        long total = 0;
+        byte[] buffer = new byte[256 * 1024];
+        try (InputStream body = response.body()) {
+            int n;
+            while ((n = body.read(buffer)) != -1) {
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    private record Result(long bytes, long nanos, long cpuNanos) {
+
+        String describe(String mode) {
+            double gigabytes = bytes / GB;
+            return String.format("  %-9s %6.2f GB in %6.2f s: %7.1f MB/s, %5.2f CPU-s per GB",
+                    mode, gigabytes, nanos / 1e9, bytes / 1048576.0 / (nanos / 1e9), cpuNanos / 1e9 / gigabytes);
+        }
+    }
+}
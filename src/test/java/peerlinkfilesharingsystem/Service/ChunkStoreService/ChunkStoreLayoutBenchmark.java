@@ -0,0 +1,187 @@
+package peerlinkfilesharingsystem.Service.ChunkStoreService;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import peerlinkfilesharingsystem.Model.StoredObject;
+import peerlinkfilesharingsystem.Service.CompressionService.BgzfCodec;
+import peerlinkfilesharingsystem.Service.CompressionService.CompressionCodec;
+import peerlinkfilesharingsystem.Service.CompressionService.CompressionCodecRegistry;
+import peerlinkfilesharingsystem.Service.CompressionService.FileCompressionService;
+import peerlinkfilesharingsystem.Service.ContentStoreService.ContentStoreService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ingests the same series of uploads into both storage layouts and reports
+ * dedup ratio and ingest throughput for each. The series is a base file, a
+ * few revisions with small inserts and edits, and one exact re-upload: the
+ * case the chunk store exists for.
+ *
+ * Run with {@code mvn test -Pbenchmark -Dtest=ChunkStoreLayoutBenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "file.storage.layout=cdc")
+@ActiveProfiles("test")
+class ChunkStoreLayoutBenchmark {
+
+    private static final int FILE_SIZE = 32 << 20;
+    private static final int REVISIONS = 6;
+    private static final int EDITS_PER_REVISION = 4;
+    private static final int LEVEL = 6;
+    private static final int BUFFER = 64 * 1024;
+
+    @TempDir
+    static Path storage;
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) {
+        registry.add("file.storage.path", storage::toString);
+    }
+
+    @Autowired
+    private ChunkStoreService chunkStoreService;
+    @Autowired
+    private ContentStoreService contentStoreService;
+    @Autowired
+    private FileCompressionService fileCompressionService;
+    @Autowired
+    private CompressionCodecRegistry codecRegistry;
+
+    @Test
+    void cdcAgainstSingleObjectLayout() throws Exception {
+        List<byte[]> uploads = uploadSeries();
+        CompressionCodec codec = codecRegistry.get(BgzfCodec.NAME);
+
+        // One untimed pass each on unrelated data so JIT and the database are warm for both layouts
+        List<byte[]> warmup = List.of(text(new Random(7), FILE_SIZE / 4));
+        ingestObjects(warmup, codec, "warmup-object");
+        ingestChunks(warmup, codec, "warmup-cdc");
+
+        Result object = ingestObjects(uploads, codec, "object");
+        Result cdc = ingestChunks(uploads, codec, "cdc");
+
+        System.out.printf("%nLayout benchmark: %d uploads of %d MB, bgzf level %d%n",
+                uploads.size(), FILE_SIZE >> 20, LEVEL);
+        System.out.println(object.describe("object (single bgzf)"));
+        System.out.println(cdc.describe("cdc"));
+
+        assertThat(cdc.storedBytes).isLessThan(object.storedBytes);
+    }
+
+    private Result ingestObjects(List<byte[]> uploads, CompressionCodec codec, String prefix) throws Exception {
+        long logical = 0;
+        long stored = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < uploads.size(); i++) {
+            byte[] data = uploads.get(i);
+            MessageDigest digest = ContentStoreService.newDigest();
+            String written = storage.resolve(prefix + "-" + i + ".tmp").toString();
+            FileCompressionService.StreamCompressionResult result;
+            try (DigestInputStream in = new DigestInputStream(new ByteArrayInputStream(data), digest)) {
+                result = fileCompressionService.compressStream(in, written, codec, LEVEL, BUFFER, data.length);
+            }
+            String hash = ContentStoreService.toHex(digest);
+            StoredObject object = contentStoreService.adopt(hash, written, codec.getName(), LEVEL,
+                    result.getOriginalSize(), result.getCompressedSize());
+            if (object.getRefCount() == 1) {
+                stored += object.getStoredSize();
+            }
+            logical += data.length;
+        }
+        return new Result(logical, stored, System.nanoTime() - start);
+    }
+
+    private Result ingestChunks(List<byte[]> uploads, CompressionCodec codec, String prefix) throws Exception {
+        long logical = 0;
+        long start = System.nanoTime();
+        long storedBefore = storedChunkBytes();
+        for (int i = 0; i < uploads.size(); i++) {
+            byte[] data = uploads.get(i);
+            chunkStoreService.ingest(new ByteArrayInputStream(data), prefix + "-" + i, codec, LEVEL,
+                    ContentStoreService.newDigest());
+            logical += data.length;
+        }
+        long elapsed = System.nanoTime() - start;
+        return new Result(logical, storedChunkBytes() - storedBefore, elapsed);
+    }
+
+    @SuppressWarnings("unchecked")
+    private long storedChunkBytes() {
+        Map<String, Object> cdc = (Map<String, Object>) chunkStoreService.getStats().get("cdc");
+        return ((Number) cdc.get("physicalBytes")).longValue();
+    }
+
+    /** Base file, revisions that each add a handful of small edits to the last, then a re-upload of the base. */
+    private static List<byte[]> uploadSeries() {
+        Random random = new Random(42);
+        List<byte[]> uploads = new ArrayList<>();
+        byte[] current = text(random, FILE_SIZE);
+        uploads.add(current);
+        for (int r = 0; r < REVISIONS; r++) {
+            current = edit(random, current);
+            uploads.add(current);
+        }
+        uploads.add(uploads.get(0).clone());
+        return uploads;
+    }
+
+    private static byte[] edit(Random random, byte[] source) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(source.length + 4096);
+        int[] offsets = random.ints(EDITS_PER_REVISION, 0, source.length).sorted().toArray();
+        int from = 0;
+        for (int offset : offsets) {
+            if (offset < from) {
+                continue;
+            }
+            out.write(source, from, offset - from);
+            // Mix inserts, which shift everything after them, with in-place overwrites
+            byte[] patch = text(random, 64 + random.nextInt(512));
+            out.write(patch, 0, patch.length);
+            from = random.nextBoolean() ? offset : Math.min(source.length, offset + patch.length);
+        }
+        out.write(source, from, source.length - from);
+        return out.toByteArray();
+    }
+
+    /** Word soup: compresses roughly 3:1, like logs or source text. */
+    private static byte[] text(Random random, int size) {
+        String[] words = {"peer", "link", "file", "share", "upload", "download", "chunk", "object",
+                "transfer", "token", "stream", "buffer", "index", "codec", "level", "block"};
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        while (out.size() < size) {
+            String word = random.nextInt(8) == 0
+                    ? Long.toHexString(random.nextLong())
+                    : words[random.nextInt(words.length)];
+            byte[] bytes = (word + (random.nextInt(12) == 0 ? "\n" : " ")).getBytes(StandardCharsets.US_ASCII);
+            out.write(bytes, 0, Math.min(bytes.length, size - out.size()));
+        }
+        return out.toByteArray();
+    }
+
+    private record Result(long logicalBytes, long storedBytes, long nanos) {
+
+        String describe(String layout) {
+            double seconds = nanos / 1e9;
+            return String.format("  %-22s logical %6.1f MB, stored %6.1f MB, dedup ratio %5.2fx, ingest %7.1f MB/s",
+                    layout, logicalBytes / 1048576.0, storedBytes / 1048576.0,
+                    (double) logicalBytes / Math.max(1, storedBytes), logicalBytes / 1048576.0 / seconds);
+        }
+    }
+}
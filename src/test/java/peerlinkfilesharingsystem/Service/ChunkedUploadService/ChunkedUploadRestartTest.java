@@ -0,0 +1,161 @@
+package peerlinkfilesharingsystem.Service.ChunkedUploadService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import peerlinkfilesharingsystem.Dto.FileUploadResponse;
+import peerlinkfilesharingsystem.Model.FileTransferEntity;
+import peerlinkfilesharingsystem.Model.Users;
+import peerlinkfilesharingsystem.Repo.FileTransferRepo;
+import peerlinkfilesharingsystem.Repo.UserRepo;
+import peerlinkfilesharingsystem.Service.FileStorageService.FileStorageService;
+import peerlinkfilesharingsystem.Service.FileUploadService.FileUploadService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/** What a restart finds on disk and in the table, replayed through the startup hook. */
+@SpringBootTest
+@ActiveProfiles("test")
+class ChunkedUploadRestartTest {
+
+    private static final int CHUNK = 256 * 1024;
+
+    @TempDir
+    static Path storage;
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) {
+        registry.add("file.storage.path", storage::toString);
+    }
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+    @Autowired
+    private FileUploadService fileUploadService;
+    @Autowired
+    private FileStorageService fileStorageService;
+    @Autowired
+    private FileTransferRepo fileTransferRepo;
+    @Autowired
+    private UserRepo userRepo;
+
+    private Users user;
+
+    @BeforeEach
+    void user() {
+        user = new Users();
+        user.setUsername("chunked-" + UUID.randomUUID());
+        user.setPassword("x");
+        user.setEmail(user.getUsername() + "@peerlink.local");
+        user = userRepo.save(user);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user.getUsername(), null, List.of()));
+    }
+
+    @AfterEach
+    void logout() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void finalizationInterruptedByRestartRunsAgain() throws Exception {
+        FileTransferEntity transfer = stagedTransfer(ChunkedUploadService.STATUS_PROCESSING, 3, true);
+
+        chunkedUploadService.resumeFinalizations();
+
+        await().atMost(20, TimeUnit.SECONDS).until(() -> !ChunkedUploadService.STATUS_PROCESSING
+                .equals(reload(transfer).getStatus()));
+        FileTransferEntity done = reload(transfer);
+        assertThat(done.getStatus()).isEqualTo(ChunkedUploadService.STATUS_COMPLETED);
+        assertThat(done.getSuccess()).isTrue();
+        assertThat(done.getFileSize()).isEqualTo(3L * CHUNK);
+        assertThat(Files.exists(Paths.get(done.getStoragePath()))).isTrue();
+        assertThat(Files.exists(Paths.get(transfer.getStoragePath()))).isFalse();
+    }
+
+    @Test
+    void completeCanBeRepeatedAfterTheResultWasTaken() throws Exception {
+        FileTransferEntity transfer = stagedTransfer(ChunkedUploadService.STATUS_PROCESSING, 2, true);
+        chunkedUploadService.resumeFinalizations();
+
+        FileUploadResponse first = chunkedUploadService.completeUpload(transfer.getTransferId());
+        FileUploadResponse again = chunkedUploadService.completeUpload(transfer.getTransferId());
+
+        assertThat(first.getSuccess()).isTrue();
+        assertThat(again.getStatus()).isEqualTo(ChunkedUploadService.STATUS_COMPLETED);
+        assertThat(again.getSuccess()).isTrue();
+        assertThat(again.getFileSizeBytes()).isEqualTo(first.getFileSizeBytes());
+        assertThat(again.getCompressedSizeBytes()).isEqualTo(first.getCompressedSizeBytes());
+    }
+
+    @Test
+    void allChunksInButNotYetFinalizingIsFinalized() throws Exception {
+        FileTransferEntity transfer = stagedTransfer(ChunkedUploadService.STATUS_UPLOADING, 2, true);
+
+        chunkedUploadService.resumeFinalizations();
+
+        await().atMost(20, TimeUnit.SECONDS).until(() -> ChunkedUploadService.STATUS_COMPLETED
+                .equals(reload(transfer).getStatus()));
+    }
+
+    @Test
+    void partialUploadIsLeftForTheClient() throws Exception {
+        FileTransferEntity transfer = stagedTransfer(ChunkedUploadService.STATUS_UPLOADING, 2, false);
+
+        chunkedUploadService.resumeFinalizations();
+
+        assertThat(reload(transfer).getStatus()).isEqualTo(ChunkedUploadService.STATUS_UPLOADING);
+        assertThat(Files.exists(Paths.get(transfer.getStoragePath()))).isTrue();
+    }
+
+    @Test
+    void missingStagingFileFailsTheTransfer() throws Exception {
+        FileTransferEntity transfer = stagedTransfer(ChunkedUploadService.STATUS_PROCESSING, 1, true);
+        Files.delete(Paths.get(transfer.getStoragePath()));
+
+        chunkedUploadService.resumeFinalizations();
+
+        FileTransferEntity failed = reload(transfer);
+        assertThat(failed.getStatus()).isEqualTo(ChunkedUploadService.STATUS_FAILED);
+        assertThat(failed.getSuccess()).isFalse();
+    }
+
+    private FileTransferEntity stagedTransfer(String status, int chunks, boolean allReceived) throws Exception {
+        String transferId = UUID.randomUUID().toString();
+        String userPath = fileStorageService.createUserDirectory(String.valueOf(user.getId()));
+        Path staging = Paths.get(userPath, transferId + ".part");
+        Files.write(staging, "peerlink chunked upload ".repeat(chunks * CHUNK / 24 + 1).substring(0, chunks * CHUNK).getBytes());
+        BitSet received = new BitSet();
+        received.set(0, allReceived ? chunks : chunks - 1);
+        Files.write(Paths.get(staging + ".chunks"), received.toByteArray());
+
+        FileTransferEntity transfer = fileUploadService.newTransferEntity(transferId, user, "notes.txt", "txt",
+                "DESKTOP", (long) chunks * CHUNK, 50, 20.0, "127.0.0.1");
+        transfer.setChunkSize(CHUNK);
+        transfer.setNoOfChunksUploaded(0);
+        transfer.setStatus(status);
+        transfer.setStoragePath(staging.toString());
+        return fileTransferRepo.save(transfer);
+    }
+
+    private FileTransferEntity reload(FileTransferEntity transfer) {
+        return fileTransferRepo.findByTransferId(transfer.getTransferId()).orElseThrow();
+    }
+}
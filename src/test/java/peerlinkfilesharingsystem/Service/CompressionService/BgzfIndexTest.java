@@ -0,0 +1,78 @@
+package peerlinkfilesharingsystem.Service.CompressionService;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BgzfIndexTest {
+
+    private static final int SIZE = 2 << 20;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void concurrentFirstReadsLeaveOneValidSidecar() throws Exception {
+        Path file = bgzfFile();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<BgzfIndex>> loads = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                loads.add(pool.submit(() -> BgzfIndex.load(file)));
+            }
+            for (Future<BgzfIndex> load : loads) {
+                assertThat(load.get(30, TimeUnit.SECONDS).getUncompressedSize()).isEqualTo(SIZE);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files.map(p -> p.getFileName().toString()))
+                    .containsExactlyInAnyOrder("object", "object" + BgzfIndex.SIDECAR_SUFFIX);
+        }
+        assertThat(BgzfIndex.load(file).getBlockCount()).isEqualTo(BgzfIndex.scan(file).getBlockCount());
+    }
+
+    @Test
+    void sidecarWithImpossibleBlockCountIsRebuilt() throws Exception {
+        Path file = bgzfFile();
+        int blocks = BgzfIndex.load(file).getBlockCount();
+        Path sidecar = Path.of(BgzfIndex.sidecarFor(file.toString()));
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.WRITE)) {
+            // Block count sits after magic, version, file length and uncompressed size
+            channel.write(ByteBuffer.allocate(4).putInt(0, Integer.MAX_VALUE), 24);
+        }
+
+        BgzfIndex index = BgzfIndex.load(file);
+
+        assertThat(index.getBlockCount()).isEqualTo(blocks);
+        assertThat(index.getUncompressedSize()).isEqualTo(SIZE);
+    }
+
+    private Path bgzfFile() throws Exception {
+        byte[] data = new byte[SIZE];
+        ThreadLocalRandom.current().nextBytes(data);
+        Path file = dir.resolve("object");
+        try (OutputStream out = new BgzfOutputStream(Files.newOutputStream(file), 1)) {
+            out.write(data);
+        }
+        return file;
+    }
+}
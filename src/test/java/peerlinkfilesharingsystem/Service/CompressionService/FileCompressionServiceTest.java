@@ -0,0 +1,82 @@
+package peerlinkfilesharingsystem.Service.CompressionService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.awaitility.Awaitility.await;
+
+class FileCompressionServiceTest {
+
+    private static final int BUFFER = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    private FileCompressionService service;
+
+    @BeforeEach
+    void start() {
+        service = new FileCompressionService();
+        ReflectionTestUtils.setField(service, "maxPipelineThreads", 1);
+        service.startPipeline();
+    }
+
+    @AfterEach
+    void stop() {
+        service.shutdown();
+    }
+
+    @Test
+    void uploadBeyondThePipelineBoundCompressesOnItsOwnThread() throws Exception {
+        PipedOutputStream slowClient = new PipedOutputStream();
+        PipedInputStream slowBody = new PipedInputStream(slowClient, BUFFER);
+        Path slowOut = dir.resolve("slow");
+        CompletableFuture<FileCompressionService.StreamCompressionResult> slow = CompletableFuture.supplyAsync(() -> {
+            try {
+                return service.compressStream(slowBody, slowOut.toString(), new StoreCodec(), 0, BUFFER, -1);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        ThreadPoolExecutor pipeline = (ThreadPoolExecutor) ReflectionTestUtils.getField(service, "pipelineExecutor");
+        await().atMost(5, TimeUnit.SECONDS).until(() -> pipeline.getActiveCount() == 1);
+
+        // The only pipeline thread belongs to a client that has not finished sending;
+        // a second upload many buffers long must still go through
+        byte[] content = new byte[40 * BUFFER];
+        ThreadLocalRandom.current().nextBytes(content);
+        Path fastOut = dir.resolve("fast");
+        assertThatCode(() -> {
+            FileCompressionService.StreamCompressionResult fast = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return service.compressStream(new ByteArrayInputStream(content), fastOut.toString(),
+                            new StoreCodec(), 0, BUFFER, content.length);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }).get(10, TimeUnit.SECONDS);
+            assertThat(fast.getOriginalSize()).isEqualTo(content.length);
+        }).doesNotThrowAnyException();
+        assertThat(Files.readAllBytes(fastOut)).isEqualTo(content);
+
+        slowClient.write(new byte[]{1, 2, 3});
+        slowClient.close();
+        assertThat(slow.get(10, TimeUnit.SECONDS).getOriginalSize()).isEqualTo(3);
+        assertThat(Files.readAllBytes(slowOut)).containsExactly(1, 2, 3);
+    }
+}
@@ -0,0 +1,52 @@
+package peerlinkfilesharingsystem.Service.CompressionService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelCompressionExecutorTest {
+
+    private ParallelCompressionExecutor executor;
+
+    @BeforeEach
+    void start() {
+        executor = new ParallelCompressionExecutor();
+        ReflectionTestUtils.setField(executor, "readAheadBufferBytes", 64 * 1024);
+        ReflectionTestUtils.setField(executor, "readAheadDepth", 2);
+        ReflectionTestUtils.setField(executor, "maxReadAheadThreads", 1);
+        executor.startReadAhead();
+    }
+
+    @AfterEach
+    void stop() {
+        executor.shutdown();
+    }
+
+    @Test
+    void downloadBeyondTheReadAheadBoundInflatesInline() throws Exception {
+        // A decoder that never produces holds the only read-ahead thread
+        PipedOutputStream stalled = new PipedOutputStream();
+        InputStream first = executor.readAhead(new PipedInputStream(stalled));
+        assertThat(first).isInstanceOf(ReadAheadInputStream.class);
+
+        byte[] data = new byte[1 << 20];
+        ThreadLocalRandom.current().nextBytes(data);
+        InputStream decoded = new ByteArrayInputStream(data);
+        InputStream second = executor.readAhead(decoded);
+
+        assertThat(second).isSameAs(decoded);
+        assertThat(second.readAllBytes()).isEqualTo(data);
+
+        stalled.close();
+        first.close();
+    }
+}
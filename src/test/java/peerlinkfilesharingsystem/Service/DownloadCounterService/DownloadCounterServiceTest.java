@@ -0,0 +1,89 @@
+package peerlinkfilesharingsystem.Service.DownloadCounterService;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import peerlinkfilesharingsystem.Model.FileTransferEntity;
+import peerlinkfilesharingsystem.Repo.FileTransferRepo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Increments race flushes on purpose: the scheduled flush runs every 10 ms and
+ * another thread flushes in a loop, so deltas are read and subtracted while
+ * downloads keep landing. Not one may be lost or counted twice.
+ */
+@SpringBootTest(properties = "download.counters.flush-interval-ms=10")
+@ActiveProfiles("test")
+class DownloadCounterServiceTest {
+
+    private static final int DOWNLOADS = 10_000;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private DownloadCounterService downloadCounterService;
+    @Autowired
+    private FileTransferRepo fileTransferRepo;
+
+    @Test
+    void tenThousandParallelDownloadsAreCountedExactly() throws Exception {
+        String transferId = saveTransfer();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean downloading = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+        try {
+            Future<?> flusher = pool.submit(() -> {
+                while (downloading.get()) {
+                    downloadCounterService.flush();
+                }
+            });
+            List<Future<?>> downloads = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int share = DOWNLOADS / THREADS + (t < DOWNLOADS % THREADS ? 1 : 0);
+                downloads.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < share; i++) {
+                        downloadCounterService.increment(transferId);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> download : downloads) {
+                download.get(1, TimeUnit.MINUTES);
+            }
+            downloading.set(false);
+            flusher.get(1, TimeUnit.MINUTES);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        downloadCounterService.flush();
+        assertThat(downloadCounterService.pending(transferId)).isZero();
+        assertThat(fileTransferRepo.findByTransferId(transferId).orElseThrow().getDownloadCount())
+                .isEqualTo(DOWNLOADS);
+    }
+
+    private String saveTransfer() {
+        FileTransferEntity transfer = new FileTransferEntity();
+        transfer.setTransferId(UUID.randomUUID().toString());
+        transfer.setFileName("counted.bin");
+        transfer.setFileSize(1L);
+        transfer.setClientIp("127.0.0.1");
+        transfer.setSuccess(true);
+        transfer.setDeleted(false);
+        fileTransferRepo.save(transfer);
+        return transfer.getTransferId();
+    }
+}
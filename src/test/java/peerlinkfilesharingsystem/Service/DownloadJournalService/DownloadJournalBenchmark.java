@@ -0,0 +1,84 @@
+package peerlinkfilesharingsystem.Service.DownloadJournalService;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import peerlinkfilesharingsystem.Model.FileDownload;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Feeds finished downloads into {@link DownloadJournalService} and times its
+ * background writer until every row is stored, reporting rows/s and the
+ * prepared statements the flushes took. Uses only the service's public API,
+ * so the same class can be run against an older tree to get the other side of
+ * a comparison.
+ *
+ * Run with {@code mvn test -Pbenchmark -Dtest=DownloadJournalBenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class DownloadJournalBenchmark {
+
+    private static final int ROWS = 20_000;
+
+    @Autowired
+    private DownloadJournalService downloadJournalService;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void flushFinishedDownloads() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // Untimed pass so JIT, the ID blocks and the table are warm
+        journal(ROWS / 5, statistics);
+        Result result = journal(ROWS, statistics);
+
+        System.out.printf("%nDownload journal: %d rows%n", ROWS);
+        System.out.printf("  %9.0f rows/s, %6d prepared statements%n",
+                ROWS / (result.nanos / 1e9), result.statements);
+
+        assertThat(downloadJournalService.getDroppedCount()).isZero();
+    }
+
+    private Result journal(int rows, Statistics statistics) {
+        long target = downloadJournalService.getWrittenCount() + rows;
+        statistics.clear();
+        long start = System.nanoTime();
+        for (int i = 0; i < rows; i++) {
+            downloadJournalService.recordFinished(download(), 1L << 20, true);
+        }
+        await().atMost(120, TimeUnit.SECONDS).pollInterval(1, TimeUnit.MILLISECONDS)
+                .until(() -> downloadJournalService.getWrittenCount() >= target);
+        return new Result(statistics.getPrepareStatementCount(), System.nanoTime() - start);
+    }
+
+    private static FileDownload download() {
+        FileDownload download = new FileDownload();
+        download.setTransferId(UUID.randomUUID().toString());
+        download.setFileName("journal.bin");
+        download.setFileSize(1L << 20);
+        download.setFileType("bin");
+        download.setChunkSize(65536);
+        download.setNetworkSpeedMbps(100.0);
+        download.setLatencyMs(20);
+        download.setStoragePath("journal.bin");
+        download.setStartedAt(LocalDateTime.now());
+        return download;
+    }
+
+    private record Result(long statements, long nanos) {
+    }
+}
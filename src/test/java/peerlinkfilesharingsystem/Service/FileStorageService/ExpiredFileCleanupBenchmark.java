@@ -0,0 +1,107 @@
+package peerlinkfilesharingsystem.Service.FileStorageService;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import peerlinkfilesharingsystem.Model.FileTransferEntity;
+import peerlinkfilesharingsystem.Repo.FileTransferRepo;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Times the hourly expiry job, {@link FileStorageService#deleteExpiredFiles()},
+ * over a few thousand expired single-object transfers and reports rows/s and
+ * the prepared statements it took. Uses only the service and repository API,
+ * so the same class can be run against an older tree to get the other side of
+ * a comparison.
+ *
+ * Run with {@code mvn test -Pbenchmark -Dtest=ExpiredFileCleanupBenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class ExpiredFileCleanupBenchmark {
+
+    private static final int ROWS = 5_000;
+
+    @TempDir
+    static Path storage;
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) {
+        registry.add("file.storage.path", storage::toString);
+    }
+
+    @Autowired
+    private FileStorageService fileStorageService;
+    @Autowired
+    private FileTransferRepo fileTransferRepo;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void cleanExpiredFiles() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // Untimed pass so JIT, the ID blocks and the tables are warm
+        clean(ROWS / 5, statistics);
+        Result result = clean(ROWS, statistics);
+
+        System.out.printf("%nExpired file cleanup: %d transfers%n", ROWS);
+        System.out.printf("  %9.0f rows/s, %6d prepared statements%n",
+                ROWS / (result.nanos / 1e9), result.statements);
+
+        assertThat(fileTransferRepo.findExpiredFiles(LocalDateTime.now())).isEmpty();
+    }
+
+    private Result clean(int rows, Statistics statistics) throws Exception {
+        List<FileTransferEntity> transfers = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            transfers.add(expiredTransfer());
+        }
+        fileTransferRepo.saveAll(transfers);
+
+        statistics.clear();
+        long start = System.nanoTime();
+        fileStorageService.deleteExpiredFiles();
+        return new Result(statistics.getPrepareStatementCount(), System.nanoTime() - start);
+    }
+
+    private static FileTransferEntity expiredTransfer() throws Exception {
+        String transferId = UUID.randomUUID().toString();
+        Path file = Files.write(storage.resolve(transferId), new byte[64]);
+        FileTransferEntity transfer = new FileTransferEntity();
+        transfer.setTransferId(transferId);
+        transfer.setUserId(UUID.randomUUID());
+        transfer.setFileName("expired.bin");
+        transfer.setFileType("bin");
+        transfer.setFileSize(64L);
+        transfer.setBytesTransferred(64L);
+        transfer.setCompressionCodec("store");
+        transfer.setChunkSize(65536);
+        transfer.setStoragePath(file.toString());
+        transfer.setClientIp("127.0.0.1");
+        transfer.setSuccess(true);
+        transfer.setDeleted(false);
+        transfer.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+        return transfer;
+    }
+
+    private record Result(long statements, long nanos) {
+    }
+}
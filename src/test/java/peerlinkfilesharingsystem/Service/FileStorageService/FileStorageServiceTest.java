@@ -0,0 +1,87 @@
+package peerlinkfilesharingsystem.Service.FileStorageService;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import peerlinkfilesharingsystem.Model.FileTransferEntity;
+import peerlinkfilesharingsystem.Model.StoredObject;
+import peerlinkfilesharingsystem.Repo.FileTransferRepo;
+import peerlinkfilesharingsystem.Repo.StoredObjectRepo;
+import peerlinkfilesharingsystem.Service.ContentStoreService.ContentStoreService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** The hourly expiry jobs, run in their scheduled order against a deduplicated object. */
+@SpringBootTest
+@ActiveProfiles("test")
+class FileStorageServiceTest {
+
+    @TempDir
+    static Path storage;
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) {
+        registry.add("file.storage.path", storage::toString);
+    }
+
+    @Autowired
+    private FileStorageService fileStorageService;
+    @Autowired
+    private ContentStoreService contentStoreService;
+    @Autowired
+    private FileTransferRepo fileTransferRepo;
+    @Autowired
+    private StoredObjectRepo storedObjectRepo;
+
+    @Test
+    void transferFlaggedExpiredStillReleasesItsObject() throws Exception {
+        byte[] hash = new byte[32];
+        ThreadLocalRandom.current().nextBytes(hash);
+        String contentHash = HexFormat.of().formatHex(hash);
+        Path written = storage.resolve(contentHash + ".tmp");
+        Files.write(written, new byte[4096]);
+        StoredObject object = contentStoreService.adopt(contentHash, written.toString(), "store", null, 4096, 4096);
+        FileTransferEntity transfer = fileTransferRepo.save(expiredTransfer(object));
+
+        // :05 flags the row EXPIRED before :01 of the next hour gets to it
+        fileStorageService.deleteExpiredFilesinTransferEntity();
+        assertThat(storedObjectRepo.findByContentHash(contentHash)).isPresent();
+
+        fileStorageService.deleteExpiredFiles();
+
+        assertThat(storedObjectRepo.findByContentHash(contentHash)).isEmpty();
+        assertThat(Files.exists(Paths.get(object.getStoragePath()))).isFalse();
+        assertThat(fileTransferRepo.findByTransferId(transfer.getTransferId())).isEmpty();
+    }
+
+    private static FileTransferEntity expiredTransfer(StoredObject object) {
+        FileTransferEntity transfer = new FileTransferEntity();
+        transfer.setTransferId(UUID.randomUUID().toString());
+        transfer.setUserId(UUID.randomUUID());
+        transfer.setFileName("expired.bin");
+        transfer.setFileType("bin");
+        transfer.setFileSize(object.getOriginalSize());
+        transfer.setBytesTransferred(object.getStoredSize());
+        transfer.setCompressionCodec(object.getCodec());
+        transfer.setChunkSize(65536);
+        transfer.setContentHash(object.getContentHash());
+        transfer.setStoragePath(object.getStoragePath());
+        transfer.setClientIp("127.0.0.1");
+        transfer.setSuccess(true);
+        transfer.setDeleted(false);
+        transfer.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+        return transfer;
+    }
+}
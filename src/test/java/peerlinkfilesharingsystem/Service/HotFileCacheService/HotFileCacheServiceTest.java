@@ -0,0 +1,95 @@
+package peerlinkfilesharingsystem.Service.HotFileCacheService;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import peerlinkfilesharingsystem.Model.FileTransferEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotFileCacheServiceTest {
+
+    private static final int ENTRY = 1 << 20;
+    private static final long BUDGET = 4L * ENTRY;
+
+    private HotFileCacheService service;
+    private Cache<String, ByteBuffer> cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void start() {
+        service = new HotFileCacheService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "maxBytes", BUDGET);
+        ReflectionTestUtils.setField(service, "maxEntryBytes", (long) ENTRY);
+        ReflectionTestUtils.setField(service, "expireAfterAccessMinutes", 30L);
+        service.init();
+        cache = (Cache<String, ByteBuffer>) ReflectionTestUtils.getField(service, "cache");
+    }
+
+    @Test
+    void runningFillsAndResidentEntriesShareOneBudget() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            cacheFully(transfer("resident-" + i));
+        }
+        cache.cleanUp();
+        assertThat(residentBytes()).isEqualTo(BUDGET);
+
+        InputStream first = service.fillWhileReading(seenOnce(transfer("new-0")), body());
+        InputStream second = service.fillWhileReading(seenOnce(transfer("new-1")), body());
+        cache.cleanUp();
+
+        assertThat(residentBytes() + 2L * ENTRY).isLessThanOrEqualTo(BUDGET);
+
+        first.close();
+        second.close();
+        assertThat(cache.policy().eviction().orElseThrow().getMaximum()).isEqualTo(BUDGET);
+    }
+
+    @Test
+    void fillsBeyondHalfTheBudgetAreServedUncached() throws Exception {
+        InputStream first = service.fillWhileReading(seenOnce(transfer("a")), body());
+        InputStream second = service.fillWhileReading(seenOnce(transfer("b")), body());
+        InputStream decoded = body();
+
+        InputStream third = service.fillWhileReading(seenOnce(transfer("c")), decoded);
+
+        assertThat(third).isSameAs(decoded);
+        first.close();
+        second.close();
+    }
+
+    private void cacheFully(FileTransferEntity transfer) throws Exception {
+        try (InputStream in = service.fillWhileReading(seenOnce(transfer), body())) {
+            in.readAllBytes();
+        }
+        assertThat(service.open(transfer, 0, ENTRY)).isNotNull();
+    }
+
+    private FileTransferEntity seenOnce(FileTransferEntity transfer) {
+        // The doorkeeper lets a transfer through on its second miss
+        service.fillWhileReading(transfer, body());
+        return transfer;
+    }
+
+    private long residentBytes() {
+        return cache.policy().eviction().orElseThrow().weightedSize().orElseThrow();
+    }
+
+    private static FileTransferEntity transfer(String transferId) {
+        FileTransferEntity transfer = new FileTransferEntity();
+        transfer.setTransferId(transferId);
+        transfer.setFileSize((long) ENTRY);
+        return transfer;
+    }
+
+    private static InputStream body() {
+        return new ByteArrayInputStream(new byte[ENTRY]);
+    }
+}
@@ -0,0 +1,89 @@
+package peerlinkfilesharingsystem.Service.IdAllocatorService;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import peerlinkfilesharingsystem.Repo.IdBlockRepo;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Many threads on two allocators sharing one id_block row stand in for a busy
+ * multi-instance deployment: every value handed out must be unique, and block
+ * leasing must not leave large holes.
+ */
+@SpringBootTest(properties = "id.allocator.block-size=1000")
+@ActiveProfiles("test")
+class IdAllocatorServiceTest {
+
+    private static final int THREADS = 16;
+    private static final int PER_THREAD = 125_000;
+    private static final int BLOCK_SIZE = 1000;
+    private static final long FIRST_VALUE = 100_000L;
+
+    @Autowired
+    private IdAllocatorService idAllocatorService;
+    @Autowired
+    private IdBlockRepo idBlockRepo;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void millionsOfConcurrentAllocationsAreUnique() throws Exception {
+        IdAllocatorService otherInstance = new IdAllocatorService(idBlockRepo, transactionManager, "test");
+        ReflectionTestUtils.setField(otherInstance, "blockSize", BLOCK_SIZE);
+        String sequence = "concurrency-test";
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<long[]>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                IdAllocatorService allocator = t % 2 == 0 ? idAllocatorService : otherInstance;
+                results.add(pool.submit(() -> {
+                    long[] ids = new long[PER_THREAD];
+                    for (int i = 0; i < PER_THREAD; i++) {
+                        ids[i] = allocator.next(sequence);
+                    }
+                    return ids;
+                }));
+            }
+
+            int total = THREADS * PER_THREAD;
+            // Each allocator can strand at most one partly used block
+            long ceiling = FIRST_VALUE + total + 2L * BLOCK_SIZE;
+            BitSet seen = new BitSet();
+            for (Future<long[]> result : results) {
+                for (long id : result.get(2, TimeUnit.MINUTES)) {
+                    assertThat(id).isBetween(FIRST_VALUE, ceiling - 1);
+                    int bit = (int) (id - FIRST_VALUE);
+                    assertThat(seen.get(bit)).as("duplicate ID %d", id).isFalse();
+                    seen.set(bit);
+                }
+            }
+            assertThat(seen.cardinality()).isEqualTo(total);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void shareCodesRoundTripAndRejectNumericIds() {
+        Long shareId = idAllocatorService.nextShareId();
+        String code = idAllocatorService.toShareCode(shareId);
+
+        assertThat(code).hasSize(ShareCodeCodec.CODE_LENGTH);
+        assertThat(idAllocatorService.fromShareCode(code)).isEqualTo(shareId);
+        assertThat(ShareCodeCodec.looksLikeCode(String.valueOf(shareId))).isFalse();
+    }
+}
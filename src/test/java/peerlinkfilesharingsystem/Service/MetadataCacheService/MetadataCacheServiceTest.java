@@ -0,0 +1,70 @@
+package peerlinkfilesharingsystem.Service.MetadataCacheService;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import peerlinkfilesharingsystem.Enums.MarkFileAs;
+import peerlinkfilesharingsystem.Model.FileShare;
+import peerlinkfilesharingsystem.Model.FileTransferEntity;
+import peerlinkfilesharingsystem.Repo.FileShareRepo;
+import peerlinkfilesharingsystem.Repo.FileTransferRepo;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * With the default settings a share written by another instance, which never
+ * calls {@link MetadataCacheService#shareCreated}, resolves even after this
+ * instance looked its key up and missed.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class MetadataCacheServiceTest {
+
+    @Autowired
+    private FileTransferRepo fileTransferRepo;
+    @Autowired
+    private FileShareRepo fileShareRepo;
+    @Autowired
+    private MetadataCacheService metadataCacheService;
+
+    @Test
+    void shareCreatedElsewhereResolvesAfterAMiss() {
+        String shareToken = UUID.randomUUID().toString();
+        assertThat(metadataCacheService.publicTransferByShareToken(shareToken)).isEmpty();
+
+        saveShareBehindTheCache(shareToken);
+
+        assertThat(metadataCacheService.publicTransferByShareToken(shareToken))
+                .map(FileTransferEntity::getShareToken)
+                .contains(shareToken);
+    }
+
+    private void saveShareBehindTheCache(String shareToken) {
+        FileTransferEntity transfer = new FileTransferEntity();
+        transfer.setTransferId(UUID.randomUUID().toString());
+        transfer.setFileName("elsewhere.bin");
+        transfer.setFileType("bin");
+        transfer.setFileSize(1024L);
+        transfer.setBytesTransferred(1024L);
+        transfer.setCompressionCodec("store");
+        transfer.setChunkSize(65536);
+        transfer.setStoragePath("elsewhere.bin");
+        transfer.setClientIp("127.0.0.1");
+        transfer.setSuccess(true);
+        transfer.setDeleted(false);
+        transfer.setShareToken(shareToken);
+        transfer.setMarkFileAs(MarkFileAs.PUBLIC);
+        fileTransferRepo.save(transfer);
+
+        FileShare share = new FileShare();
+        share.setShareToken(shareToken);
+        share.setFileName(transfer.getFileName());
+        share.setFileSize(transfer.getFileSize());
+        share.setShareId(ThreadLocalRandom.current().nextLong(1, 1_000_000_000_000L));
+        fileShareRepo.save(share);
+    }
+}
@@ -0,0 +1,85 @@
+package peerlinkfilesharingsystem.Service.PopularityService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import peerlinkfilesharingsystem.Dto.PopularTransferDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PopularityServiceTest {
+
+    private static final int THREADS = 8;
+
+    private PopularityService service;
+
+    @BeforeEach
+    void start() {
+        service = new PopularityService(null);
+        ReflectionTestUtils.setField(service, "width", 16384);
+        ReflectionTestUtils.setField(service, "capacity", 4);
+        ReflectionTestUtils.setField(service, "halfLifeMinutes", 60.0);
+        ReflectionTestUtils.setField(service, "infoViewWeight", 0.25);
+        service.init();
+    }
+
+    @Test
+    void concurrentDownloadsAreAllCounted() throws Exception {
+        int perThread = 50_000;
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                done.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        service.recordDownload("hot");
+                    }
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Events are weighted by when they happened, so the decayed score sits just under the raw count
+        double expected = THREADS * perThread;
+        assertThat(service.score("hot")).isBetween(expected * 0.99, expected);
+        assertThat(service.top(1)).extracting(PopularTransferDto::getTransferId).containsExactly("hot");
+    }
+
+    @Test
+    void topKKeepsTheMostFrequentWhenNewcomersDisplaceTheSmallest() {
+        // transfer-i is downloaded (i + 1) * 10 times, interleaved so newcomers keep arriving
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 10; i++) {
+                if (round < (i + 1) * 10) {
+                    service.recordDownload("transfer-" + i);
+                }
+            }
+        }
+
+        assertThat(service.top(4)).extracting(PopularTransferDto::getTransferId)
+                .containsExactly("transfer-9", "transfer-8", "transfer-7", "transfer-6");
+    }
+
+    @Test
+    void forgottenTransferLeavesTheTopK() {
+        for (int i = 0; i < 4; i++) {
+            service.recordDownload("transfer-" + i);
+        }
+
+        service.forget("transfer-2");
+
+        assertThat(service.top(10)).extracting(PopularTransferDto::getTransferId)
+                .containsExactlyInAnyOrder("transfer-0", "transfer-1", "transfer-3");
+    }
+}
@@ -0,0 +1,70 @@
+package peerlinkfilesharingsystem.Service.UploadQueueService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** One user's batch stops at their own queued limit; other users are still admitted. */
+class UploadQueueServiceTest {
+
+    private static final int QUEUED_PER_USER = 3;
+
+    private final UploadQueueService queue = new UploadQueueService();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void start() {
+        ReflectionTestUtils.setField(queue, "configuredWorkers", 1);
+        ReflectionTestUtils.setField(queue, "queueCapacity", 100);
+        ReflectionTestUtils.setField(queue, "configuredPerUserLimit", 1);
+        ReflectionTestUtils.setField(queue, "configuredPerUserQueueLimit", QUEUED_PER_USER);
+        queue.start();
+    }
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        queue.shutdown();
+    }
+
+    @Test
+    void oneUsersBatchDoesNotTurnOthersAway() throws Exception {
+        UUID busy = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        CountDownLatch running = new CountDownLatch(1);
+        // Hold the only worker so everything after this stays queued
+        assertThat(queue.submit(busy, () -> {
+            running.countDown();
+            await(release);
+        })).isTrue();
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+
+        int accepted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (queue.submit(busy, () -> { })) {
+                accepted++;
+            }
+        }
+
+        assertThat(accepted).isEqualTo(QUEUED_PER_USER);
+        assertThat(queue.hasCapacity(busy)).isFalse();
+        assertThat(queue.hasCapacity(other)).isTrue();
+        assertThat(queue.submit(other, () -> { })).isTrue();
+        assertThat(queue.suggestRetryAfterSeconds(busy)).isPositive();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}